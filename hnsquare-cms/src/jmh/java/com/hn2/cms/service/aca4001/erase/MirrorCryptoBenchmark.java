@@ -0,0 +1,128 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import com.hn2.cms.repository.aca4001.erase.EraseMirrorRepo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 鏡像單列的加解密/雜湊成本（塗銷時 cryptoPool 逐列執行的工作）。
+ * 比較：
+ * - legacy*：改版前的寫法（每次 new SecureRandom、Cipher.getInstance、String.format 轉十六進位），作為基準線。
+ * - crypto*：AesGcmCrypto（共用 SecureRandom、每執行緒重用 Cipher/MessageDigest、查表轉十六進位）。
+ * - codec*：MirrorPayloadCodec 的 v1（Base64 文字）與 v2（Deflate + 二進位）編碼/解碼，含壓縮成本。
+ * 以 4 執行緒量測，反映 EraseCryptoPool 上的併發情況（ThreadLocal 與共用 SecureRandom 的競爭）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MirrorCryptoBenchmark {
+    private static final String KEY_B64 = Base64.getEncoder().encodeToString(new byte[32]);
+
+    /**
+     * 明文 JSON 約略大小（位元組）：一般列約 1 KB；備註/長文字欄位多的表可達數 KB。
+     */
+    @Param({"1024", "8192"})
+    public int payloadBytes;
+
+    private String json;
+    private AesGcmCrypto crypto;
+    private MirrorPayloadCodec v1;
+    private MirrorPayloadCodec v2;
+    private EraseMirrorRepo.MirrorRow v1Row;
+    private EraseMirrorRepo.MirrorRow v2Row;
+    private SecretKeySpec key;
+
+    @Setup
+    public void setup() {
+        json = samplePayload(payloadBytes);
+        crypto = new AesGcmCrypto(KEY_B64);
+        key = new SecretKeySpec(Base64.getDecoder().decode(KEY_B64), "AES");
+        v1 = new MirrorPayloadCodec(crypto, MirrorPayloadCodec.V1_BASE64);
+        v2 = new MirrorPayloadCodec(crypto, MirrorPayloadCodec.V2_DEFLATE_BINARY);
+        v1Row = toRow(v1.encode("1", json, AesGcmCrypto.sha256Hex(json)));
+        v2Row = toRow(v2.encode("1", json, AesGcmCrypto.sha256Hex(json)));
+    }
+
+    @Benchmark
+    public Object legacyEncryptAndHash() throws Exception {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+        c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+        String payload = Base64.getEncoder().encodeToString(c.doFinal(json.getBytes(StandardCharsets.UTF_8)));
+        byte[] h = MessageDigest.getInstance("SHA-256").digest(json.getBytes(StandardCharsets.UTF_8));
+        var sb = new StringBuilder(64);
+        for (byte b : h) sb.append(String.format("%02x", b));
+        return new Object[]{payload, Base64.getEncoder().encodeToString(iv), sb.toString()};
+    }
+
+    @Benchmark
+    public Object cryptoEncryptAndHash() {
+        return new Object[]{crypto.encryptJson(json), AesGcmCrypto.sha256Hex(json)};
+    }
+
+    @Benchmark
+    public Object codecEncodeV1() {
+        return v1.encode("1", json, AesGcmCrypto.sha256Hex(json));
+    }
+
+    @Benchmark
+    public Object codecEncodeV2() {
+        return v2.encode("1", json, AesGcmCrypto.sha256Hex(json));
+    }
+
+    @Benchmark
+    public String codecDecodeV1() {
+        return v1.decode(v1Row);
+    }
+
+    @Benchmark
+    public String codecDecodeV2() {
+        return v2.decode(v2Row);
+    }
+
+    private static EraseMirrorRepo.MirrorRow toRow(EraseMirrorRepo.MirrorEntry e) {
+        var m = new EraseMirrorRepo.MirrorRow();
+        m.setTargetId(e.getTargetId());
+        m.setPayloadVersion(e.getPayloadVersion());
+        m.setPayloadBase64(e.getPayloadBase64());
+        m.setEncryptedPayload(e.getEncryptedPayload());
+        m.setIvBase64(e.getIvBase64());
+        m.setSha256(e.getSha256());
+        return m;
+    }
+
+    // 仿鏡像 payload（fmt 2）：固定結構 + 中文備註欄位補到指定大小
+    static String samplePayload(int bytes) {
+        var sb = new StringBuilder("{\"schema\":\"dbo\",\"table\":\"ProRec\",\"idColumn\":\"ID\",\"id\":\"123456\",\"fmt\":2,")
+                .append("\"fields\":{\"ProDate\":\"2024-03-01T00:00:00\",\"ProNoticeDep\":\"A01\",\"CreatedByUserID\":17,\"ProMemo\":\"");
+        int i = 0;
+        while (sb.toString().getBytes(StandardCharsets.UTF_8).length < bytes - 80) {
+            sb.append("個案於第").append(i++).append("次訪視時表示就業狀況穩定；");
+        }
+        return sb.append("\"},\"types\":{\"ProDate\":\"TS\",\"ProNoticeDep\":\"STR\",\"CreatedByUserID\":\"INT\",\"ProMemo\":\"STR\"}}").toString();
+    }
+}
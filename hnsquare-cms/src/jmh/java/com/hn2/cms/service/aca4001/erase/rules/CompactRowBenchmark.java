@@ -0,0 +1,113 @@
+package com.hn2.cms.service.aca4001.erase.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 塗銷讀取列的承載方式：CompactRow（共用 Layout + 每列一個 Object[]）與舊做法（每列一個 Map，鍵轉小寫，
+ * 取主鍵時依多種大小寫嘗試）比較。量測「由結果集逐列建立 → 取主鍵 → 依欄位逐一走訪」，
+ * 結果集以預先產生的值陣列模擬（不含 JDBC 驅動成本，兩者相同）。
+ * 配置量請加上 -prof gc 觀察 gc.alloc.rate.norm（每次操作配置的位元組）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompactRowBenchmark {
+
+    /**
+     * 一條規則載入的列數。
+     */
+    @Param({"100", "2000"})
+    public int rows;
+
+    /**
+     * 每列欄位數（含 __PK__）：小表約 10 欄，CrmRec / ProRec 白名單約 30 欄。
+     */
+    @Param({"10", "30"})
+    public int columns;
+
+    private List<String> labels;
+    private Object[][] resultSet;
+
+    @Setup
+    public void setup() {
+        labels = new ArrayList<>(columns);
+        labels.add("__PK__");
+        for (int c = 1; c < columns; c++) labels.add("Crm_Column" + c);
+        resultSet = new Object[rows][columns];
+        var ts = Timestamp.valueOf("2024-03-01 08:30:00");
+        for (int r = 0; r < rows; r++) {
+            resultSet[r][0] = 100000 + r;
+            for (int c = 1; c < columns; c++) {
+                switch (c % 5) {
+                    case 0: resultSet[r][c] = null; break;
+                    case 1: resultSet[r][c] = "文字欄位" + r; break;
+                    case 2: resultSet[r][c] = c * r; break;
+                    case 3: resultSet[r][c] = ts; break;
+                    default: resultSet[r][c] = BigDecimal.valueOf(r, 2); break;
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void compactRows(Blackhole bh) {
+        var layout = new CompactRow.Layout(labels); // 每個查詢建一次
+        var out = new ArrayList<CompactRow>(rows);
+        for (Object[] src : resultSet) {
+            var v = new Object[src.length];
+            System.arraycopy(src, 0, v, 0, src.length); // 對應 rs.getObject(i) 逐欄讀值
+            out.add(new CompactRow(layout, v));
+        }
+        for (var row : out) {
+            bh.consume(row.idOrThrow("ID", "CrmRec"));
+            var cols = row.getLayout().getColumns();
+            var vals = row.values();
+            for (int i = 0; i < vals.length; i++) {
+                bh.consume(cols.get(i));
+                bh.consume(vals[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void mapRows(Blackhole bh) {
+        var out = new ArrayList<Map<String, Object>>(rows);
+        for (Object[] src : resultSet) {
+            var m = new HashMap<String, Object>();
+            for (int i = 0; i < src.length; i++) m.put(labels.get(i).toLowerCase(Locale.ROOT), src[i]); // Row::asMap
+            out.add(m);
+        }
+        for (var row : out) {
+            Object id = row.get("__PK__");
+            if (id == null) id = row.get("__pk__");
+            bh.consume(String.valueOf(id));
+            for (var e : row.entrySet()) {
+                bh.consume(e.getKey());
+                bh.consume(e.getValue());
+            }
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.hn2.cms.controller;
 
 import com.hn2.cms.dto.aca4001.Aca4001AuditQueryDto;
+import com.hn2.cms.dto.aca4001.Aca4001BatchResultDto;
+import com.hn2.cms.dto.aca4001.Aca4001ErasePlanDto;
 import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto;
+import com.hn2.cms.dto.aca4001.Aca4001JobDto;
 import com.hn2.cms.dto.aca4001.Aca4001RestoreQueryDto;
+import com.hn2.cms.payload.aca4001.Aca4001AuditQueryPayload;
+import com.hn2.cms.payload.aca4001.Aca4001BatchErasePayload;
+import com.hn2.cms.payload.aca4001.Aca4001BatchRestorePayload;
 import com.hn2.cms.payload.aca4001.Aca4001ErasePayload;
 import com.hn2.cms.payload.aca4001.Aca4001EraseQueryPayload;
+import com.hn2.cms.payload.aca4001.Aca4001JobStatusPayload;
 import com.hn2.cms.payload.aca4001.Aca4001RestorePayload;
 import com.hn2.cms.payload.aca4001.Aca4001RestoreQueryPayload;
 import com.hn2.cms.service.aca4001.Aca4001Service;
@@ -69,7 +76,53 @@ public class Aca4001Controller {
     }
 
     @PostMapping("/auditQuery")
-    public ResponseEntity<DataDto<Aca4001AuditQueryDto>> auditQuery() {
-        return ResponseEntity.ok(service.auditQuery());
+    public ResponseEntity<DataDto<Aca4001AuditQueryDto>> auditQuery(@RequestBody(required = false) GeneralPayload<Aca4001AuditQueryPayload> payload) {
+        return ResponseEntity.ok(service.auditQuery(payload));
+    }
+
+    @PostMapping("/batchErase")
+    public ResponseEntity<DataDto<Aca4001BatchResultDto>> batchErase(@Valid @RequestBody GeneralPayload<Aca4001BatchErasePayload> payload, HttpServletRequest request) {
+        var req = payload.getData();
+        String userIp = request.getRemoteAddr();
+
+        DataDto<Aca4001BatchResultDto> result = service.batchErase(payload, req == null ? null : req.getOperatorUserId(), userIp);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/batchRestore")
+    public ResponseEntity<DataDto<Aca4001BatchResultDto>> batchRestore(@Valid @RequestBody GeneralPayload<Aca4001BatchRestorePayload> payload, HttpServletRequest request) {
+        var req = payload.getData();
+        String userIp = request.getRemoteAddr();
+
+        DataDto<Aca4001BatchResultDto> result = service.batchRestore(payload, req == null ? null : req.getOperatorUserId(), userIp);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/erasePlan")
+    public ResponseEntity<DataDto<Aca4001ErasePlanDto>> erasePlan(@Valid @RequestBody GeneralPayload<Aca4001ErasePayload> payload) {
+        return ResponseEntity.ok(service.erasePlan(payload));
+    }
+
+    @PostMapping("/asyncErase")
+    public ResponseEntity<DataDto<Aca4001JobDto>> asyncErase(@Valid @RequestBody GeneralPayload<Aca4001ErasePayload> payload, HttpServletRequest request) {
+        var req = payload.getData();
+        String userIp = request.getRemoteAddr();
+
+        DataDto<Aca4001JobDto> result = service.asyncErase(payload, req == null ? null : req.getOperatorUserId(), userIp);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/asyncRestore")
+    public ResponseEntity<DataDto<Aca4001JobDto>> asyncRestore(@Valid @RequestBody GeneralPayload<Aca4001RestorePayload> payload, HttpServletRequest request) {
+        var req = payload.getData();
+        String userIp = request.getRemoteAddr();
+
+        DataDto<Aca4001JobDto> result = service.asyncRestore(payload, req == null ? null : req.getOperatorUserId(), userIp);
+        return ResponseEntity.ok(result);
+    }
+
+    @PostMapping("/jobStatus")
+    public ResponseEntity<DataDto<Aca4001JobDto>> jobStatus(@Valid @RequestBody GeneralPayload<Aca4001JobStatusPayload> payload) {
+        return ResponseEntity.ok(service.jobStatus(payload));
     }
 }
\ No newline at end of file
@@ -8,6 +8,7 @@ import java.util.List;
 @Data
 public class Aca4001AuditQueryDto {
     private List<Row> items;
+    private String nextCursor; // 下一頁游標；null 表示已無下一頁
 
     @Data
     public static class Row {
@@ -22,4 +23,17 @@ public class Aca4001AuditQueryDto {
         private String userName;      // DNN Users.DisplayName
         private String userIp;
     }
+
+    /**
+     * Service 層內部使用的查詢條件（皆為選用）與 keyset 分頁位置。
+     * - afterAuditId：上一頁最後一列的 AuditID；null 表示第一頁。
+     */
+    @Data
+    public static class Filter {
+        private String action;
+        private String acaCardNo;
+        private Timestamp from;         // CreatedOnDate >= from
+        private Timestamp toExclusive;  // CreatedOnDate < toExclusive
+        private Long afterAuditId;
+    }
 }
@@ -0,0 +1,20 @@
+package com.hn2.cms.dto.aca4001;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class Aca4001BatchResultDto {
+    private Integer total;       // 去重後的卡號數
+    private Integer succeeded;
+    private Integer failed;
+    private List<Item> items;    // 依請求順序的逐卡結果
+
+    @Data
+    public static class Item {
+        private String acaCardNo;
+        private Boolean success;
+        private String message;  // 失敗原因（成功為 null）
+    }
+}
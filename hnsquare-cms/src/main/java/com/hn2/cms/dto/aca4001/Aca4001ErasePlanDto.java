@@ -0,0 +1,29 @@
+package com.hn2.cms.dto.aca4001;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class Aca4001ErasePlanDto {
+    private String acaCardNo;
+    private Boolean over18;
+    private Long totalRows;           // 各規則命中列數加總
+    private Long totalDataBytes;      // 各規則欄位值儲存長度加總（DATALENGTH）
+    private Long totalMirrorBytes;    // 預估寫入 ACA_EraseMirror 的 payload 位元組（未壓縮上限）
+    private Long elapsedMs;           // 試算本身耗時
+    private List<RuleEstimate> rules = new ArrayList<>(); // 依實際執行順序
+
+    @Data
+    public static class RuleEstimate {
+        private Integer order;        // 執行順序（1 起算）
+        private String table;
+        private String parentTable;   // 子表才有
+        private Integer keys;         // 實際過濾鍵數（子表為父鍵映射後）
+        private Long rows;            // 會被鏡像＋清空的列數
+        private Long dataBytes;
+        private Long mirrorBytes;
+        private Long countMs;         // COUNT 查詢耗時，可作為實際讀取成本的參考
+    }
+}
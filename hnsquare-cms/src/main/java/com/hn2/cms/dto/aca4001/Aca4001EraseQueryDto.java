@@ -97,4 +97,18 @@ public class Aca4001EraseQueryDto {
         private LocalDate birthDate;       // 只保留日期
         private LocalDate eighteenthStart; // 18歲當天00:00
     }
+
+    /**
+     * Service 層內部使用：塗銷查詢畫面所需的全部查詢結果（單次往返載入或平行載入皆回傳此結構）。
+     * - personBirth 為 null 表示查無此人；其餘欄位在查無人/未滿 18 時可能為 null。
+     */
+    @Data
+    public static class EraseQueryBundle {
+        private PersonBirth personBirth;
+        private Boolean erased;             // ACABrd.IsErase；查無回 null
+        private Boolean latestProRecClosed; // 最新 ProRec 是否結案；查無回 null
+        private List<CrmRec> crmRecs;
+        private List<ProRec> proRecs;
+        private List<ACADrugUse> acaDrugUses;
+    }
 }
@@ -0,0 +1,28 @@
+package com.hn2.cms.dto.aca4001;
+
+import lombok.Data;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@Data
+public class Aca4001JobDto {
+    private String jobId;
+    private String type;          // ERASE / RESTORE
+    private String acaCardNo;
+    private String state;         // QUEUED / RUNNING / SUCCEEDED / FAILED
+    private Timestamp submittedOn;
+    private Timestamp startedOn;  // 尚未開始為 null
+    private Timestamp finishedOn; // 尚未結束為 null
+    private Long elapsedMs;       // 開始至今（或至結束）的毫秒數；尚未開始為 null
+    private String message;       // 失敗原因
+    private List<RuleProgress> rules;
+
+    @Data
+    public static class RuleProgress {
+        private String table;
+        private Long rowsMirrored;
+        private Long rowsErased;
+        private Long rowsRestored;
+    }
+}
@@ -0,0 +1,13 @@
+package com.hn2.cms.payload.aca4001;
+
+import lombok.Data;
+
+@Data
+public class Aca4001AuditQueryPayload {
+    private String action;     // 選用：ERASE / RESTORE
+    private String acaCardNo;  // 選用：個案卡號
+    private String startDate;  // 選用：yyyy-MM-dd（含）
+    private String endDate;    // 選用：yyyy-MM-dd（含當天）
+    private Integer pageSize;  // 選用：每頁筆數（預設 aca4001.audit.pageSize，上限 aca4001.audit.maxPageSize）
+    private String cursor;     // 選用：上一頁回傳的 nextCursor；空白表示第一頁
+}
@@ -0,0 +1,14 @@
+package com.hn2.cms.payload.aca4001;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class Aca4001BatchErasePayload {
+    private List<String> acaCardNos;   // 要全案塗銷的個案卡號
+    private Integer docNum;
+    private String eraseReason;
+    private Integer chunkSize;         // 每個交易處理幾個卡號（1 = 逐卡提交）；未帶則用 erase.batch.chunkSize
+    private Integer operatorUserId;
+}
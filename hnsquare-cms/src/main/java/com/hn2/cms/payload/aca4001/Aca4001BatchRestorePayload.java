@@ -0,0 +1,13 @@
+package com.hn2.cms.payload.aca4001;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class Aca4001BatchRestorePayload {
+    private List<String> acaCardNos;   // 要還原的個案卡號
+    private String restoreReason;
+    private Integer chunkSize;         // 每個交易處理幾個卡號（1 = 逐卡提交）；未帶則用 erase.batch.chunkSize
+    private String operatorUserId;
+}
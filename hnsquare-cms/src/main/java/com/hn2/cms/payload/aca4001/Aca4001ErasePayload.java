@@ -14,4 +14,5 @@ public class Aca4001ErasePayload {
     private List<String> selectedAcaDrugUseIds;
     private Boolean isOver18;
     private Integer operatorUserId;
+    private Boolean checkpointed; // true：分段塗銷（逐規則提交，可中斷後以相同條件接續）；預設 false 為單一交易
 }
@@ -0,0 +1,8 @@
+package com.hn2.cms.payload.aca4001;
+
+import lombok.Data;
+
+@Data
+public class Aca4001JobStatusPayload {
+    private String jobId;
+}
@@ -6,6 +6,7 @@ import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto.PersonBirth;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public interface Aca4001Repository {
 
@@ -26,6 +27,8 @@ public interface Aca4001Repository {
 
     Boolean findLatestProRecClosed(String acaCardNo);
 
+    Aca4001EraseQueryDto.EraseQueryBundle loadEraseQueryBundle(String acaCardNo, LocalDateTime startTs, LocalDateTime endInclusive);
+
     /*eraseQuery API & restoreQuery API*/
     Boolean findPersonErased(String acaCardNo);
 
@@ -34,8 +37,13 @@ public interface Aca4001Repository {
 
     List<String> findAllProRecIdsByAcaCardNo(String acaCardNo);
 
+    /*batchErase API*/
+    Map<String, Map<String, List<String>>> findAllEraseTargetIdsByAcaCardNos(List<String> acaCardNos);
+
     /*auditQuery API*/
-    List<Aca4001AuditQueryDto.Row> findAuditRows();
+    List<Aca4001AuditQueryDto.Row> findAuditRows(Aca4001AuditQueryDto.Filter filter, int limit);
+
+    boolean existsAuditRow(long auditId);
 
 
 }
@@ -7,12 +7,15 @@ import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto.ProRec;
 import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto.PersonBirth;
 import com.hn2.util.DateUtil;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Repository;
 
 import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -143,81 +146,13 @@ public class Aca4001RepositoryImpl implements Aca4001Repository {
 
         // 依 ids 長度動態組 IN 的佔位符，例如 "?,?,?,?"
         String placeholders = String.join(",", java.util.Collections.nCopies(ids.size(), "?"));
-        String sql =
-                "SELECT " +
-                        "  CR.ID, " +
-                        "  CAST(CR.CreatedOnDate AS date)   AS RecordDate, " +      // 紀錄日期
-                        "  L_BR.Text                        AS BranchName, " +      // 分會別（ParentID=26）
-                        "  L_J.Text                         AS JailAgency, " +      // 執行機關
-                        "  L_C1.Text                        AS CrimeName1, " +      // 罪名1
-                        "  L_C2.Text                        AS CrimeName2, " +      // 罪名2
-                        "  L_C3.Text                        AS CrimeName3, " +      // 罪名3
-                        "  L_NJ.Text                        AS NoJailReason, " +    // 未入獄原因
-                        "  CAST(CR.Crm_VerdictDate AS date) AS VerdictDate, " +     // 執行日期
-                        "  CR.Crm_Sentence                  AS SentenceType, " +    // 刑期種類
-                        "  CR.CrmTerm                       AS TermText, " +        // 刑期(文字)
-                        "  CAST(CR.CrmChaDate AS date)      AS PrisonInDate, " +    // 入獄時間
-                        "  CAST(CR.Crm_ReleaseDate AS date) AS ReleasePlanDate, " + // 預定獲釋日
-                        "  CAST(CR.CrmDisDate AS date)      AS PrisonOutDate, " +   // 出獄日期
-                        "  L_DIS.Text                       AS PrisonOutReason, " + // 出獄原因
-                        "  L_REM.Text                       AS Remission, " +       // 減刑案
-                        "  CR.CrmTrain                      AS TrainType, " +       // 受訓種類
-                        "  CR.CrmMemo                       AS Memo " +             // 備註
-                        "FROM dbo.CrmRec CR " +
-                        "LEFT JOIN dbo.Lists L_BR  " +
-                        "  ON L_BR.ParentID = 26 " +
-                        " AND L_BR.Value = CAST(CR.CreatedByBranchID AS NVARCHAR(50)) " +
-                        "LEFT JOIN dbo.Lists L_J   " +
-                        "  ON L_J.ListName = 'ACA_JAIL_TYPE' AND L_J.Value = CR.ProNoticeDep " +
-                        "LEFT JOIN dbo.Lists L_C1  " +
-                        "  ON L_C1.ListName = 'ACA_CRIME' AND L_C1.Value = CR.CrmCrime1 " +
-                        "LEFT JOIN dbo.Lists L_C2  " +
-                        "  ON L_C2.ListName = 'ACA_CRIME' AND L_C2.Value = CR.CrmCrime2 " +
-                        "LEFT JOIN dbo.Lists L_C3  " +
-                        "  ON L_C3.ListName = 'ACA_CRIME' AND L_C3.Value = CR.CrmCrime3 " +
-                        "LEFT JOIN dbo.Lists L_NJ  " +
-                        "  ON L_NJ.ListName = 'ACA_NOJAIL' AND L_NJ.Value = CR.Crm_NoJail " +
-                        "LEFT JOIN dbo.Lists L_DIS " +
-                        "  ON L_DIS.ListName = 'ACA_DISCHARGE' AND L_DIS.Value = CR.CrmDischarge " +
-                        "LEFT JOIN dbo.Lists L_REM " +
-                        "  ON L_REM.ListName = 'ACA_REMISSION' AND L_REM.Value = CR.CrmRemission " +
-                        "WHERE CR.IsDeleted = 0 " +
-                        "  AND CR.ID IN (" + placeholders + ")";
+        String sql = CRM_REC_SELECT +
+                "WHERE CR.IsDeleted = 0 " +
+                "  AND CR.ID IN (" + placeholders + ")";
         Object[] params = ids.toArray(); // 將 ID 清單轉為綁定參數陣列
 
         // 將結果集映射到 CrmRec DTO，並把 date 欄位轉民國字串（DateUtil）
-        List<CrmRec> rows = jdbc.query(sql, params, (rs, i) -> {
-            var c = new CrmRec();
-            c.setId(rs.getString("ID"));
-
-            var d1 = rs.getDate("RecordDate");
-            c.setRecordDate(d1 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d1), yyyMMdd_slash));
-            c.setBranchName(rs.getString("BranchName"));
-            c.setJailAgency(rs.getString("JailAgency"));
-            c.setCrimeName1(rs.getString("CrimeName1"));
-            c.setCrimeName2(rs.getString("CrimeName2"));
-            c.setCrimeName3(rs.getString("CrimeName3"));
-            c.setNoJailReason(rs.getString("NoJailReason"));
-
-            var d2 = rs.getDate("VerdictDate");
-            c.setVerdictDate(d2 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d2), yyyMMdd_slash));
-            c.setSentenceType(rs.getString("SentenceType"));
-            c.setTermText(rs.getString("TermText"));
-
-            var d3 = rs.getDate("PrisonInDate");
-            c.setPrisonInDate(d3 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d3), yyyMMdd_slash));
-
-            var d4 = rs.getDate("ReleasePlanDate");
-            c.setReleasePlanDate(d4 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d4), yyyMMdd_slash));
-
-            var d5 = rs.getDate("PrisonOutDate");
-            c.setPrisonOutDate(d5 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d5), yyyMMdd_slash));
-            c.setPrisonOutReason(rs.getString("PrisonOutReason"));
-            c.setRemission(rs.getString("Remission"));
-            c.setTrainType(rs.getString("TrainType"));
-            c.setMemo(rs.getString("Memo"));
-            return c;
-        });
+        List<CrmRec> rows = jdbc.query(sql, params, Aca4001RepositoryImpl::mapCrmRec);
 
         // 依呼叫端給的 ids 原順序重排（IN(...) 不保證順序）
         Map<String, Integer> order = new HashMap<>();
@@ -238,157 +173,15 @@ public class Aca4001RepositoryImpl implements Aca4001Repository {
         if (ids == null || ids.isEmpty()) return List.of();
 
         // 使用 named parameter 的 IN (:ids)；SQL 前置分號避免與前一語句相黏
-        String sql =
-                ";SELECT " +
-                        "    PR.ID, " +
-                        "    L_BR.[Text]                           AS BranchName, " + // 分會（Lists.ParentID=26）
-                        "    L_SRC.[Text]                          AS SourceText, " + // 來源（Lists.ACA_SOURCE）
-                        // 健康狀況：以 CASE 轉對應中文，亦可改成 Lists 對照
-                        "    CASE PR.ProHealth " +
-                        "         WHEN 'A001' THEN N'良好' " +
-                        "         WHEN 'A002' THEN N'普通' " +
-                        "         WHEN 'A003' THEN N'舊制身心障礙(16類)' " +
-                        "         WHEN 'A004' THEN N'欠佳' " +
-                        "         WHEN 'A005' THEN N'具精神異常傾向' " +
-                        "         WHEN 'A006' THEN N'新制身心障礙(8類)' " +
-                        "         ELSE NULL END                    AS ProHealthText, " +
-
-                        // 三層保護等級：各自取 ProDtl 最新一筆（依 PD.ID DESC）
-                        "    OA1.L1Text                            AS ProtectLevel1, " +
-                        "    OA2.L2Text                            AS ProtectLevel2, " +
-                        "    OA3.L3Text                            AS ProtectLevel3, " +
-
-                        // 重要日期（僅保留日期部分）
-                        "    CAST(PR.ProNoticeDate AS date)        AS ProNoticeDate, " +
-                        "    CAST(PR.ProDate       AS date)        AS ProDate, " +
-
-                        // 其他屬性
-                        "    PR.IsAdopt                              AS Adopt, " + // bit -> Boolean
-                        "    CASE WHEN EXISTS ( " +                                // 家支標籤（是否有特定 ProjectRec）
-                        "        SELECT 1 FROM dbo.ProjectRec P " +
-                        "        WHERE P.LinkTableID = PR.ID AND P.LinkTableType = 'P' " +
-                        "          AND P.ProjectID = 'A20130400094' AND P.IsDeleted = 0 " +
-                        "    ) THEN N'家支' ELSE N'' END           AS HomeSupportTag, " +
-                        "    L_DRUG.[Text]                         AS DrugProjectText, " +      // 毒品方案
-                        "    CASE WHEN PR.ProCloseDate IS NULL THEN 0 ELSE 1 END AS Closed, " + // 是否結案
-                        "    U.DisplayName                         AS StaffDisplayName, " +     // 建檔者顯示名（跨庫 Users）
-
-                        // CounselorInstDisplay = 區域 + 空白 + 機構名稱 + (實習/正式)
-                        "    COALESCE( " +
-                        "      NULLIF( " +
-                        "        CONCAT( " +
-                        "          ISNULL(LA.[Text], N''), " +   // 區域（Lists: ACA_INSTAREA）
-                        "          CASE WHEN NULLIF(LA.[Text], N'') IS NOT NULL AND NULLIF(IB.InstName, N'') IS NOT NULL THEN N' ' ELSE N'' END, " + // 區域與機構名皆非空時才加空白
-                        "          ISNULL(IB.InstName, N''), " + // 機構名稱（InstBrd.InstName）
-                        "          CASE " +
-                        "            WHEN OM.WorkerID IS NULL " +
-                        "                 OR (NULLIF(LA.[Text], N'') IS NULL AND NULLIF(IB.InstName, N'') IS NULL) THEN N'' " + // 沒有輔導員或兩者皆空：不加尾註（避免只顯示「(正式)」）
-                        "            WHEN COALESCE(IB.IsUnofficial, 0) = 1 THEN N'(實習)' " +
-                        "            ELSE N'(正式)' " +
-                        "          END " +
-                        "        ), N'' " + // CONCAT 結果若為空字串，轉 NULL
-                        "      ), N'' " +   // 再把 NULL 轉回空字串
-                        "    ) AS CounselorInstDisplay, " +
-                        "    OM.WorkerID AS CounselorWorkerId, " + // 由 OUTER APPLY 取得的輔導員卡號
-                        "    PR.ProFile AS ArchiveName " +         // 歸檔名稱
-                        "FROM dbo.ProRec PR " +
-                        // 來源、毒品方案等 Lists 對照
-                        "LEFT JOIN dbo.Lists L_BR  " +
-                        "       ON L_BR.ParentID = 26 " +
-                        "      AND L_BR.Value = CAST(PR.CreatedByBranchID AS NVARCHAR(50)) " +
-                        "LEFT JOIN dbo.Lists L_SRC " +
-                        "       ON L_SRC.ListName = 'ACA_SOURCE' " +
-                        "      AND L_SRC.Value    = PR.ProSource " +
-                        "LEFT JOIN dbo.Lists L_DRUG " +
-                        "       ON L_DRUG.ListName = 'PROJ_DRUG' " +
-                        "      AND L_DRUG.Value    = PR.DrugForm " +
-                        // 建檔者顯示名稱（跨 DB）
-                        "LEFT JOIN [CaseManagementDnnDB].dbo.Users U " +
-                        "       ON U.UserID = PR.CreatedByUserID " +
-
-                        // L1：ProItem 最新一筆
-                        "OUTER APPLY ( " +
-                        "    SELECT TOP (1) L1.[Text] AS L1Text " +
-                        "    FROM dbo.ProDtl PD " +
-                        "    LEFT JOIN dbo.Lists L1 ON L1.ListName = 'ACA_PROTECT' AND L1.Value = PD.ProItem " +
-                        "    WHERE PD.IsDeleted = 0 AND PD.ProRecID = PR.ID AND PD.ProItem IS NOT NULL " +
-                        "    ORDER BY PD.ID DESC " +       //最新一筆
-                        ") OA1 " +
-
-                        // L2：Interview 最新一筆
-                        "OUTER APPLY ( " +
-                        "    SELECT TOP (1) L2.[Text] AS L2Text " +
-                        "    FROM dbo.ProDtl PD " +
-                        "    LEFT JOIN dbo.Lists L2 ON L2.ListName = 'ACA_PROTECT' AND L2.Value = PD.Interview " +
-                        "    WHERE PD.IsDeleted = 0 AND PD.ProRecID = PR.ID AND PD.Interview IS NOT NULL " +
-                        "    ORDER BY PD.ID DESC " +       //最新一筆
-                        ") OA2 " +
-
-                        // L3：ProPlace 最新一筆
-                        "OUTER APPLY ( " +
-                        "    SELECT TOP (1) L3.[Text] AS L3Text " +
-                        "    FROM dbo.ProDtl PD " +
-                        "    LEFT JOIN dbo.Lists L3 ON L3.ListName = 'ACA_PROTECT' AND L3.Value = PD.ProPlace " +
-                        "    WHERE PD.IsDeleted = 0 AND PD.ProRecID = PR.ID AND PD.ProPlace IS NOT NULL " +
-                        "    ORDER BY PD.ID DESC " +       //最新一筆
-                        ") OA3 " +
-
-                        // 取第一位非 EP 成員（當作輔導員）
-                        "OUTER APPLY ( " +
-                        "    SELECT TOP (1) PRM.WorkerID " +
-                        "    FROM dbo.ProRecMember PRM " +
-                        "    WHERE PRM.ProRecID = PR.ID " +
-                        "      AND PRM.MemberType <> 'EP' " +
-                        "      AND PRM.IsDeleted = 0 " +
-                        "    ORDER BY PRM.ID " +
-                        ") OM " +
-                        // 輔導員 WorkerID -> 機構資料/區域
-                        "LEFT JOIN dbo.InstBrd IB " +
-                        "       ON IB.InstCardNo = OM.WorkerID " +
-                        "      AND IB.IsDeleted = 0 " +
-                        "LEFT JOIN dbo.Lists LA " +
-                        "       ON LA.ListName = 'ACA_INSTAREA' " +
-                        "      AND LA.Value    = IB.InstArea " +
-                        "WHERE PR.IsDeleted = 0 " +
-                        "  AND PR.ID IN (:ids)";
+        String sql = ";" + PRO_REC_SELECT +
+                "WHERE PR.IsDeleted = 0 " +
+                "  AND PR.ID IN (:ids)";
 
         // 綁定 named 參數 :ids
         MapSqlParameterSource params = new MapSqlParameterSource().addValue("ids", ids);
 
         // 查詢並映射到 DTO
-        List<Aca4001EraseQueryDto.ProRec> rows = npJdbc.query(sql, params, (rs, i) -> {
-            var p = new Aca4001EraseQueryDto.ProRec();
-            p.setId(rs.getString("ID"));
-            p.setBranchName(rs.getString("BranchName"));
-            p.setSourceText(rs.getString("SourceText"));
-            p.setProHealthText(rs.getString("ProHealthText"));
-            p.setProtectLevel1(rs.getString("ProtectLevel1"));
-            p.setProtectLevel2(rs.getString("ProtectLevel2"));
-            p.setProtectLevel3(rs.getString("ProtectLevel3"));
-
-            var d1 = rs.getDate("ProNoticeDate");
-            p.setProNoticeDate(d1 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d1), yyyMMdd_slash));
-
-            var d2 = rs.getDate("ProDate");
-            p.setProDate(d2 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d2), yyyMMdd_slash));
-
-            // IsAdopt: bit -> Boolean（允許 null）
-            Object adoptObj = rs.getObject("Adopt");
-            p.setAdopt(adoptObj == null ? null : (Boolean) adoptObj);
-
-            p.setHomeSupportTag(rs.getString("HomeSupportTag"));
-            p.setDrugProjectText(rs.getString("DrugProjectText"));
-
-            // Closed: 0/1 -> Boolean（允許 null）
-            Object closedObj = rs.getObject("Closed");
-            p.setClosed(closedObj == null ? null : ((Integer) closedObj) == 1);
-
-            p.setStaffDisplayName(rs.getString("StaffDisplayName"));
-            p.setCounselorInstDisplay(rs.getString("CounselorInstDisplay"));
-            //p.setCounselorWorkerId(rs.getString("CounselorWorkerId")); // 如需回傳可打開
-            p.setArchiveName(rs.getString("ArchiveName"));
-            return p;
-        });
+        List<Aca4001EraseQueryDto.ProRec> rows = npJdbc.query(sql, params, Aca4001RepositoryImpl::mapProRec);
 
         // 依輸入 ids 還原順序（IN 不保證順序）
         Map<String, Integer> order = new HashMap<>();
@@ -412,25 +205,9 @@ public class Aca4001RepositoryImpl implements Aca4001Repository {
         // 呼叫端未提供 ID 時直接回空清單以避免不必要的 SQL 查詢
         if (drgIds == null || drgIds.isEmpty()) return List.of();
 
-        String sql =
-                ";SELECT " +
-                        "       ADU.ID                               AS id, " +               // 主鍵供排序用
-                        "       L_BR.[Text]                          AS branchName, " +        // Lists 轉分會名稱
-                        "       CAST(ADU.CreatedOnDate AS date)      AS RecordDate, " +      // 取建檔日期(僅日期)做為顯示用紀錄日
-                        "       ADU.DrgUserText                      AS drgUserText, " +
-                        "       ADU.OprFamilyText                    AS oprFamilyText, " +
-                        "       ADU.OprFamilyCareText                AS oprFamilyCareText, " +
-                        "       ADU.OprSupportText                   AS oprSupportText, " +
-                        "       ADU.OprContactText                   AS oprContactText, " +
-                        "       ADU.OprReferText                     AS oprReferText, " +
-                        "       ADU.Addr                             AS addr, " +
-                        "       ADU.OprAddr                          AS oprAddr " +
-                        "FROM dbo.AcaDrugUse ADU " +
-                        "LEFT JOIN dbo.Lists L_BR " +
-                        "       ON L_BR.ParentID = 26 " +
-                        "      AND L_BR.Value = CAST(ADU.CreatedByBranchID AS NVARCHAR(50)) " +
-                        "WHERE ADU.IsDeleted = 0 " +                                        // 僅取未刪除資料
-                        "  AND ADU.ID IN (:ids)";
+        String sql = ";" + DRUG_USE_SELECT +
+                "WHERE ADU.IsDeleted = 0 " +                                        // 僅取未刪除資料
+                "  AND ADU.ID IN (:ids)";
 
         // 以 named parameter 綁定 ID 清單，避免字串拼接注入風險
         MapSqlParameterSource params = new MapSqlParameterSource().addValue("ids", drgIds);
@@ -438,22 +215,8 @@ public class Aca4001RepositoryImpl implements Aca4001Repository {
         // 查詢後先保留主鍵，稍後依輸入順序重建清單
         List<java.util.AbstractMap.SimpleEntry<String, Aca4001EraseQueryDto.ACADrugUse>> rows =
                 npJdbc.query(sql, params, (rs, i) -> {
-                    String id = rs.getString("id");
-                    var dto = new Aca4001EraseQueryDto.ACADrugUse();
-                    dto.setId(id); // ✅ 加上這行，DTO 就會包含主鍵
-                    // recordDate -> 民國 yyy/MM/dd（若為 null 則回 null）
-                    java.sql.Date d1 = rs.getDate("RecordDate");
-                    dto.setRecordDate(d1 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d1), yyyMMdd_slash));
-                    dto.setBranchName(rs.getString("branchName"));
-                    dto.setDrgUserText(rs.getString("drgUserText"));
-                    dto.setOprFamilyText(rs.getString("oprFamilyText"));
-                    dto.setOprFamilyCareText(rs.getString("oprFamilyCareText"));
-                    dto.setOprSupportText(rs.getString("oprSupportText"));
-                    dto.setOprContactText(rs.getString("oprContactText"));
-                    dto.setOprReferText(rs.getString("oprReferText"));
-                    dto.setAddr(rs.getString("addr"));
-                    dto.setOprAddr(rs.getString("oprAddr"));
-                    return new java.util.AbstractMap.SimpleEntry<>(id, dto);
+                    var dto = mapAcaDrugUse(rs, i);
+                    return new java.util.AbstractMap.SimpleEntry<>(dto.getId(), dto);
                 });
 
         Map<String, Aca4001EraseQueryDto.ACADrugUse> mapped = new HashMap<>();
@@ -500,6 +263,128 @@ public class Aca4001RepositoryImpl implements Aca4001Repository {
         });
     }
 
+    /**
+     * 塗銷查詢畫面的單次往返載入：一個 batch 送出全部 SELECT，依序讀回多個結果集。
+     * 結果集順序：
+     * 1) 生日 / 滿 18 歲當日 / 是否已塗銷（ACABrd，TOP 1）
+     * 2) 最新 ProRec 是否結案
+     * 3) CrmRec 明細（該卡號全部，依 ID）
+     * 4) 滿 18 歲當日以前的 ProRec 明細（18 歲當日在 SQL 內由 ACABirth 算出；可選 [startTs, endInclusive]，依 ProNoticeDate）
+     * 5) AcaDrugUse 明細（該卡號全部，依 ID）
+     * 說明：
+     * - 欄位與 DTO 對應沿用 findCrmRecsByIds / findProRecsByIds / findAcaDrugUsesByIds 的 SELECT 與列對應，結果一致；
+     * 原本的「先查 ID 再依 ID 補明細」改為直接以卡號過濾，省去兩段式查詢。
+     * - 未滿 18 的判斷仍由呼叫端以系統當日處理（未滿 18 時 3~5 的結果直接捨棄）。
+     * - 只取一次連線、一次執行；SET NOCOUNT ON 避免多出更新筆數結果。
+     *
+     * @param acaCardNo    個案卡號
+     * @param startTs      選用：ProNoticeDate 起始時間（含）
+     * @param endInclusive 選用：ProNoticeDate 結束時間（含）
+     * @return 查詢結果；查無此人時 personBirth 為 null
+     */
+    @Override
+    public Aca4001EraseQueryDto.EraseQueryBundle loadEraseQueryBundle(String acaCardNo, LocalDateTime startTs, LocalDateTime endInclusive) {
+        String sql = "SET NOCOUNT ON; " +
+                // 1) 生日 / 18 歲當日 / 是否已塗銷
+                "SELECT TOP 1 " +
+                "  CAST(ACABirth AS date) AS BirthDate, " +
+                "  CASE WHEN ACABirth IS NOT NULL THEN DATEADD(YEAR, 18, CAST(ACABirth AS date)) ELSE NULL END AS EighteenthStart, " +
+                "  CASE WHEN IsErase = 1 THEN 1 ELSE 0 END AS Erased " +
+                "FROM dbo.ACABrd " +
+                "WHERE ACACardNo = ? AND IsDeleted = 0; " +
+                // 2) 最新 ProRec 是否結案
+                "SELECT TOP 1 CASE WHEN ProCloseDate IS NULL THEN 0 ELSE 1 END AS Closed " +
+                "FROM dbo.ProRec " +
+                "WHERE IsDeleted = 0 AND ACACardNo = ? " +
+                "ORDER BY ProDate DESC; " +
+                // 3) CrmRec 明細
+                CRM_REC_SELECT +
+                "WHERE CR.IsDeleted = 0 AND CR.ACACardNo = ? " +
+                "ORDER BY CR.ID; " +
+                // 4) 18 歲前 ProRec 明細（18 歲當日為 NULL 時比較結果為 UNKNOWN → 不回傳任何列）
+                PRO_REC_SELECT +
+                "WHERE PR.IsDeleted = 0 AND PR.ACACardNo = ? " +
+                "  AND PR.ProNoticeDate < (SELECT TOP 1 DATEADD(YEAR, 18, CAST(B.ACABirth AS date)) " +
+                "                          FROM dbo.ACABrd B WHERE B.ACACardNo = ? AND B.IsDeleted = 0) " +
+                "  AND (? IS NULL OR PR.ProNoticeDate >= ?) " +
+                "  AND (? IS NULL OR PR.ProNoticeDate <= ?) " +
+                "ORDER BY PR.ProNoticeDate; " +
+                // 5) AcaDrugUse 明細
+                DRUG_USE_SELECT +
+                "WHERE ADU.IsDeleted = 0 AND ADU.ACACardNo = ? " +
+                "ORDER BY ADU.ID;";
+
+        return jdbc.execute((ConnectionCallback<Aca4001EraseQueryDto.EraseQueryBundle>) con -> {
+            try (var ps = con.prepareStatement(sql)) {
+                int p = 1;
+                ps.setString(p++, acaCardNo); // 1)
+                ps.setString(p++, acaCardNo); // 2)
+                ps.setString(p++, acaCardNo); // 3)
+                ps.setString(p++, acaCardNo); // 4)
+                ps.setString(p++, acaCardNo);
+                ps.setObject(p++, startTs);
+                ps.setObject(p++, startTs);
+                ps.setObject(p++, endInclusive);
+                ps.setObject(p++, endInclusive);
+                ps.setString(p, acaCardNo);   // 5)
+
+                var bundle = new Aca4001EraseQueryDto.EraseQueryBundle();
+                int index = 0;
+                boolean isResultSet = ps.execute();
+                while (isResultSet || ps.getUpdateCount() != -1) {
+                    if (isResultSet) {
+                        try (ResultSet rs = ps.getResultSet()) {
+                            readEraseQueryResult(index++, rs, bundle);
+                        }
+                    }
+                    isResultSet = ps.getMoreResults();
+                }
+                if (index != 5) {
+                    throw new IllegalStateException("塗銷查詢結果集數量不符：預期 5，實際 " + index);
+                }
+                return bundle;
+            }
+        });
+    }
+
+    // 依結果集順序填入 bundle（順序見 loadEraseQueryBundle）
+    private static void readEraseQueryResult(int index, ResultSet rs, Aca4001EraseQueryDto.EraseQueryBundle bundle) throws SQLException {
+        switch (index) {
+            case 0:
+                if (rs.next()) {
+                    var birthSql = rs.getDate("BirthDate");
+                    var e18Sql = rs.getDate("EighteenthStart");
+                    var pb = new PersonBirth();
+                    pb.setBirthDate(birthSql == null ? null : birthSql.toLocalDate());
+                    pb.setEighteenthStart(e18Sql == null ? null : e18Sql.toLocalDate());
+                    bundle.setPersonBirth(pb);
+                    bundle.setErased(rs.getInt("Erased") == 1);
+                }
+                break;
+            case 1:
+                bundle.setLatestProRecClosed(rs.next() ? rs.getInt("Closed") == 1 : null);
+                break;
+            case 2:
+                bundle.setCrmRecs(mapAll(rs, Aca4001RepositoryImpl::mapCrmRec));
+                break;
+            case 3:
+                bundle.setProRecs(mapAll(rs, Aca4001RepositoryImpl::mapProRec));
+                break;
+            case 4:
+                bundle.setAcaDrugUses(mapAll(rs, Aca4001RepositoryImpl::mapAcaDrugUse));
+                break;
+            default:
+                throw new IllegalStateException("塗銷查詢多出未預期的結果集: index=" + index);
+        }
+    }
+
+    private static <T> List<T> mapAll(ResultSet rs, RowMapper<T> mapper) throws SQLException {
+        var out = new ArrayList<T>();
+        int i = 0;
+        while (rs.next()) out.add(mapper.mapRow(rs, i++));
+        return out;
+    }
+
     /*eraseQuery API & restoreQuery API*/
 
     /**
@@ -573,41 +458,381 @@ public class Aca4001RepositoryImpl implements Aca4001Repository {
         }
     }
 
+    /*batchErase API*/
+
+    /**
+     * 批次版「全案塗銷目標 ID」查詢：一次取得多個卡號底下所有 CrmRec / ProRec / AcaDrugUse 的主鍵 ID。
+     * - 以 UNION ALL 合成一個語句，每批最多 600 個卡號（同一 IN 清單出現三次，受 2100 參數上限約束）。
+     * - 卡號比對採 trim + 大寫（與 SQL Server 預設定序一致），回傳以「呼叫端傳入的卡號」為鍵。
+     *
+     * @param acaCardNos 個案卡號清單
+     * @return 卡號 → (表名 → ID 清單)；查無資料的卡號三張表皆為空清單
+     */
+    @Override
+    public Map<String, Map<String, List<String>>> findAllEraseTargetIdsByAcaCardNos(List<String> acaCardNos) {
+        var out = new java.util.LinkedHashMap<String, Map<String, List<String>>>();
+        var byNorm = new HashMap<String, String>();
+        for (String aca : acaCardNos) {
+            var m = new HashMap<String, List<String>>();
+            m.put("CrmRec", new ArrayList<>());
+            m.put("ProRec", new ArrayList<>());
+            m.put("AcaDrugUse", new ArrayList<>());
+            out.put(aca, m);
+            byNorm.put(aca.trim().toUpperCase(java.util.Locale.ROOT), aca);
+        }
+        String sql = "SELECT 'CrmRec' AS tbl, ACACardNo AS aca, ID AS id FROM dbo.CrmRec WHERE ACACardNo IN (:acas) " +
+                "UNION ALL SELECT 'ProRec', ACACardNo, ID FROM dbo.ProRec WHERE ACACardNo IN (:acas) " +
+                "UNION ALL SELECT 'AcaDrugUse', ACACardNo, ID FROM dbo.AcaDrugUse WHERE ACACardNo IN (:acas)";
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < acaCardNos.size(); i += 600) {
+                var sub = acaCardNos.subList(i, Math.min(i + 600, acaCardNos.size()));
+                var t = con.createQuery(sql).addParameter("acas", sub).executeAndFetchTable();
+                for (var row : t.rows()) {
+                    String key = byNorm.get(row.getString("aca").trim().toUpperCase(java.util.Locale.ROOT));
+                    if (key == null) continue;
+                    out.get(key).get(row.getString("tbl")).add(row.getString("id"));
+                }
+            }
+        }
+        return out;
+    }
+
     /*auditQuery API*/
 
     /**
-     * 讀取 ACA_EraseAudit 塗銷異動表（不彙總，每列即一次動作），並連到 DNN 使用者表取顯示名稱。
-     * - 依建立時間新到舊排序。
-     * 回傳：
-     * - 對應 Aca4001AuditQueryDto.Row 的清單；查無資料時回空清單。
+     * 讀取 ACA_EraseAudit 塗銷異動表的一頁（不彙總，每列即一次動作），並連到 DNN 使用者表取顯示名稱。
+     * - 依 (CreatedOnDate DESC, AuditID DESC) 排序，以 keyset 分頁：從上一頁最後一列（afterAuditId）之後取 TOP (limit)，
+     * 不用 OFFSET，翻到後面的頁也只讀該頁的列（搭配 sql/aca4001/05_erase_audit_keyset_index.sql）。
+     * - 篩選條件只在有值時才組進 WHERE，避免 (@p IS NULL OR ...) 讓索引失效。
+     * - 先在稽核表取出本頁，再連 DNN Users（只對本頁的列查顯示名稱）。
+     * - afterAuditId 指向的列不存在時（K 為空）結果必為空；呼叫端以 {@link #existsAuditRow} 區分「已到最後」與「游標失效」。
+     *
+     * @param filter 篩選條件與分頁位置
+     * @param limit  最多取幾列
+     * @return 對應 Aca4001AuditQueryDto.Row 的清單；查無資料時回空清單。
      */
     @Override
-    public List<Aca4001AuditQueryDto.Row> findAuditRows() {
+    public List<Aca4001AuditQueryDto.Row> findAuditRows(Aca4001AuditQueryDto.Filter filter, int limit) {
+        var where = new ArrayList<String>();
+        if (filter.getAction() != null) where.add("A.ActionType = :action");
+        if (filter.getAcaCardNo() != null) where.add("A.ACACardNo = :aca");
+        if (filter.getFrom() != null) where.add("A.CreatedOnDate >= :fromTs");
+        if (filter.getToExclusive() != null) where.add("A.CreatedOnDate < :toTs");
+        if (filter.getAfterAuditId() != null) {
+            // keyset：嚴格排在上一頁最後一列 K 之後（K 以主鍵取回，時間值與欄位型別完全一致，不受參數精度影響）
+            where.add("(A.CreatedOnDate < K.CreatedOnDate OR (A.CreatedOnDate = K.CreatedOnDate AND A.AuditID < K.AuditID))");
+        }
+
         String sql =
                 "SELECT " +
-                        "  A.AuditID                                  AS auditId, " +
+                        "  P.AuditID                                  AS auditId, " +
                         // 將時間標準化為 DATETIME2(0)，方便 Java 端映射與顯示
-                        "  CAST(A.CreatedOnDate AS DATETIME2(0))      AS createdOn, " +
-                        "  A.ACACardNo                                AS acaCardNo, " +
-                        "  A.ActionType                               AS action, " +
+                        "  CAST(P.CreatedOnDate AS DATETIME2(0))      AS createdOn, " +
+                        "  P.ACACardNo                                AS acaCardNo, " +
+                        "  P.ActionType                               AS action, " +
                         // docNum 轉成 INT（若欄位是可空或非數字，CAST 失敗會丟錯；可視情況改 TRY_CONVERT）
-                        "  CAST(A.DocNum AS INT)                      AS docNum, " +
-                        "  A.EraseReason                              AS eraseReason, " +
-                        "  A.RestoreReason                            AS restoreReason, " +
+                        "  CAST(P.DocNum AS INT)                      AS docNum, " +
+                        "  P.EraseReason                              AS eraseReason, " +
+                        "  P.RestoreReason                            AS restoreReason, " +
                         // 將可能為 INT 或 NVARCHAR 的欄位統一以字串型別回傳，利於 DTO 映射
-                        "  CAST(A.CreatedByUserID AS NVARCHAR(50))    AS userId, " +
-                        "  CAST(A.UserIP AS NVARCHAR(64))             AS userIp, " +
+                        "  CAST(P.CreatedByUserID AS NVARCHAR(50))    AS userId, " +
+                        "  CAST(P.UserIP AS NVARCHAR(64))             AS userIp, " +
                         // 連到 DNN Users 取顯示名稱；若 CreatedByUserID 不是純數字，TRY_CONVERT 會回 NULL，LEFT
                         "  U.DisplayName                              AS userName " +
-                        "FROM dbo.ACA_EraseAudit A " +
+                        "FROM ( " +
+                        "  SELECT TOP (:limit) A.AuditID, A.CreatedOnDate, A.ACACardNo, A.ActionType, A.DocNum, " +
+                        "         A.EraseReason, A.RestoreReason, A.CreatedByUserID, A.UserIP " +
+                        "  FROM dbo.ACA_EraseAudit A " +
+                        (filter.getAfterAuditId() == null ? "" :
+                                "  CROSS JOIN (SELECT CreatedOnDate, AuditID FROM dbo.ACA_EraseAudit WHERE AuditID = :afterId) K ") +
+                        (where.isEmpty() ? "" : "  WHERE " + String.join(" AND ", where) + " ") +
+                        "  ORDER BY A.CreatedOnDate DESC, A.AuditID DESC " +
+                        ") P " +
                         "LEFT JOIN CaseManagementDnnDB.dbo.Users U " +
-                        "  ON U.UserID = TRY_CONVERT(INT, A.CreatedByUserID) " +
-                        "ORDER BY A.CreatedOnDate DESC";
+                        "  ON U.UserID = TRY_CONVERT(INT, P.CreatedByUserID) " +
+                        "ORDER BY P.CreatedOnDate DESC, P.AuditID DESC";
+
+        try (var con = sql2o.open(); var q = con.createQuery(sql)) {
+            q.addParameter("limit", limit);
+            if (filter.getAction() != null) q.addParameter("action", filter.getAction());
+            if (filter.getAcaCardNo() != null) q.addParameter("aca", filter.getAcaCardNo());
+            if (filter.getFrom() != null) q.addParameter("fromTs", filter.getFrom());
+            if (filter.getToExclusive() != null) q.addParameter("toTs", filter.getToExclusive());
+            if (filter.getAfterAuditId() != null) q.addParameter("afterId", filter.getAfterAuditId());
+            return q.executeAndFetch(Aca4001AuditQueryDto.Row.class);
+        }
+    }
 
-        try (var con = sql2o.open()) {
-            return con.createQuery(sql).executeAndFetch(Aca4001AuditQueryDto.Row.class);
+    /**
+     * ACA_EraseAudit 是否有此 AuditID（分頁游標的錨點列是否還在）。
+     */
+    @Override
+    public boolean existsAuditRow(long auditId) {
+        String sql = "SELECT COUNT(1) FROM dbo.ACA_EraseAudit WHERE AuditID = :id";
+        try (var con = sql2o.open(); var q = con.createQuery(sql)) {
+            Integer n = q.addParameter("id", auditId).executeScalar(Integer.class);
+            return n != null && n > 0;
         }
     }
 
+    /*eraseQuery 共用 SELECT 與列對應*/
+
+    /**
+     * CrmRec 檢視欄位（SELECT ... FROM ... JOIN，不含 WHERE）；依 ID 查詢與單次往返載入共用。
+     */
+    private static final String CRM_REC_SELECT =
+            "SELECT " +
+                    "  CR.ID, " +
+                    "  CAST(CR.CreatedOnDate AS date)   AS RecordDate, " +      // 紀錄日期
+                    "  L_BR.Text                        AS BranchName, " +      // 分會別（ParentID=26）
+                    "  L_J.Text                         AS JailAgency, " +      // 執行機關
+                    "  L_C1.Text                        AS CrimeName1, " +      // 罪名1
+                    "  L_C2.Text                        AS CrimeName2, " +      // 罪名2
+                    "  L_C3.Text                        AS CrimeName3, " +      // 罪名3
+                    "  L_NJ.Text                        AS NoJailReason, " +    // 未入獄原因
+                    "  CAST(CR.Crm_VerdictDate AS date) AS VerdictDate, " +     // 執行日期
+                    "  CR.Crm_Sentence                  AS SentenceType, " +    // 刑期種類
+                    "  CR.CrmTerm                       AS TermText, " +        // 刑期(文字)
+                    "  CAST(CR.CrmChaDate AS date)      AS PrisonInDate, " +    // 入獄時間
+                    "  CAST(CR.Crm_ReleaseDate AS date) AS ReleasePlanDate, " + // 預定獲釋日
+                    "  CAST(CR.CrmDisDate AS date)      AS PrisonOutDate, " +   // 出獄日期
+                    "  L_DIS.Text                       AS PrisonOutReason, " + // 出獄原因
+                    "  L_REM.Text                       AS Remission, " +       // 減刑案
+                    "  CR.CrmTrain                      AS TrainType, " +       // 受訓種類
+                    "  CR.CrmMemo                       AS Memo " +             // 備註
+                    "FROM dbo.CrmRec CR " +
+                    "LEFT JOIN dbo.Lists L_BR  " +
+                    "  ON L_BR.ParentID = 26 " +
+                    " AND L_BR.Value = CAST(CR.CreatedByBranchID AS NVARCHAR(50)) " +
+                    "LEFT JOIN dbo.Lists L_J   " +
+                    "  ON L_J.ListName = 'ACA_JAIL_TYPE' AND L_J.Value = CR.ProNoticeDep " +
+                    "LEFT JOIN dbo.Lists L_C1  " +
+                    "  ON L_C1.ListName = 'ACA_CRIME' AND L_C1.Value = CR.CrmCrime1 " +
+                    "LEFT JOIN dbo.Lists L_C2  " +
+                    "  ON L_C2.ListName = 'ACA_CRIME' AND L_C2.Value = CR.CrmCrime2 " +
+                    "LEFT JOIN dbo.Lists L_C3  " +
+                    "  ON L_C3.ListName = 'ACA_CRIME' AND L_C3.Value = CR.CrmCrime3 " +
+                    "LEFT JOIN dbo.Lists L_NJ  " +
+                    "  ON L_NJ.ListName = 'ACA_NOJAIL' AND L_NJ.Value = CR.Crm_NoJail " +
+                    "LEFT JOIN dbo.Lists L_DIS " +
+                    "  ON L_DIS.ListName = 'ACA_DISCHARGE' AND L_DIS.Value = CR.CrmDischarge " +
+                    "LEFT JOIN dbo.Lists L_REM " +
+                    "  ON L_REM.ListName = 'ACA_REMISSION' AND L_REM.Value = CR.CrmRemission ";
+
+    /**
+     * ProRec 檢視欄位（SELECT ... FROM ... APPLY/JOIN，不含 WHERE）；依 ID 查詢與單次往返載入共用。
+     */
+    private static final String PRO_REC_SELECT =
+            "SELECT " +
+                    "    PR.ID, " +
+                    "    L_BR.[Text]                           AS BranchName, " + // 分會（Lists.ParentID=26）
+                    "    L_SRC.[Text]                          AS SourceText, " + // 來源（Lists.ACA_SOURCE）
+                    // 健康狀況：以 CASE 轉對應中文，亦可改成 Lists 對照
+                    "    CASE PR.ProHealth " +
+                    "         WHEN 'A001' THEN N'良好' " +
+                    "         WHEN 'A002' THEN N'普通' " +
+                    "         WHEN 'A003' THEN N'舊制身心障礙(16類)' " +
+                    "         WHEN 'A004' THEN N'欠佳' " +
+                    "         WHEN 'A005' THEN N'具精神異常傾向' " +
+                    "         WHEN 'A006' THEN N'新制身心障礙(8類)' " +
+                    "         ELSE NULL END                    AS ProHealthText, " +
+
+                    // 三層保護等級：各自取 ProDtl 最新一筆非 NULL 值（依 PD.ID DESC，見下方 LD）
+                    "    OA1.L1Text                            AS ProtectLevel1, " +
+                    "    OA2.L2Text                            AS ProtectLevel2, " +
+                    "    OA3.L3Text                            AS ProtectLevel3, " +
+
+                    // 重要日期（僅保留日期部分）
+                    "    CAST(PR.ProNoticeDate AS date)        AS ProNoticeDate, " +
+                    "    CAST(PR.ProDate       AS date)        AS ProDate, " +
+
+                    // 其他屬性
+                    "    PR.IsAdopt                              AS Adopt, " + // bit -> Boolean
+                    "    CASE WHEN EXISTS ( " +                                // 家支標籤（是否有特定 ProjectRec）
+                    "        SELECT 1 FROM dbo.ProjectRec P " +
+                    "        WHERE P.LinkTableID = PR.ID AND P.LinkTableType = 'P' " +
+                    "          AND P.ProjectID = 'A20130400094' AND P.IsDeleted = 0 " +
+                    "    ) THEN N'家支' ELSE N'' END           AS HomeSupportTag, " +
+                    "    L_DRUG.[Text]                         AS DrugProjectText, " +      // 毒品方案
+                    "    CASE WHEN PR.ProCloseDate IS NULL THEN 0 ELSE 1 END AS Closed, " + // 是否結案
+                    "    U.DisplayName                         AS StaffDisplayName, " +     // 建檔者顯示名（跨庫 Users）
+
+                    // CounselorInstDisplay = 區域 + 空白 + 機構名稱 + (實習/正式)
+                    "    COALESCE( " +
+                    "      NULLIF( " +
+                    "        CONCAT( " +
+                    "          ISNULL(LA.[Text], N''), " +   // 區域（Lists: ACA_INSTAREA）
+                    "          CASE WHEN NULLIF(LA.[Text], N'') IS NOT NULL AND NULLIF(IB.InstName, N'') IS NOT NULL THEN N' ' ELSE N'' END, " + // 區域與機構名皆非空時才加空白
+                    "          ISNULL(IB.InstName, N''), " + // 機構名稱（InstBrd.InstName）
+                    "          CASE " +
+                    "            WHEN OM.WorkerID IS NULL " +
+                    "                 OR (NULLIF(LA.[Text], N'') IS NULL AND NULLIF(IB.InstName, N'') IS NULL) THEN N'' " + // 沒有輔導員或兩者皆空：不加尾註（避免只顯示「(正式)」）
+                    "            WHEN COALESCE(IB.IsUnofficial, 0) = 1 THEN N'(實習)' " +
+                    "            ELSE N'(正式)' " +
+                    "          END " +
+                    "        ), N'' " + // CONCAT 結果若為空字串，轉 NULL
+                    "      ), N'' " +   // 再把 NULL 轉回空字串
+                    "    ) AS CounselorInstDisplay, " +
+                    "    OM.WorkerID AS CounselorWorkerId, " + // 由 OUTER APPLY 取得的輔導員卡號
+                    "    PR.ProFile AS ArchiveName " +         // 歸檔名稱
+                    "FROM dbo.ProRec PR " +
+                    // 來源、毒品方案等 Lists 對照
+                    "LEFT JOIN dbo.Lists L_BR  " +
+                    "       ON L_BR.ParentID = 26 " +
+                    "      AND L_BR.Value = CAST(PR.CreatedByBranchID AS NVARCHAR(50)) " +
+                    "LEFT JOIN dbo.Lists L_SRC " +
+                    "       ON L_SRC.ListName = 'ACA_SOURCE' " +
+                    "      AND L_SRC.Value    = PR.ProSource " +
+                    "LEFT JOIN dbo.Lists L_DRUG " +
+                    "       ON L_DRUG.ListName = 'PROJ_DRUG' " +
+                    "      AND L_DRUG.Value    = PR.DrugForm " +
+                    // 建檔者顯示名稱（跨 DB）
+                    "LEFT JOIN [CaseManagementDnnDB].dbo.Users U " +
+                    "       ON U.UserID = PR.CreatedByUserID " +
+
+                    // LD：每個 ProRec 的「最新 ProDtl」投影，一次掃描取出三個欄位各自最新一筆非 NULL 值。
+                    // 依 PD.ID DESC 單一排序掃過該 ProRec 的 ProDtl，以累計非 NULL 筆數（COUNT(col) OVER）標出
+                    // 各欄位第一個非 NULL 值所在列（累計 = 1 且該欄非 NULL），取代原本三個 TOP (1) 子查詢各自 seek + 排序。
+                    // 三個視窗函式共用同一個 ORDER BY → 只需一次排序；有 IX_ProDtl_ProRecID_ID（sql/aca4001/04）時連排序都省掉。
+                    "OUTER APPLY ( " +
+                    "    SELECT " +
+                    "        MAX(CASE WHEN D.nItem = 1      THEN D.ProItem   END) AS ProItem, " +
+                    "        MAX(CASE WHEN D.nInterview = 1 THEN D.Interview END) AS Interview, " +
+                    "        MAX(CASE WHEN D.nPlace = 1     THEN D.ProPlace  END) AS ProPlace " +
+                    "    FROM ( " +
+                    "        SELECT PD.ProItem, PD.Interview, PD.ProPlace, " +
+                    "               COUNT(PD.ProItem)   OVER (ORDER BY PD.ID DESC ROWS UNBOUNDED PRECEDING) AS nItem, " +
+                    "               COUNT(PD.Interview) OVER (ORDER BY PD.ID DESC ROWS UNBOUNDED PRECEDING) AS nInterview, " +
+                    "               COUNT(PD.ProPlace)  OVER (ORDER BY PD.ID DESC ROWS UNBOUNDED PRECEDING) AS nPlace " +
+                    "        FROM dbo.ProDtl PD " +
+                    "        WHERE PD.IsDeleted = 0 AND PD.ProRecID = PR.ID " +
+                    "    ) D " +
+                    ") LD " +
+                    // Lists 對照各取一筆（TOP (1)，與原寫法相同）：Lists 若有重複的 (ListName, Value) 也不會讓 ProRec 列數倍增
+                    "OUTER APPLY (SELECT TOP (1) L1.[Text] FROM dbo.Lists L1 WHERE L1.ListName = 'ACA_PROTECT' AND L1.Value = LD.ProItem) OA1(L1Text) " +   // L1：ProItem
+                    "OUTER APPLY (SELECT TOP (1) L2.[Text] FROM dbo.Lists L2 WHERE L2.ListName = 'ACA_PROTECT' AND L2.Value = LD.Interview) OA2(L2Text) " + // L2：Interview
+                    "OUTER APPLY (SELECT TOP (1) L3.[Text] FROM dbo.Lists L3 WHERE L3.ListName = 'ACA_PROTECT' AND L3.Value = LD.ProPlace) OA3(L3Text) " +  // L3：ProPlace
+
+                    // 取第一位非 EP 成員（當作輔導員）
+                    "OUTER APPLY ( " +
+                    "    SELECT TOP (1) PRM.WorkerID " +
+                    "    FROM dbo.ProRecMember PRM " +
+                    "    WHERE PRM.ProRecID = PR.ID " +
+                    "      AND PRM.MemberType <> 'EP' " +
+                    "      AND PRM.IsDeleted = 0 " +
+                    "    ORDER BY PRM.ID " +
+                    ") OM " +
+                    // 輔導員 WorkerID -> 機構資料/區域
+                    "LEFT JOIN dbo.InstBrd IB " +
+                    "       ON IB.InstCardNo = OM.WorkerID " +
+                    "      AND IB.IsDeleted = 0 " +
+                    "LEFT JOIN dbo.Lists LA " +
+                    "       ON LA.ListName = 'ACA_INSTAREA' " +
+                    "      AND LA.Value    = IB.InstArea ";
+
+    /**
+     * AcaDrugUse 檢視欄位（SELECT ... FROM ... JOIN，不含 WHERE）；依 ID 查詢與單次往返載入共用。
+     */
+    private static final String DRUG_USE_SELECT =
+            "SELECT " +
+                    "       ADU.ID                               AS id, " +               // 主鍵供排序用
+                    "       L_BR.[Text]                          AS branchName, " +        // Lists 轉分會名稱
+                    "       CAST(ADU.CreatedOnDate AS date)      AS RecordDate, " +      // 取建檔日期(僅日期)做為顯示用紀錄日
+                    "       ADU.DrgUserText                      AS drgUserText, " +
+                    "       ADU.OprFamilyText                    AS oprFamilyText, " +
+                    "       ADU.OprFamilyCareText                AS oprFamilyCareText, " +
+                    "       ADU.OprSupportText                   AS oprSupportText, " +
+                    "       ADU.OprContactText                   AS oprContactText, " +
+                    "       ADU.OprReferText                     AS oprReferText, " +
+                    "       ADU.Addr                             AS addr, " +
+                    "       ADU.OprAddr                          AS oprAddr " +
+                    "FROM dbo.AcaDrugUse ADU " +
+                    "LEFT JOIN dbo.Lists L_BR " +
+                    "       ON L_BR.ParentID = 26 " +
+                    "      AND L_BR.Value = CAST(ADU.CreatedByBranchID AS NVARCHAR(50)) ";
+
+    private static CrmRec mapCrmRec(ResultSet rs, int i) throws SQLException {
+        var c = new CrmRec();
+        c.setId(rs.getString("ID"));
+
+        var d1 = rs.getDate("RecordDate");
+        c.setRecordDate(d1 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d1), yyyMMdd_slash));
+        c.setBranchName(rs.getString("BranchName"));
+        c.setJailAgency(rs.getString("JailAgency"));
+        c.setCrimeName1(rs.getString("CrimeName1"));
+        c.setCrimeName2(rs.getString("CrimeName2"));
+        c.setCrimeName3(rs.getString("CrimeName3"));
+        c.setNoJailReason(rs.getString("NoJailReason"));
+
+        var d2 = rs.getDate("VerdictDate");
+        c.setVerdictDate(d2 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d2), yyyMMdd_slash));
+        c.setSentenceType(rs.getString("SentenceType"));
+        c.setTermText(rs.getString("TermText"));
+
+        var d3 = rs.getDate("PrisonInDate");
+        c.setPrisonInDate(d3 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d3), yyyMMdd_slash));
+
+        var d4 = rs.getDate("ReleasePlanDate");
+        c.setReleasePlanDate(d4 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d4), yyyMMdd_slash));
+
+        var d5 = rs.getDate("PrisonOutDate");
+        c.setPrisonOutDate(d5 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d5), yyyMMdd_slash));
+        c.setPrisonOutReason(rs.getString("PrisonOutReason"));
+        c.setRemission(rs.getString("Remission"));
+        c.setTrainType(rs.getString("TrainType"));
+        c.setMemo(rs.getString("Memo"));
+        return c;
+    }
+
+    private static ProRec mapProRec(ResultSet rs, int i) throws SQLException {
+        var p = new Aca4001EraseQueryDto.ProRec();
+        p.setId(rs.getString("ID"));
+        p.setBranchName(rs.getString("BranchName"));
+        p.setSourceText(rs.getString("SourceText"));
+        p.setProHealthText(rs.getString("ProHealthText"));
+        p.setProtectLevel1(rs.getString("ProtectLevel1"));
+        p.setProtectLevel2(rs.getString("ProtectLevel2"));
+        p.setProtectLevel3(rs.getString("ProtectLevel3"));
+
+        var d1 = rs.getDate("ProNoticeDate");
+        p.setProNoticeDate(d1 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d1), yyyMMdd_slash));
+
+        var d2 = rs.getDate("ProDate");
+        p.setProDate(d2 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d2), yyyMMdd_slash));
+
+        // IsAdopt: bit -> Boolean（允許 null）
+        Object adoptObj = rs.getObject("Adopt");
+        p.setAdopt(adoptObj == null ? null : (Boolean) adoptObj);
+
+        p.setHomeSupportTag(rs.getString("HomeSupportTag"));
+        p.setDrugProjectText(rs.getString("DrugProjectText"));
+
+        // Closed: 0/1 -> Boolean（允許 null）
+        Object closedObj = rs.getObject("Closed");
+        p.setClosed(closedObj == null ? null : ((Integer) closedObj) == 1);
+
+        p.setStaffDisplayName(rs.getString("StaffDisplayName"));
+        p.setCounselorInstDisplay(rs.getString("CounselorInstDisplay"));
+        //p.setCounselorWorkerId(rs.getString("CounselorWorkerId")); // 如需回傳可打開
+        p.setArchiveName(rs.getString("ArchiveName"));
+        return p;
+    }
 
+    private static Aca4001EraseQueryDto.ACADrugUse mapAcaDrugUse(ResultSet rs, int i) throws SQLException {
+        var dto = new Aca4001EraseQueryDto.ACADrugUse();
+        dto.setId(rs.getString("id"));
+        // recordDate -> 民國 yyy/MM/dd（若為 null 則回 null）
+        java.sql.Date d1 = rs.getDate("RecordDate");
+        dto.setRecordDate(d1 == null ? null : DateUtil.date2Roc(DateUtil.date2LocalDate(d1), yyyMMdd_slash));
+        dto.setBranchName(rs.getString("branchName"));
+        dto.setDrgUserText(rs.getString("drgUserText"));
+        dto.setOprFamilyText(rs.getString("oprFamilyText"));
+        dto.setOprFamilyCareText(rs.getString("oprFamilyCareText"));
+        dto.setOprSupportText(rs.getString("oprSupportText"));
+        dto.setOprContactText(rs.getString("oprContactText"));
+        dto.setOprReferText(rs.getString("oprReferText"));
+        dto.setAddr(rs.getString("addr"));
+        dto.setOprAddr(rs.getString("oprAddr"));
+        return dto;
+    }
 }
@@ -1,14 +1,43 @@
 package com.hn2.cms.repository.aca4001.erase;
 
+import lombok.AllArgsConstructor;
+import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class EraseAuditRepo {
-    private final org.sql2o.Sql2o sql2o;
+    private final TxSql2o sql2o; // 交易感知：有交易時沿用同一條 JDBC 連線
+
+    /**
+     * 批次寫入 ERASE 稽核時的一筆資料（欄位意義同 {@link #insertEraseAction}）。
+     */
+    @Data
+    @AllArgsConstructor
+    public static class EraseAction {
+        private String acaCardNo;
+        private Integer docNum;
+        private String eraseReason;
+        private Integer createdByUserId;
+        private String userIp;
+    }
+
+    /**
+     * 批次寫入 RESTORE 稽核時的一筆資料（欄位意義同 {@link #insertRestoreAction}）。
+     */
+    @Data
+    @AllArgsConstructor
+    public static class RestoreAction {
+        private String acaCardNo;
+        private String restoreReason;
+        private String createdByUserId;
+        private String userIp;
+    }
 
     /**
      * 寫入一筆「塗銷 (ERASE)」稽核記錄至 ACA_EraseAudit。
@@ -103,5 +132,85 @@ public class EraseAuditRepo {
         }
     }
 
+    /**
+     * 批次版 {@link #insertEraseAction}：同一條 PreparedStatement 以 JDBC batch 一次送出多筆 ERASE 稽核。
+     *
+     * @param actions 各卡號的稽核資料
+     * @return 寫入筆數
+     */
+    public int insertEraseActions(List<EraseAction> actions) {
+        if (actions == null || actions.isEmpty()) return 0;
+        final String sql =
+                "INSERT INTO dbo.ACA_EraseAudit (" +
+                        "  ACACardNo, ActionType, DocNum, EraseReason, RestoreReason," +
+                        "  CreatedByUserID, UserIP, CreatedOnDate" +
+                        ") VALUES (" +
+                        "  :aca, 'ERASE', :doc, :ers, NULL," +
+                        "  :uid, :uip, SYSDATETIME()" +
+                        ")";
+        try (var con = sql2o.open();
+             var q = con.createQuery(sql)) {
+            for (var a : actions) {
+                q.addParameter("aca", a.getAcaCardNo())
+                        .addParameter("doc", a.getDocNum())
+                        .addParameter("ers", a.getEraseReason())
+                        .addParameter("uid", a.getCreatedByUserId())
+                        .addParameter("uip", a.getUserIp())
+                        .addToBatch();
+            }
+            q.executeBatch();
+            return actions.size();
+        }
+    }
+
+    /**
+     * 批次版 {@link #insertRestoreAction}：同一條 PreparedStatement 以 JDBC batch 一次送出多筆 RESTORE 稽核。
+     *
+     * @param actions 各卡號的稽核資料
+     * @return 寫入筆數
+     */
+    public int insertRestoreActions(List<RestoreAction> actions) {
+        if (actions == null || actions.isEmpty()) return 0;
+        final String sql =
+                "INSERT INTO dbo.ACA_EraseAudit (" +
+                        "  ACACardNo, ActionType, DocNum, EraseReason, RestoreReason," +
+                        "  CreatedByUserID, UserIP, CreatedOnDate" +
+                        ") VALUES (" +
+                        "  :aca, 'RESTORE', NULL, NULL, :rs," +
+                        "  :uid, :uip, SYSDATETIME()" +
+                        ")";
+        try (var con = sql2o.open();
+             var q = con.createQuery(sql)) {
+            for (var a : actions) {
+                q.addParameter("aca", a.getAcaCardNo())
+                        .addParameter("rs", a.getRestoreReason())
+                        .addParameter("uid", a.getCreatedByUserId())
+                        .addParameter("uip", a.getUserIp())
+                        .addToBatch();
+            }
+            q.executeBatch();
+            return actions.size();
+        }
+    }
+
+    /**
+     * 批次版 {@link #deleteByAcaCardNo}：一次刪除多個個案的鏡像資料（IN 清單每 1000 筆一批）。
+     *
+     * @param acaCardNos 個案卡號清單
+     * @return 刪除筆數合計
+     */
+    public int deleteByAcaCardNos(List<String> acaCardNos) {
+        if (acaCardNos == null || acaCardNos.isEmpty()) return 0;
+        final String sql = "DELETE FROM dbo.ACA_EraseMirror WHERE ACACardNo IN (:acas)";
+        int total = 0;
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < acaCardNos.size(); i += 1000) {
+                var sub = acaCardNos.subList(i, Math.min(i + 1000, acaCardNos.size()));
+                total += con.createQuery(sql).addParameter("acas", sub).executeUpdate().getResult();
+            }
+        }
+        return total;
+    }
+
 }
 
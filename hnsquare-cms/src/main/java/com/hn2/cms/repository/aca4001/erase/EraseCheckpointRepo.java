@@ -0,0 +1,89 @@
+package com.hn2.cms.repository.aca4001.erase;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * ACA_EraseCheckpoint 存取：分段塗銷每完成一條規則記一列，作為中斷後接續的依據。
+ * 寫入與該規則的鏡像/清空在同一交易（TxSql2o 沿用交易連線），因此「已記錄完成」必定代表鏡像與清空皆已提交。
+ */
+@Repository
+@RequiredArgsConstructor
+public class EraseCheckpointRepo {
+    private final TxSql2o sql2o; // 交易感知：有交易時沿用同一條 JDBC 連線
+
+    @Data
+    @NoArgsConstructor
+    public static class Checkpoint {
+        private String commandHash;
+        private Integer ruleOrder;
+        private String ruleTable;
+    }
+
+    /**
+     * 查出某卡號目前所有未清除的規則完成紀錄（依規則順序）。
+     */
+    public List<Checkpoint> findByAcaCardNo(String acaCardNo) {
+        String sql = "SELECT CommandHash AS commandHash, RuleOrder AS ruleOrder, RuleTable AS ruleTable " +
+                "FROM dbo.ACA_EraseCheckpoint WHERE AcaCardNo = :aca ORDER BY RuleOrder";
+        try (var con = sql2o.open()) {
+            return con.createQuery(sql).addParameter("aca", acaCardNo).executeAndFetch(Checkpoint.class);
+        }
+    }
+
+    /**
+     * 在指定卡號中找出仍有未清除進度紀錄（分段塗銷做到一半）的卡號。
+     */
+    public List<String> findCardsWithCheckpoints(List<String> acaCardNos) {
+        if (acaCardNos == null || acaCardNos.isEmpty()) return List.of();
+        var out = new java.util.ArrayList<String>();
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < acaCardNos.size(); i += 1000) {
+                var sub = acaCardNos.subList(i, Math.min(i + 1000, acaCardNos.size()));
+                out.addAll(con.createQuery("SELECT DISTINCT AcaCardNo FROM dbo.ACA_EraseCheckpoint WHERE AcaCardNo IN (:acas)")
+                        .addParameter("acas", sub)
+                        .executeScalarList(String.class));
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 記錄一條規則已完成（需與該規則的鏡像/清空在同一交易內呼叫）。
+     */
+    public void insert(String acaCardNo, String commandHash, int ruleOrder, String ruleTable, int rowsMirrored, int rowsErased) {
+        String sql = "INSERT INTO dbo.ACA_EraseCheckpoint (AcaCardNo, CommandHash, RuleOrder, RuleTable, RowsMirrored, RowsErased) " +
+                "VALUES (:aca, :hash, :ord, :tbl, :mir, :ers)";
+        try (var con = sql2o.open()) {
+            con.createQuery(sql)
+                    .addParameter("aca", acaCardNo)
+                    .addParameter("hash", commandHash)
+                    .addParameter("ord", ruleOrder)
+                    .addParameter("tbl", ruleTable)
+                    .addParameter("mir", rowsMirrored)
+                    .addParameter("ers", rowsErased)
+                    .executeUpdate();
+        }
+    }
+
+    /**
+     * 刪除某些卡號的所有進度紀錄（塗銷完成或已還原時呼叫）。
+     */
+    public int deleteByAcaCardNos(List<String> acaCardNos) {
+        if (acaCardNos == null || acaCardNos.isEmpty()) return 0;
+        int n = 0;
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < acaCardNos.size(); i += 1000) {
+                var sub = acaCardNos.subList(i, Math.min(i + 1000, acaCardNos.size()));
+                n += con.createQuery("DELETE FROM dbo.ACA_EraseCheckpoint WHERE AcaCardNo IN (:acas)")
+                        .addParameter("acas", sub)
+                        .executeUpdate().getResult();
+            }
+        }
+        return n;
+    }
+}
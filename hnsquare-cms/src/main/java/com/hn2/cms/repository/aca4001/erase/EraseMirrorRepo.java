@@ -1,18 +1,44 @@
 package com.hn2.cms.repository.aca4001.erase;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Slf4j
 @Repository
 @RequiredArgsConstructor
 public class EraseMirrorRepo {
-    private final org.sql2o.Sql2o sql2o;
+    private final TxSql2o sql2o; // 交易感知：有交易時沿用同一條 JDBC 連線
+
+    /**
+     * SQL Server 單一語句最多 2100 個參數；每列佔 6 個參數（tid/ver/pl/bin/iv/sha），另有 3 個共用參數（sch/tbl/aca）。
+     * sql2o 對同名參數的每次出現各送一個 JDBC ?，因此共用參數在 {@link #buildMergeSql} 中只能出現一次。
+     */
+    static final int MAX_ROWS_PER_MERGE = (2100 - 3) / 6;
+
+    @Value("${erase.mirror.batchSize:200}")
+    private int batchSize; // 每個 MERGE 語句最多帶幾列（超過 MAX_ROWS_PER_MERGE 會被截斷）
+
+    @Value("${erase.mirror.archive.enabled:false}")
+    private boolean archiveEnabled; // 啟用封存表（ACA_EraseMirrorArchive）：還原時一併讀取/刪除
+
+    /**
+     * 鏡像表與封存表共有的欄位（兩邊欄位名稱相同）。
+     * 讀寫一律帶 PayloadVersion / EncryptedPayload（不論 erase.mirror.payloadVersion 為 1 或 2），
+     * 因此部署前必須先執行 sql/aca4001/01_erase_mirror_payload_v2.sql。
+     */
+    private static final String MIRROR_COLS = "TargetSchema, TargetTable, TargetID, ACACardNo, PayloadVersion, " +
+            "EncodedPayload, EncryptedPayload, AesIvBase64, PayloadSha256Hex, CreatedOnDate";
 
     /**
      * MirrorRow 是對應 ACA_EraseMirror 表的一行紀錄
@@ -25,111 +51,263 @@ public class EraseMirrorRepo {
         private String targetTable;  // 來源資料表名稱（如 CrmRec）
         private String targetId;  // 被塗銷紀錄的主鍵 ID
         private String acaCardNo; // 個案卡號
-        private String payloadBase64; // 加密後的 JSON 資料（Base64）
+        private Integer payloadVersion; // payload 格式版本（NULL/1 = Base64 文字；2 = Deflate 後二進位）
+        private String payloadBase64; // v1：加密後的 JSON 資料（Base64）
+        private byte[] encryptedPayload; // v2：AES-GCM( Deflate(JSON) ) 原始位元組
         private String ivBase64; // AES-GCM 的 IV（Base64）
         private String sha256;   // 明文 JSON 的 SHA-256 值（用來驗證完整性）
     }
 
     /**
-     * 依個案卡號（ACACardNo）查出 ACA_EraseMirror 中屬於「指定 schema、指定表清單」的所有鏡像列。
-     * 查詢條件：
-     * - ACACardNo = :aca
-     * - ISNULL(TargetSchema,'dbo') = ISNULL(:schema,'dbo')  // Mirror 中若為 NULL 視同 'dbo'，呼叫方 schema 為空也視同 'dbo'
-     * - TargetTable IN (:tbls)
-     * 回傳：
-     * - 將每列映射為 MirrorRow（包含 targetSchema/table/id、acaCardNo、payloadBase64、ivBase64、sha256）
-     * - 若無資料回傳空清單
+     * 批次鏡像寫入時的一列資料（同一批次共用 schema/table/acaCardNo）。
+     */
+    @Data
+    @AllArgsConstructor
+    public static class MirrorEntry {
+        private String targetId;      // 被塗銷紀錄的主鍵 ID
+        private int payloadVersion;   // payload 格式版本（見 MirrorPayloadCodec）
+        private String payloadBase64; // v1：Base64( AES-GCM(明文JSON) )；v2 為 null
+        private byte[] encryptedPayload; // v2：AES-GCM( Deflate(明文JSON) )；v1 為 null
+        private String ivBase64;      // Base64( AES-GCM IV )
+        private String sha256;        // 明文 JSON 的 SHA-256
+    }
+
+    /**
+     * 依個案卡號（ACACardNo）以 forward-only cursor 逐列讀出「指定 schema、指定表清單」的鏡像資料交給 sink，
+     * 不把整個卡號的 payload 載入記憶體。
+     * 條件：ACACardNo = :aca、ISNULL(TargetSchema,'dbo') = ISNULL(:schema,'dbo')（雙方 NULL 皆視為 dbo）、TargetTable IN (:tbls)。
+     * 排序：
+     * - 先依 tablesInOrder 的順序（即規則順序），同表再依 TargetID，讓呼叫端可依表分段處理。
+     * 連線：
+     * - 使用不加入交易的獨立連線讀取（同一交易連線上邊讀邊寫會迫使驅動先緩衝整個結果集）；
+     * 鏡像列在還原期間不會被修改，讀到的即為已提交資料。
+     * 封存：
+     * - erase.mirror.archive.enabled=true 時同時讀取 ACA_EraseMirrorArchive（同一目標兩邊都有時以鏡像表為準），
+     * 呼叫端不需知道資料位於哪張表；封存排程與還原都持有卡號鎖，讀取期間不會有列被搬移。
+     * - 未啟用但封存表中仍有該卡號的列（曾啟用後關閉）時拋出 IllegalStateException，不做只還原一部分的還原。
      *
-     * @param acaCardNo 指定個案卡號
-     * @param tables    僅限於這些目標表名（白名單）
-     * @param schema    目標 schema；可為 null/空白，將被視為 "dbo"
-     * @return 鏡像資料列的清單（List<MirrorRow>）
+     * @param acaCardNo     指定個案卡號
+     * @param tablesInOrder 目標表名（白名單），順序即輸出順序
+     * @param schema        目標 schema；可為 null/空白，將被視為 "dbo"
+     * @param sink          逐列處理者
+     * @return 讀出的列數
      */
-    public List<MirrorRow> findAllByAcaCardNo(String acaCardNo, List<String> tables, String schema) {
+    public int forEachByAcaCardNo(String acaCardNo, List<String> tablesInOrder, String schema, Consumer<MirrorRow> sink) {
+        if (tablesInOrder == null || tablesInOrder.isEmpty()) return 0;
+        if (!archiveEnabled) {
+            int archived = countArchivedByAcaCardNo(acaCardNo);
+            if (archived > 0) {
+                throw new IllegalStateException("卡號 " + acaCardNo + " 有 " + archived
+                        + " 筆鏡像已封存，但 erase.mirror.archive.enabled=false，無法完整還原；請先啟用封存讀取");
+            }
+        }
+        var order = new StringBuilder("CASE TargetTable");
+        for (int i = 0; i < tablesInOrder.size(); i++) {
+            order.append(" WHEN :t").append(i).append(" THEN ").append(i);
+        }
+        order.append(" END");
         String sql = "SELECT " +
                 " TargetSchema   AS targetSchema, " +
                 " TargetTable    AS targetTable, " +
                 " TargetID       AS targetId, " +
                 " ACACardNo      AS acaCardNo, " +
+                " PayloadVersion AS payloadVersion, " +
                 " EncodedPayload AS payloadBase64, " +
+                " EncryptedPayload AS encryptedPayload, " +
                 " AesIvBase64    AS ivBase64, " +
                 " PayloadSha256Hex AS sha256 " +
-                "FROM dbo.ACA_EraseMirror " +
+                "FROM " + mirrorSource() + " " +
                 "WHERE ACACardNo = :aca " +
-                // schema 允許 null，Mirror 表紀錄為 NULL 的也視為 "dbo"
-                "  AND ISNULL(TargetSchema,'dbo') = ISNULL(:schema,'dbo') " +   // ← 核心：雙方都把 NULL 視為 'dbo'
-                "  AND TargetTable IN (:tbls)";
-        try (var con = sql2o.open()) {
-            // 如果 schema 是空字串或 null，則補上 "dbo"
+                "  AND ISNULL(TargetSchema,'dbo') = ISNULL(:schema,'dbo') " +
+                "  AND TargetTable IN (:tbls) " +
+                "ORDER BY " + order + ", TargetID";
+        int n = 0;
+        try (var con = sql2o.openDetached();
+             var q = con.createQuery(sql)) {
             var s = (schema == null || schema.isBlank()) ? "dbo" : schema;
-            return con.createQuery(sql)
-                    .addParameter("aca", acaCardNo)
+            q.addParameter("aca", acaCardNo)
                     .addParameter("schema", s)
-                    .addParameter("tbls", tables)
-                    .executeAndFetch(MirrorRow.class);
+                    .addParameter("tbls", tablesInOrder);
+            for (int i = 0; i < tablesInOrder.size(); i++) q.addParameter("t" + i, tablesInOrder.get(i));
+            try (var rows = q.executeAndFetchLazy(MirrorRow.class)) {
+                for (var row : rows) {
+                    sink.accept(row);
+                    n++;
+                }
+            }
+        }
+        return n;
+    }
+
+    // 還原讀取來源：未啟用封存時只讀鏡像表；啟用時為「鏡像表 ∪ 鏡像表沒有的封存列」
+    private String mirrorSource() {
+        if (!archiveEnabled) return "dbo.ACA_EraseMirror";
+        return "(SELECT " + MIRROR_COLS + " FROM dbo.ACA_EraseMirror WHERE ACACardNo = :aca " +
+                " UNION ALL " +
+                " SELECT " + MIRROR_COLS + " FROM dbo.ACA_EraseMirrorArchive a WHERE a.ACACardNo = :aca " +
+                "   AND NOT EXISTS (SELECT 1 FROM dbo.ACA_EraseMirror m WHERE ISNULL(m.TargetSchema,'dbo') = ISNULL(a.TargetSchema,'dbo') " +
+                "                   AND m.TargetTable = a.TargetTable AND m.TargetID = a.TargetID)) AS mir";
+    }
+
+    /**
+     * 封存表中某卡號的列數；封存表不存在（未執行 03_erase_mirror_archive.sql）時回 0。
+     */
+    public int countArchivedByAcaCardNo(String acaCardNo) {
+        String sql = "SET NOCOUNT ON; " +
+                "DECLARE @n INT = 0; " +
+                "IF OBJECT_ID(N'dbo.ACA_EraseMirrorArchive', N'U') IS NOT NULL " +
+                "  EXEC sp_executesql N'SELECT @n = COUNT(*) FROM dbo.ACA_EraseMirrorArchive WHERE ACACardNo = @aca', " +
+                "    N'@aca NVARCHAR(20), @n INT OUTPUT', @aca = :aca, @n = @n OUTPUT; " +
+                "SELECT @n;";
+        try (var con = sql2o.open()) {
+            Integer n = con.createQuery(sql).addParameter("aca", acaCardNo).executeScalar(Integer.class);
+            return n == null ? 0 : n;
         }
     }
 
+    public boolean isArchiveEnabled() {
+        return archiveEnabled;
+    }
+
     /**
-     * 對 ACA_EraseMirror 進行「UPSERT（有則更新、無則新增）」：
-     * 以 (TargetSchema, TargetTable, TargetID) 作為唯一定義鍵，
-     * 將加密後的鏡像內容（EncodedPayload + AesIvBase64）與明文校驗雜湊（PayloadSha256Hex）寫入。
+     * 挑選可封存的卡號：該卡號「所有」鏡像列皆早於 cutoff（最舊者優先），最多 limit 個。
+     */
+    public List<String> findArchivableCards(Timestamp cutoff, int limit) {
+        String sql = "SELECT TOP (:n) ACACardNo FROM dbo.ACA_EraseMirror " +
+                "GROUP BY ACACardNo HAVING MAX(CreatedOnDate) < :cutoff ORDER BY MIN(CreatedOnDate)";
+        try (var con = sql2o.open()) {
+            return con.createQuery(sql).addParameter("n", limit).addParameter("cutoff", cutoff).executeScalarList(String.class);
+        }
+    }
+
+    /**
+     * 把指定卡號的鏡像列整批搬到封存表（單一 DELETE ... OUTPUT INTO，搬移與刪除同一語句完成）。
+     * 需在交易內並持有這些卡號的鎖時呼叫；挑選後才有新鏡像（重新塗銷）的卡號會被略過。
+     *
+     * @return 搬移列數
+     */
+    public int archiveCards(List<String> acaCardNos, Timestamp cutoff) {
+        if (acaCardNos == null || acaCardNos.isEmpty()) return 0;
+        String sql = "DELETE m OUTPUT DELETED.TargetSchema, DELETED.TargetTable, DELETED.TargetID, DELETED.ACACardNo, " +
+                "  DELETED.PayloadVersion, DELETED.EncodedPayload, DELETED.EncryptedPayload, DELETED.AesIvBase64, " +
+                "  DELETED.PayloadSha256Hex, DELETED.CreatedOnDate " +
+                "INTO dbo.ACA_EraseMirrorArchive (" + MIRROR_COLS + ") " +
+                "FROM dbo.ACA_EraseMirror m " +
+                "WHERE m.ACACardNo IN (:acas) " +
+                "  AND NOT EXISTS (SELECT 1 FROM dbo.ACA_EraseMirror r WHERE r.ACACardNo = m.ACACardNo AND r.CreatedOnDate >= :cutoff)";
+        try (var con = sql2o.open()) {
+            return con.createQuery(sql).addParameter("acas", acaCardNos).addParameter("cutoff", cutoff).executeUpdate().getResult();
+        }
+    }
+
+    /**
+     * 還原完成後刪除封存表中該些卡號的資料（未啟用封存時不做事）。
+     */
+    public int deleteArchivedByAcaCardNos(List<String> acaCardNos) {
+        if (!archiveEnabled || acaCardNos == null || acaCardNos.isEmpty()) return 0;
+        int total = 0;
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < acaCardNos.size(); i += 1000) {
+                var sub = acaCardNos.subList(i, Math.min(i + 1000, acaCardNos.size()));
+                total += con.createQuery("DELETE FROM dbo.ACA_EraseMirrorArchive WHERE ACACardNo IN (:acas)")
+                        .addParameter("acas", sub).executeUpdate().getResult();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 對 ACA_EraseMirror 進行批次「UPSERT（有則更新、無則新增）」：將同一張來源表的多列鏡像資料，
+     * 以「多列 VALUES 來源」的 MERGE 一次寫入。
      * 規則：
-     * - 若已存在相同 (schema, table, id) → UPDATE EncodedPayload / AesIvBase64 / PayloadSha256Hex / ACACardNo
+     * - 以 (TargetSchema, TargetTable, TargetID) 作為唯一定義鍵
+     * - 若已存在 → UPDATE PayloadVersion / EncodedPayload / EncryptedPayload / AesIvBase64 / PayloadSha256Hex / ACACardNo；
+     * 兩個 payload 欄位一律整組覆寫（v1 列 EncryptedPayload = NULL、v2 列 EncodedPayload = NULL），不會留下另一版本的舊密文
      * - 若不存在 → INSERT 一筆並填入 CreatedOnDate = SYSDATETIME()
      * - 允許傳入 schema 為 null/空白，會自動視為 "dbo"
      * - id 不可為 null/空白/字串 "null"（大小寫不敏感），並在綁定前會 trim()
+     * - 每個語句最多帶 erase.mirror.batchSize 列（並受 SQL Server 2100 參數上限約束），大幅減少往返次數
+     * - 同一批內若有重複 TargetID，以最後一筆為準（MERGE 來源不可重複命中同一目標列）
      * 安全性 / 完整性：
      * - SHA-256 為明文 JSON 的雜湊，用於「還原前」校驗解密結果未遭竄改
      * - AES-GCM 密文與 IV 一併保存
      *
-     * @param table      來源表名（如 "CrmRec" / "ProRec"）
-     * @param id         主鍵值（字串化）
-     * @param acaCardNo  個案卡號
-     * @param payloadB64 Base64( AES-GCM(明文JSON) )
-     * @param ivB64      Base64( AES-GCM IV )
-     * @param sha256Hex  明文 JSON 的 SHA-256（十六進位字串）
-     * @param schema     來源 schema；null/空白 → 視為 "dbo"
-     * @throws IllegalArgumentException 當 id 無效（null/空白/"null"）
+     * @param table     來源表名（如 "CrmRec" / "ProRec"）
+     * @param acaCardNo 個案卡號
+     * @param schema    來源 schema；null/空白 → 視為 "dbo"
+     * @param entries   要寫入的鏡像列
+     * @return 受影響列數合計
+     * @throws IllegalArgumentException 當任一列的 id 無效（null/空白/"null"）
      */
-    public void upsert(String table, String id, String acaCardNo, String payloadB64, String ivB64, String sha256Hex, String schema) {
+    public int upsertBatch(String table, String acaCardNo, String schema, List<MirrorEntry> entries) {
+        if (entries == null || entries.isEmpty()) return 0;
+
+        // 基本防呆＋批內去重（保留最後一筆，維持輸入順序）
+        var byId = new LinkedHashMap<String, MirrorEntry>();
+        for (var e : entries) {
+            String id = e.getTargetId();
+            if (id == null || id.isBlank() || "null".equalsIgnoreCase(id)) {
+                throw new IllegalArgumentException("EraseMirror.upsertBatch: TargetID 不可為空/不可為 'null' 字串, table=" + table + ", aca=" + acaCardNo);
+            }
+            byId.remove(id.trim());
+            byId.put(id.trim(), e);
+        }
+        var rows = new ArrayList<>(byId.entrySet());
+
+        String sch = (schema == null || schema.isBlank()) ? "dbo" : schema;
+        int size = Math.max(1, Math.min(batchSize, MAX_ROWS_PER_MERGE));
+        int total = 0;
+
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < rows.size(); i += size) {
+                var sub = rows.subList(i, Math.min(i + size, rows.size()));
+                log.info("[MirrorUpsertBatch] sch={}, tbl={}, aca={}, rows={}", sch, table, acaCardNo, sub.size());
 
-        // 基本防呆：TargetID 不可為空、也不可是字面 "null"
-        if (id == null || id.isBlank() || "null".equalsIgnoreCase(id)) {
-            throw new IllegalArgumentException("EraseMirror.upsert: TargetID 不可為空/不可為 'null' 字串, table=" + table + ", aca=" + acaCardNo);
+                try (var q = con.createQuery(buildMergeSql(sub.size()))) {
+                    q.addParameter("sch", sch)
+                            .addParameter("tbl", table)
+                            .addParameter("aca", acaCardNo);
+                    for (int j = 0; j < sub.size(); j++) {
+                        var e = sub.get(j);
+                        q.addParameter("tid" + j, e.getKey())
+                                .addParameter("ver" + j, e.getValue().getPayloadVersion())
+                                .addParameter("pl" + j, e.getValue().getPayloadBase64())
+                                .addParameter("bin" + j, (Object) e.getValue().getEncryptedPayload())
+                                .addParameter("iv" + j, e.getValue().getIvBase64())
+                                .addParameter("sha" + j, e.getValue().getSha256());
+                    }
+                    total += q.executeUpdate().getResult();
+                }
+            }
         }
-        // 記錄關鍵參數（便於除錯追蹤）
-        log.info("[MirrorUpsert] sch={}, tbl={}, id={}, aca={}, sha256={}",
-                schema, table, id, acaCardNo, sha256Hex);
-
-        // 使用 SQL Server MERGE 做 UPSERT：
-        //   - USING 一筆臨時資料列 s(...)
-        //   - ON 條件：以 (TargetSchema,TargetTable,TargetID) 對應到目標表 t
-        //   - MATCHED → UPDATE（更新密文/IV/SHA 與 ACACardNo）
-        //   - NOT MATCHED → INSERT 新列並寫入 CreatedOnDate=SYSDATETIME()
-
-        String sql = "MERGE INTO dbo.ACA_EraseMirror AS t "
-                + "USING (VALUES(:sch,:tbl,:tid,:aca,:pl,:iv,:sha)) AS s("
-                + "  TargetSchema,TargetTable,TargetID,ACACardNo,EncodedPayload,AesIvBase64,PayloadSha256Hex) "
+        return total;
+    }
+
+    /**
+     * 產生 n 列 VALUES 來源的 MERGE 語句（參數 :tid0..n-1 / :ver0.. / :pl0.. / :bin0.. / :iv0.. / :sha0..，另共用 :sch/:tbl/:aca）。
+     * - 共用參數只在 USING 的 SELECT 清單出現一次（不寫進每列 VALUES），整句參數數 = 6n + 3。
+     * - :bin 以 CONVERT(VARBINARY(MAX), ...) 包住，v1 列綁 NULL 時也不會因隱含型別轉換失敗。
+     */
+    static String buildMergeSql(int n) {
+        var values = new StringBuilder();
+        for (int j = 0; j < n; j++) {
+            if (j > 0) values.append(",");
+            values.append("(:tid").append(j).append(",:ver").append(j)
+                    .append(",:pl").append(j).append(",CONVERT(VARBINARY(MAX),:bin").append(j).append(")")
+                    .append(",:iv").append(j).append(",:sha").append(j).append(")");
+        }
+        return "MERGE INTO dbo.ACA_EraseMirror AS t "
+                + "USING (SELECT :sch AS TargetSchema, :tbl AS TargetTable, v.TargetID, :aca AS ACACardNo, v.PayloadVersion, "
+                + "         v.EncodedPayload, v.EncryptedPayload, v.AesIvBase64, v.PayloadSha256Hex "
+                + "       FROM (VALUES " + values + ") AS v("
+                + "         TargetID,PayloadVersion,EncodedPayload,EncryptedPayload,AesIvBase64,PayloadSha256Hex)) AS s "
                 + "  ON t.TargetSchema=s.TargetSchema AND t.TargetTable=s.TargetTable AND t.TargetID=s.TargetID "
                 + "WHEN MATCHED THEN "
-                + "  UPDATE SET EncodedPayload=s.EncodedPayload, AesIvBase64=s.AesIvBase64, "
-                + "             PayloadSha256Hex=s.PayloadSha256Hex, ACACardNo=s.ACACardNo "
+                + "  UPDATE SET PayloadVersion=s.PayloadVersion, EncodedPayload=s.EncodedPayload, EncryptedPayload=s.EncryptedPayload, "
+                + "             AesIvBase64=s.AesIvBase64, PayloadSha256Hex=s.PayloadSha256Hex, ACACardNo=s.ACACardNo "
                 + "WHEN NOT MATCHED THEN "
-                + "  INSERT (TargetSchema,TargetTable,TargetID,ACACardNo,EncodedPayload,AesIvBase64,PayloadSha256Hex,CreatedOnDate) "
-                + "  VALUES (s.TargetSchema,s.TargetTable,s.TargetID,s.ACACardNo,s.EncodedPayload,s.AesIvBase64,s.PayloadSha256Hex,SYSDATETIME());";
-        try (var con = sql2o.open()) {
-            con.createQuery(sql)
-                    // schema 若為 null/空白 → 視為 "dbo"
-                    .addParameter("sch", (schema == null || schema.isBlank()) ? "dbo" : schema)
-                    .addParameter("tbl", table)
-                    .addParameter("tid", id.trim())        // ★ 保險：trim
-                    .addParameter("aca", acaCardNo)
-                    .addParameter("pl", payloadB64)
-                    .addParameter("iv", ivB64)
-                    .addParameter("sha", sha256Hex)
-                    .executeUpdate();
-        }
+                + "  INSERT (TargetSchema,TargetTable,TargetID,ACACardNo,PayloadVersion,EncodedPayload,EncryptedPayload,AesIvBase64,PayloadSha256Hex,CreatedOnDate) "
+                + "  VALUES (s.TargetSchema,s.TargetTable,s.TargetID,s.ACACardNo,s.PayloadVersion,s.EncodedPayload,s.EncryptedPayload,s.AesIvBase64,s.PayloadSha256Hex,SYSDATETIME());";
     }
 
 }
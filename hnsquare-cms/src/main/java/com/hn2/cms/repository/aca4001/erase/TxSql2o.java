@@ -0,0 +1,92 @@
+package com.hn2.cms.repository.aca4001.erase;
+
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 讓塗銷/還原引擎的 sql2o 存取「加入目前的 Spring 交易」。
+ * 背景：
+ * - sql2o.open() 每次都會向 DataSource 取一條新連線，不受 @Transactional 控管，
+ * 一次塗銷會用掉多條連線，且回滾時無法一併撤銷。
+ * 作法：
+ * - 若目前執行緒有進行中的 Spring 交易 → 透過 TransactionAwareDataSourceProxy 取得「交易綁定的同一條 JDBC 連線」，
+ * close() 只會釋放引用、不會真的關閉或提交連線。
+ * - 並關閉 sql2o 的 rollbackOnClose / rollbackOnException，交易的提交與回滾完全交給 Spring 決定
+ * （否則 sql2o 在 close 時看到 autoCommit=false 會自行 rollback 整個交易）。
+ * - 沒有交易時 → 行為與 sql2o.open() 相同。
+ * 平行分支（erase.schedule.parallel）：
+ * - 工作執行緒以 {@link #runInBranch} 綁定一條「分支專用連線」（autoCommit=false），期間 open() 一律回傳該連線，
+ * 提交/回滾由排程器在所有分支結束後統一決定。分支連線優先於 Spring 交易連線。
+ */
+@Component
+public class TxSql2o {
+    private final org.sql2o.Sql2o sql2o;
+    private final DataSource dataSource;
+    private final TransactionAwareDataSourceProxy txDataSource; // 交易中取連線 → 回傳交易綁定的連線
+    private static final ThreadLocal<Connection> BRANCH = new ThreadLocal<>(); // 目前執行緒綁定的分支連線
+
+    public TxSql2o(org.sql2o.Sql2o sql2o, DataSource dataSource) {
+        this.sql2o = sql2o;
+        this.dataSource = dataSource;
+        this.txDataSource = new TransactionAwareDataSourceProxy(dataSource);
+    }
+
+    /**
+     * 取得不加入交易的獨立連線（例如長時間串流讀取，避免與交易連線上的寫入互相卡住）。
+     */
+    public org.sql2o.Connection openDetached() {
+        return sql2o.open();
+    }
+
+    /**
+     * 開一條獨立的分支連線（autoCommit=false）；由呼叫端負責 commit/rollback 與 close。
+     */
+    public Connection openBranchConnection() {
+        try {
+            Connection c = dataSource.getConnection();
+            c.setAutoCommit(false);
+            return c;
+        } catch (SQLException e) {
+            throw new IllegalStateException("無法取得塗銷分支連線", e);
+        }
+    }
+
+    /**
+     * 在目前執行緒綁定分支連線後執行 work；期間所有 open() 都落在同一條分支連線上。
+     */
+    public void runInBranch(Connection branch, Runnable work) {
+        BRANCH.set(branch);
+        try {
+            work.run();
+        } finally {
+            BRANCH.remove();
+        }
+    }
+
+    /**
+     * 取得 sql2o 連線：有交易就沿用交易連線，否則開新連線。呼叫端一律以 try-with-resources 關閉即可。
+     */
+    public org.sql2o.Connection open() {
+        Connection branch = BRANCH.get();
+        if (branch != null) {
+            // suppressClose：sql2o close() 不會真的關閉分支連線
+            var con = sql2o.open(new SingleConnectionDataSource(branch, true)::getConnection);
+            con.setRollbackOnClose(false);      // 分支結果交由排程器統一提交/回滾
+            con.setRollbackOnException(false);
+            return con;
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return sql2o.open();
+        }
+        var con = sql2o.open(txDataSource::getConnection);
+        con.setRollbackOnClose(false);      // 交易結果交由 Spring 決定
+        con.setRollbackOnException(false);  // 例外往外拋，由 @Transactional 回滾
+        return con;
+    }
+}
@@ -6,6 +6,7 @@ import com.hn2.cms.payload.aca2001.Aca2001SavePayload;
 import com.hn2.cms.repository.AcaBrdRepository;
 import com.hn2.cms.repository.SupAfterCareRepository;
 import com.hn2.cms.service.SysService;
+import com.hn2.cms.service.aca4001.EraseQueryCache;
 import com.hn2.core.dto.DataDto;
 import com.hn2.core.dto.ResponseInfo;
 import com.hn2.core.payload.GeneralPayload;
@@ -27,6 +28,8 @@ public class Aca2001ServiceImpl implements Aca2001Service {
     AcaBrdRepository acaBrdRepository;
     @Autowired
     SysService sysService;
+    @Autowired
+    EraseQueryCache eraseQueryCache;
 
     @Override
     public DataDto<Void> save(GeneralPayload<Aca2001SavePayload> payload) {
@@ -44,6 +47,7 @@ public class Aca2001ServiceImpl implements Aca2001Service {
         namData.setUpDateTime(LocalDate.now());
 
         supAfterCareRepository.save(namData);
+        eraseQueryCache.evictAfterCompletion(acaData.getAcaCardNo()); // 個案基本資料異動 → 清除塗銷查詢快取
 
         return new DataDto<>(null, new ResponseInfo(1, acaData.getAcaCardNo() +":"+acaData.getId()));
     }
@@ -7,6 +7,7 @@ import com.hn2.cms.payload.aca2002.Aca2002QueryPayload;
 import com.hn2.cms.payload.aca2002.Aca2002SavePayload;
 import com.hn2.cms.repository.CrmRecRepository;
 import com.hn2.cms.service.SysService;
+import com.hn2.cms.service.aca4001.EraseQueryCache;
 import com.hn2.core.dto.DataDto;
 import com.hn2.core.dto.ResponseInfo;
 import com.hn2.core.payload.GeneralPayload;
@@ -30,6 +31,8 @@ public class Aca2002ServiceImpl implements Aca2002Service {
     ModelMapper modelMapper;
     @Autowired
     SysService sysService;
+    @Autowired
+    EraseQueryCache eraseQueryCache;
 
 
     @Override
@@ -69,6 +72,7 @@ public class Aca2002ServiceImpl implements Aca2002Service {
         data.setModifiedByUserId(sysService.convertUsernameToUserId(data.getModifiedByUserId()));
 
         crmRecRepository.save(data);
+        eraseQueryCache.evictAfterCompletion(data.getAcaCardNo()); // 犯罪紀錄異動 → 清除塗銷查詢快取
         return new DataDto<>(null,  new ResponseInfo(1, data.getAcaCardNo() +":儲存成功"));
     }
 
@@ -14,6 +14,7 @@ import com.hn2.cms.payload.aca2003.Aca2003SavePayload;
 import com.hn2.cms.repository.AcaBrdRepository;
 import com.hn2.cms.repository.SupAfterCareRepository;
 import com.hn2.cms.repository.aca2003.Aca2003Repository;
+import com.hn2.cms.service.aca4001.EraseQueryCache;
 import com.hn2.core.dto.DataDto;
 import com.hn2.core.dto.ResponseInfo;
 import com.hn2.core.payload.GeneralPayload;
@@ -64,12 +65,15 @@ public class Aca2003ServiceImpl implements Aca2003Service {
     private final Aca2003Repository repo;
     private final AcaBrdRepository acaBrdRepository;
     private final SupAfterCareRepository supAfterCareRepository;
+    private final EraseQueryCache eraseQueryCache; // 毒品濫用資料異動時清除塗銷查詢快取
 
     @Autowired
-    public Aca2003ServiceImpl(Aca2003Repository repo, AcaBrdRepository acaBrdRepository, SupAfterCareRepository supAfterCareRepository) {
+    public Aca2003ServiceImpl(Aca2003Repository repo, AcaBrdRepository acaBrdRepository, SupAfterCareRepository supAfterCareRepository,
+                              EraseQueryCache eraseQueryCache) {
         this.repo = repo;
         this.acaBrdRepository = acaBrdRepository;
         this.supAfterCareRepository = supAfterCareRepository;
+        this.eraseQueryCache = eraseQueryCache;
     }
 
     // ============================================================
@@ -133,6 +137,7 @@ public class Aca2003ServiceImpl implements Aca2003Service {
         e.setIsDeleted(Boolean.FALSE);
         e.setCreatedByBranchId(repo.findCreatedByBranchIdByAcaCardNo(card)); // 由 ACABrd 帶入
         e = repo.save(e);
+        eraseQueryCache.evictAfterCompletion(card);
         return ok(e.getId(), "新增成功");
     }
 
@@ -173,6 +178,7 @@ public class Aca2003ServiceImpl implements Aca2003Service {
         exist.setModifiedByUserId(p.getUserId());
         exist.setModifiedOnDate(now());
         repo.save(exist);
+        eraseQueryCache.evictAfterCompletion(card);
         return ok(p.getId(), "更新成功");
     }
 
@@ -403,6 +409,7 @@ public class Aca2003ServiceImpl implements Aca2003Service {
         exist.setModifiedByUserId(p.getUserId());
         exist.setModifiedOnDate(now());
         repo.save(exist);
+        eraseQueryCache.evictAfterCompletion(exist.getAcaCardNo());
 
         return new DataDto<>(new Aca2003SaveResponse(exist.getId()), new ResponseInfo(1, "刪除成功"));
     }
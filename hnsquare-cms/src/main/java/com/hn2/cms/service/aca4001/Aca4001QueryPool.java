@@ -0,0 +1,117 @@
+package com.hn2.cms.service.aca4001;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Aca4001 查詢（eraseQuery）的唯讀子查詢專用有界執行緒池。
+ * 設計：
+ * - 執行緒數 = aca4001.query.parallelism，佇列上限 aca4001.query.queueCapacity；
+ * 滿了由呼叫端執行緒自己跑（CallerRunsPolicy），尖峰時退化為循序執行，不會無限堆積或拒絕請求。
+ * - 每個子查詢各自向連線池取連線（不在交易內），連線池需預留足夠連線給 parallelism × 同時請求數。
+ * - 同一請求的子查詢放在同一個 {@link Group}（try-with-resources）：任一子查詢失敗或等待逾時（aca4001.query.timeoutSeconds），
+ * 以 cancel(true) 取消其餘子查詢後拋出（尚未開始者不再執行；執行中者送出中斷，
+ * JDBC 驅動不一定立即中止語句，最長仍受查詢本身逾時約束）；離開區塊時也會取消未取用的子查詢。
+ */
+@Component
+@Slf4j
+public class Aca4001QueryPool {
+    private final ThreadPoolExecutor pool;
+    private final long timeoutSeconds;
+
+    public Aca4001QueryPool(@Value("${aca4001.query.parallelism:6}") int parallelism,
+                            @Value("${aca4001.query.queueCapacity:64}") int queueCapacity,
+                            @Value("${aca4001.query.timeoutSeconds:30}") long timeoutSeconds) {
+        int n = Math.max(1, parallelism);
+        this.timeoutSeconds = Math.max(1, timeoutSeconds);
+        var seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    var t = new Thread(r, "aca4001-query-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+        log.info("Aca4001 query pool: parallelism={}, queueCapacity={}, timeoutSeconds={}", n, queueCapacity, this.timeoutSeconds);
+    }
+
+    /**
+     * 開一組子查詢（一個請求一組），用 try-with-resources 包住。
+     */
+    public Group group() {
+        return new Group();
+    }
+
+    /**
+     * 同一請求的一組子查詢：任一失敗/逾時即取消其他子查詢；close() 取消所有尚未完成者。
+     */
+    public final class Group implements AutoCloseable {
+        private final List<Future<?>> futures = new ArrayList<>();
+
+        private Group() {
+        }
+
+        /**
+         * 在池上非同步執行一個唯讀查詢。
+         */
+        public <T> Future<T> submit(Supplier<T> query) {
+            Future<T> f = pool.submit(query::get);
+            futures.add(f);
+            return f;
+        }
+
+        /**
+         * 等待子查詢結果；失敗時取消同組其他子查詢並拋出原本的 RuntimeException，逾時或中斷拋 IllegalStateException。
+         */
+        public <T> T join(Future<T> f) {
+            try {
+                return f.get(timeoutSeconds, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                cancelAll();
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw new IllegalStateException("查詢失敗", e.getCause());
+            } catch (TimeoutException e) {
+                cancelAll();
+                throw new IllegalStateException("查詢逾時（" + timeoutSeconds + " 秒）", e);
+            } catch (InterruptedException e) {
+                cancelAll();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("等待查詢結果時被中斷", e);
+            }
+        }
+
+        private void cancelAll() {
+            int cancelled = 0;
+            for (var f : futures) {
+                if (f.cancel(true)) cancelled++;
+            }
+            if (cancelled > 0) log.debug("event=aca4001.query.cancelled count={}", cancelled);
+        }
+
+        @Override
+        public void close() {
+            cancelAll();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -1,10 +1,17 @@
 package com.hn2.cms.service.aca4001;
 
 import com.hn2.cms.dto.aca4001.Aca4001AuditQueryDto;
+import com.hn2.cms.dto.aca4001.Aca4001BatchResultDto;
 import com.hn2.cms.dto.aca4001.Aca4001RestoreQueryDto;
+import com.hn2.cms.dto.aca4001.Aca4001ErasePlanDto;
 import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto;
+import com.hn2.cms.dto.aca4001.Aca4001JobDto;
+import com.hn2.cms.payload.aca4001.Aca4001AuditQueryPayload;
+import com.hn2.cms.payload.aca4001.Aca4001BatchErasePayload;
+import com.hn2.cms.payload.aca4001.Aca4001BatchRestorePayload;
 import com.hn2.cms.payload.aca4001.Aca4001ErasePayload;
 import com.hn2.cms.payload.aca4001.Aca4001EraseQueryPayload;
+import com.hn2.cms.payload.aca4001.Aca4001JobStatusPayload;
 import com.hn2.cms.payload.aca4001.Aca4001RestorePayload;
 import com.hn2.cms.payload.aca4001.Aca4001RestoreQueryPayload;
 import com.hn2.core.dto.DataDto;
@@ -19,5 +26,17 @@ public interface Aca4001Service {
 
     DataDto<Void> restore(GeneralPayload<Aca4001RestorePayload> payload, String userId, String userIp);
 
-    DataDto<Aca4001AuditQueryDto> auditQuery();
+    DataDto<Aca4001AuditQueryDto> auditQuery(GeneralPayload<Aca4001AuditQueryPayload> payload);
+
+    DataDto<Aca4001BatchResultDto> batchErase(GeneralPayload<Aca4001BatchErasePayload> payload, Integer userId, String userIp);
+
+    DataDto<Aca4001BatchResultDto> batchRestore(GeneralPayload<Aca4001BatchRestorePayload> payload, String userId, String userIp);
+
+    DataDto<Aca4001ErasePlanDto> erasePlan(GeneralPayload<Aca4001ErasePayload> payload);
+
+    DataDto<Aca4001JobDto> asyncErase(GeneralPayload<Aca4001ErasePayload> payload, Integer userId, String userIp);
+
+    DataDto<Aca4001JobDto> asyncRestore(GeneralPayload<Aca4001RestorePayload> payload, String userId, String userIp);
+
+    DataDto<Aca4001JobDto> jobStatus(GeneralPayload<Aca4001JobStatusPayload> payload);
 }
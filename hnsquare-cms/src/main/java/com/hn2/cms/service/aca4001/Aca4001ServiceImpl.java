@@ -1,34 +1,76 @@
 package com.hn2.cms.service.aca4001;
 
 import com.hn2.cms.dto.aca4001.Aca4001AuditQueryDto;
+import com.hn2.cms.dto.aca4001.Aca4001BatchResultDto;
+import com.hn2.cms.dto.aca4001.Aca4001ErasePlanDto;
 import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto;
+import com.hn2.cms.dto.aca4001.Aca4001JobDto;
 import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto.*;
 import com.hn2.cms.dto.aca4001.Aca4001RestoreQueryDto;
+import com.hn2.cms.payload.aca4001.Aca4001AuditQueryPayload;
+import com.hn2.cms.payload.aca4001.Aca4001BatchErasePayload;
+import com.hn2.cms.payload.aca4001.Aca4001BatchRestorePayload;
 import com.hn2.cms.payload.aca4001.Aca4001ErasePayload;
 import com.hn2.cms.payload.aca4001.Aca4001EraseQueryPayload;
+import com.hn2.cms.payload.aca4001.Aca4001JobStatusPayload;
 import com.hn2.cms.payload.aca4001.Aca4001RestorePayload;
 import com.hn2.cms.payload.aca4001.Aca4001RestoreQueryPayload;
 import com.hn2.cms.repository.aca4001.Aca4001Repository;
+import com.hn2.cms.service.aca4001.erase.CheckpointedEraseService;
+import com.hn2.cms.service.aca4001.erase.EraseEngineMode;
+import com.hn2.cms.service.aca4001.erase.EraseProgressListener;
 import com.hn2.cms.service.aca4001.erase.GenericEraseService;
 import com.hn2.cms.service.aca4001.erase.command.EraseCommand;
 import com.hn2.cms.service.aca4001.erase.command.RestoreCommand;
+import com.hn2.cms.service.aca4001.job.EraseJob;
+import com.hn2.cms.service.aca4001.job.EraseJobService;
 import com.hn2.core.dto.DataDto;
 import com.hn2.core.dto.ResponseInfo;
 import com.hn2.core.payload.GeneralPayload;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class Aca4001ServiceImpl implements Aca4001Service {
 
     private final Aca4001Repository repo;
     private final GenericEraseService genericEraseService; // 用於執行通用的塗銷與還原邏輯
+    private final EraseJobService jobService;              // 背景塗銷/還原作業
+    private final CheckpointedEraseService checkpointedEraseService; // 分段（逐規則提交、可接續）塗銷
+    private final Aca4001QueryPool queryPool;              // eraseQuery 子查詢平行執行（parallel 模式）
+    private final EraseQueryCache queryCache;              // eraseQuery 回應短期快取（依卡號）
+
+    @Value("${aca4001.query.mode:batch}")
+    private String queryMode;   // eraseQuery 載入方式：batch（單次往返多結果集）/ parallel（子查詢平行）
+
+    @Value("${erase.batch.chunkSize:20}")
+    private int batchChunkSize; // 批次作業預設每個交易處理幾個卡號
+
+    @Value("${erase.batch.maxCards:5000}")
+    private int batchMaxCards;  // 批次作業單次請求的卡號上限
+
+    @Value("${aca4001.audit.pageSize:50}")
+    private int auditPageSize;    // 稽核查詢預設每頁筆數
+
+    @Value("${aca4001.audit.maxPageSize:500}")
+    private int auditMaxPageSize; // 稽核查詢每頁筆數上限
 
     /**
      * 依個案卡號與(可選)日期區間，查詢其在「滿 18 歲以前」的 CrmRec/ProRec 清單，
@@ -40,13 +82,17 @@ public class Aca4001ServiceImpl implements Aca4001Service {
      * 4) 已滿 18 → 組成查詢時間區間 (eighteenthStart 排除；[start, endInclusive] 可選)。
      * 5) 依條件撈出 CrmRec/ProRec 的 ID 清單，再批次補齊欄位成 DTO 清單。
      * 6) 查詢「最新 ProRec 是否結案」與「主檔是否已塗銷」，設定回傳 DTO 的旗標。
+     * 載入方式由 aca4001.query.mode 決定：
+     * - batch（預設）：全部 SELECT 以單一 batch 在一條連線上一次執行，讀回多個結果集（Aca4001Repository#loadEraseQueryBundle）；
+     * - parallel：各子查詢在 Aca4001QueryPool 上平行執行後會合，每個子查詢各用一條連線。
+     * 兩者皆不包交易。
+     * 結果依卡號 + 日期區間短期快取（EraseQueryCache），塗銷/還原等寫入路徑會清除該卡號。
      *
      * @param payload GeneralPayload 包裹的請求物件，內含 acaCardNo / startDate / endDate 字串
      * @return 查詢結果與訊息
      * @throws IllegalArgumentException 當必要欄位缺漏或日期區間不正確時
      */
     @Override
-    @Transactional(readOnly = true)
     public DataDto<Aca4001EraseQueryDto> eraseQuery(GeneralPayload<Aca4001EraseQueryPayload> payload) {
 
         if (payload == null || payload.getData() == null) {
@@ -66,8 +112,26 @@ public class Aca4001ServiceImpl implements Aca4001Service {
             throw new IllegalArgumentException("startDate 不可晚於 endDate");
         }
 
+        // 同卡號、同條件的短期快取（寫入路徑會自動清除，見 EraseQueryCache）
+        return queryCache.get(acaCardNo, start + "|" + end, () -> loadEraseQuery(acaCardNo, start, end));
+    }
+
+    // eraseQuery 實際查詢與組裝（未命中快取時）
+    private DataDto<Aca4001EraseQueryDto> loadEraseQuery(String acaCardNo, LocalDate start, LocalDate end) {
+        LocalDateTime startTs = (start == null) ? null : start.atStartOfDay();
+        LocalDateTime endInclusive = (end == null) ? null : end.atTime(23, 59, 59, 999_000_000);
+
+        // 0) 載入全部查詢結果：batch = 單一連線一次往返（多結果集）；parallel = 查詢池平行執行各子查詢
+        long t0 = System.nanoTime();
+        EraseQueryBundle b = "parallel".equalsIgnoreCase(queryMode)
+                ? loadEraseQueryParallel(acaCardNo, startTs, endInclusive)
+                : repo.loadEraseQueryBundle(acaCardNo, startTs, endInclusive);
+        if (log.isDebugEnabled()) {
+            log.debug("event=aca4001.eraseQuery mode={} aca={} elapsedMs={}", queryMode, acaCardNo, (System.nanoTime() - t0) / 1_000_000);
+        }
+
         // 1) 取得生日與 18 歲門檻
-        PersonBirth pb = repo.findPersonBirth(acaCardNo);
+        PersonBirth pb = b.getPersonBirth();
         if (pb == null) {
             // 查無此人
             return new DataDto<>(null, new ResponseInfo(0, "查無此個案編號，請重新輸入"));
@@ -81,8 +145,7 @@ public class Aca4001ServiceImpl implements Aca4001Service {
         Aca4001EraseQueryDto dto = new Aca4001EraseQueryDto();
 
         // 以系統當日判斷是否已滿 18（today >= eighteenthStart）
-        LocalDate today = LocalDate.now();
-        boolean over18 = !today.isBefore(pb.getEighteenthStart()); // today >= 18歲當日
+        boolean over18 = isOver18(pb);
         dto.setOver18(over18);
 
         // 未滿 18：直接回空清單與訊息
@@ -93,42 +156,54 @@ public class Aca4001ServiceImpl implements Aca4001Service {
             return new DataDto<>(dto, new ResponseInfo(1, "查詢成功：個案未滿18"));
         }
 
-        // 2) 已滿18 → 組區間 [start, end]，end 含當天
-        LocalDateTime eighteenthStart = pb.getEighteenthStart().atStartOfDay();
-        LocalDateTime startTs = (start == null) ? null : start.atStartOfDay();
-        LocalDateTime endInclusive = (end == null) ? null : end.atTime(23, 59, 59, 999_000_000);
-
-        // 3) 針對滿18歲個案，撈所有的犯罪紀錄 ID 清單
-        List<String> crmIds = repo.findAllCrmRecIdsByAcaCardNo(acaCardNo);
-        // 4) 針對滿18歲個案，撈18歲前的保護紀錄 ID 清單
-        List<String> proIds = repo.findProRecIdsBefore18(acaCardNo, eighteenthStart, startTs, endInclusive);
-        // 5) 針對滿18歲個案，撈所有的毒品紀錄 ID 清單
-        List<String> drgIds = repo.findAllAcaDrugUseIdsByAcaCardNo(acaCardNo);
-
-        // CrmRec：用犯罪紀錄ID清單補齊CrmRec.dto欄位
-        List<Aca4001EraseQueryDto.CrmRec> crmRecs = repo.findCrmRecsByIds(crmIds);
-        dto.setCrmRecList(crmRecs);
-
-        // ProRec：用保護紀錄ID清單補齊ProRec.dto欄位
-        List<Aca4001EraseQueryDto.ProRec> proRecs = repo.findProRecsByIds(proIds);
-        dto.setProRecListBefore18(proRecs);
+        // 2) 已滿18 → CrmRec（全部）/ ProRec（18 歲前，[start, end] 含當天）/ ACADrugUse（全部）
+        dto.setCrmRecList(b.getCrmRecs());
+        dto.setProRecListBefore18(b.getProRecs());
+        dto.setAcaDrugUseList(b.getAcaDrugUses());
 
-        // ProRec：用保護紀錄ID清單補齊ACADrugUse.dto欄位
-        List<Aca4001EraseQueryDto.ACADrugUse> drgRecs = repo.findAcaDrugUsesByIds(drgIds);
-        dto.setAcaDrugUseList(drgRecs);
-
-        // 5) 判斷最新 ProRec 是否結案
-        Boolean latestClosed = repo.findLatestProRecClosed(acaCardNo);
-        dto.setLatestProRecClosed(latestClosed != null && latestClosed);
-
-        // 6) 判斷 ACABrd 是否已塗銷
-        Boolean erased = repo.findPersonErased(acaCardNo);
-        dto.setErased(erased != null && erased);
+        // 3) 最新 ProRec 是否結案、ACABrd 是否已塗銷
+        dto.setLatestProRecClosed(Boolean.TRUE.equals(b.getLatestProRecClosed()));
+        dto.setErased(Boolean.TRUE.equals(b.getErased()));
 
         // 已滿 18 的正常回覆
         return new DataDto<>(dto, new ResponseInfo(1, "查詢成功：個案已滿18"));
     }
 
+    /**
+     * eraseQuery 的平行載入（aca4001.query.mode=parallel）：互不相依的讀取在 Aca4001QueryPool 上同時執行後會合。
+     * - 生日、犯罪/毒品紀錄 ID → 明細、最新 ProRec 結案、主檔塗銷先全部送出；
+     * - 保護紀錄需以 18 歲當日為界，待生日回來且已滿 18 才查；查無人或未滿 18 時其餘結果直接捨棄。
+     */
+    private EraseQueryBundle loadEraseQueryParallel(String acaCardNo, LocalDateTime startTs, LocalDateTime endInclusive) {
+        try (var q = queryPool.group()) { // 任一子查詢失敗/逾時或提前返回時，取消其餘子查詢
+            var birthF = q.submit(() -> repo.findPersonBirth(acaCardNo));
+            var crmF = q.submit(() -> repo.findCrmRecsByIds(repo.findAllCrmRecIdsByAcaCardNo(acaCardNo)));
+            var drgF = q.submit(() -> repo.findAcaDrugUsesByIds(repo.findAllAcaDrugUseIdsByAcaCardNo(acaCardNo)));
+            var latestClosedF = q.submit(() -> repo.findLatestProRecClosed(acaCardNo));
+            var erasedF = q.submit(() -> repo.findPersonErased(acaCardNo));
+
+            var b = new EraseQueryBundle();
+            PersonBirth pb = q.join(birthF);
+            b.setPersonBirth(pb);
+            if (pb == null || pb.getBirthDate() == null || !isOver18(pb)) return b;
+
+            LocalDateTime eighteenthStart = pb.getEighteenthStart().atStartOfDay();
+            var proF = q.submit(() -> repo.findProRecsByIds(repo.findProRecIdsBefore18(acaCardNo, eighteenthStart, startTs, endInclusive)));
+
+            b.setCrmRecs(q.join(crmF));
+            b.setProRecs(q.join(proF));
+            b.setAcaDrugUses(q.join(drgF));
+            b.setLatestProRecClosed(q.join(latestClosedF));
+            b.setErased(q.join(erasedF));
+            return b;
+        }
+    }
+
+    // 以系統當日判斷是否已滿 18（today >= eighteenthStart）
+    private static boolean isOver18(PersonBirth pb) {
+        return !LocalDate.now().isBefore(pb.getEighteenthStart());
+    }
+
     /**
      * 執行塗銷（erase）：
      * - 若個案「已滿 18」：只塗銷前端勾選的 CrmRec / ProRec，及其關聯表
@@ -140,63 +215,39 @@ public class Aca4001ServiceImpl implements Aca4001Service {
      * 4) 建立 EraseCommand 交給 GenericEraseService 執行（鏡像 → 清空 → 稽核）。
      * 5) 回傳結果訊息。
      * 交易性：
-     * - 使用 @Transactional，方法內任何未捕捉的 Runtime 例外將導致整個交易回滾。
+     * - 本方法不開交易：一般塗銷的交易由 GenericEraseService#eraseRows（@Transactional）負責，
+     * 其中任何未捕捉的 Runtime 例外將導致整個塗銷回滾。
+     * - erase.schedule.parallel=true 時改走 GenericEraseService#eraseRowsInBranches：互不相依的規則分支各用一條連線平行執行，
+     * ERASE 稽核隨最後一個分支提交，任一分支失敗則全部回滾。
+     * - checkpointed=true 時改走分段塗銷（CheckpointedEraseService）：每條規則各自提交，失敗只回滾當下那條，
+     * 以相同條件重送即從下一條接續。不在外層交易內執行，避免整段期間占用一條閒置連線。
      *
-     * @param payload 包含 acaCardNo、使用者選取的紀錄 ID、以及可選的 isOver18/docNum/eraseReason
+     * @param payload 包含 acaCardNo、使用者選取的紀錄 ID、以及可選的 isOver18/docNum/eraseReason/checkpointed
      * @param userId  操作人 UserID（用於稽核）
      * @param userIp  操作人 IP（用於稽核）
      * @return 空資料主體 + 成功訊息（依滿/未滿 18 帶入不同字串）
      * @throws IllegalArgumentException acaCardNo 缺漏或為空時拋出
      */
     @Override
-    @Transactional
     public DataDto<Void> erase(GeneralPayload<Aca4001ErasePayload> payload, Integer userId, String userIp) {
         var req = payload.getData();
         if (req == null || req.getAcaCardNo() == null || req.getAcaCardNo().isBlank())
             throw new IllegalArgumentException("acaCardNo 不可為空");
 
-        // 2) 判定是否已滿 18：
-        //    - 若前端有帶 isOver18 就採用
-        //    - 若沒帶，為了相容舊版行為，預設當作「已滿 18」
-        Boolean over18Flag = req.getIsOver18();
-        boolean isOver18 = (over18Flag != null) ? over18Flag : true;
+        // 2) 判定是否已滿 18 → 3) 整理 tableToIds → 4) 組成 EraseCommand
+        boolean isOver18 = isOver18(req);
+        EraseCommand cmd = buildEraseCommand(req, isOver18, userId, userIp);
 
-        // 3) 整理「要塗銷的表與其 ID 清單」的對應表
-        var tableToIds = new java.util.HashMap<String, List<String>>();
-
-        if (isOver18) {
-            // (A) 已滿 18 → 只塗銷使用者選取的紀錄（可能為空清單，服務會自行跳過）
-            tableToIds.put("CrmRec", java.util.Optional.ofNullable(req.getSelectedCrmRecIds()).orElse(List.of()));
-            tableToIds.put("ProRec", java.util.Optional.ofNullable(req.getSelectedProRecIds()).orElse(List.of()));
-            tableToIds.put("AcaDrugUse", java.util.Optional.ofNullable(req.getSelectedAcaDrugUseIds()).orElse(List.of()));
+        // 5) 執行實際塗銷（鏡像 → 清空；成功後寫一筆 ERASE 入塗銷異動表）
+        //    分段模式：每條規則獨立提交，中斷後以相同條件重送即接續
+        if (Boolean.TRUE.equals(req.getCheckpointed())) {
+            checkpointedEraseService.erase(cmd, EraseProgressListener.NOOP);
         } else {
-            // (B) 未滿 18 → 全案塗銷
-            //     依卡號把該個案底下的所有 CrmRec / ProRec 的 ID 全撈出
-            List<String> allCrmIds = repo.findAllCrmRecIdsByAcaCardNo(req.getAcaCardNo());
-            List<String> allProIds = repo.findAllProRecIdsByAcaCardNo(req.getAcaCardNo());
-            List<String> allDrugIds = repo.findAllAcaDrugUseIdsByAcaCardNo(req.getAcaCardNo());
-
-            tableToIds.put("CrmRec", allCrmIds);
-            tableToIds.put("ProRec", allProIds);
-            tableToIds.put("AcaDrugUse", allDrugIds);
-
-            // 另外放入父表 ACABrd 的 key，讓 DependentEraseTarget（例如 Families / Career / Memo / ACABrd 本身）
-            // 能以 parentTableName() == "ACABrd" 及此卡號清單作為刪空依據。
-            tableToIds.put("ACABrd", List.of(req.getAcaCardNo()));
+            runErase(cmd, EraseProgressListener.NOOP);
+        }
+        if (genericEraseService.getEngine() == EraseEngineMode.DRYRUN) {
+            return new DataDto<>(null, new ResponseInfo(1, "試算模式（erase.engine=DRYRUN）：未異動任何資料"));
         }
-
-        // 4) 組成 EraseCommand（包含人員、IP、發文文號、塗銷原因等資訊）交給共用服務處理
-        EraseCommand cmd = EraseCommand.builder()
-                .acaCardNo(req.getAcaCardNo())
-                .tableToIds(tableToIds)
-                .operatorUserId(userId)
-                .operatorIp(userIp)
-                .docNum(req.getDocNum())
-                .eraseReason(req.getEraseReason())
-                .build();
-
-        // 5) 執行實際塗銷（鏡像 → 清空；成功後寫一筆 ERASE 入塗銷異動表）
-        genericEraseService.eraseRows(cmd);
 
         // 6) 回傳訊息（依滿/未滿 18 顯示不同成功字串）
         return new DataDto<>(null, new ResponseInfo(1,
@@ -292,28 +343,374 @@ public class Aca4001ServiceImpl implements Aca4001Service {
     }
 
     /**
-     * 塗銷異動紀錄查詢（Audit-Query）。
+     * 塗銷異動紀錄查詢（Audit-Query），keyset 分頁 + 伺服器端篩選。
      * 流程：
-     * 1) 透過 repo.findAuditRows() 讀取全部塗銷/還原的塗銷異動資料列。
-     * 2) 封裝到 Aca4001AuditQueryDto.items 後回傳。
+     * 1) 解析篩選條件（action / acaCardNo / [startDate, endDate]，皆選用）與分頁游標（上一頁的 nextCursor）。
+     * 2) 透過 repo.findAuditRows() 依 (CreatedOnDate DESC, AuditID DESC) 取 pageSize + 1 列，多出的一列僅用來判斷是否有下一頁。
+     * 3) 封裝到 Aca4001AuditQueryDto.items；有下一頁時以本頁最後一列產生 nextCursor。
      * 回傳：
      * - DataDto<Aca4001AuditQueryDto>，成功碼固定 1，訊息「查詢成功」。
-     * - 當查無資料時，items 應為空清單（而非 null）。
+     * - 當查無資料時，items 應為空清單（而非 null），nextCursor 為 null。
+     * 說明：
+     * - 游標為不透明字串（Base64URL），前端原樣帶回即可；游標內含篩選條件雜湊，翻頁時條件不同即拒絕。
+     * - 游標指向的稽核列已不存在時拒絕（而非回空頁），前端應從第一頁重新查詢。
+     * - 未帶 payload 時等同「無篩選的第一頁」。
      *
+     * @param payload GeneralPayload 包裹的查詢條件（可為 null）
      * @return 包含稽核項目的回應包裝物件
+     * @throws IllegalArgumentException 篩選條件或游標格式不正確時
      */
     @Override
-    public DataDto<Aca4001AuditQueryDto> auditQuery() {
-        // 1) 讀取稽核資料列（由 repo 控制排序/篩選/分頁等）
-        var rows = repo.findAuditRows();
+    public DataDto<Aca4001AuditQueryDto> auditQuery(GeneralPayload<Aca4001AuditQueryPayload> payload) {
+        var req = (payload == null || payload.getData() == null) ? new Aca4001AuditQueryPayload() : payload.getData();
+
+        // 1) 篩選條件
+        var filter = new Aca4001AuditQueryDto.Filter();
+        if (req.getAction() != null && !req.getAction().isBlank()) {
+            String action = req.getAction().trim().toUpperCase(Locale.ROOT);
+            if (!"ERASE".equals(action) && !"RESTORE".equals(action)) {
+                throw new IllegalArgumentException("action 只能是 ERASE 或 RESTORE");
+            }
+            filter.setAction(action);
+        }
+        if (req.getAcaCardNo() != null && !req.getAcaCardNo().isBlank()) {
+            filter.setAcaCardNo(req.getAcaCardNo().trim());
+        }
+        LocalDate start = parseDateOrNull(req.getStartDate());
+        LocalDate end = parseDateOrNull(req.getEndDate());
+        if (start != null && end != null && start.isAfter(end)) {
+            throw new IllegalArgumentException("startDate 不可晚於 endDate");
+        }
+        if (start != null) filter.setFrom(Timestamp.valueOf(start.atStartOfDay()));
+        if (end != null) filter.setToExclusive(Timestamp.valueOf(end.plusDays(1).atStartOfDay())); // 含 end 當天
+        if (req.getCursor() != null && !req.getCursor().isBlank()) {
+            decodeAuditCursor(req.getCursor().trim(), filter);
+        }
+
+        int pageSize = req.getPageSize() == null || req.getPageSize() <= 0 ? auditPageSize : req.getPageSize();
+        pageSize = Math.min(pageSize, auditMaxPageSize);
+
+        // 2) 多取一列判斷是否有下一頁
+        var rows = repo.findAuditRows(filter, pageSize + 1);
+        if (rows.isEmpty() && filter.getAfterAuditId() != null && !repo.existsAuditRow(filter.getAfterAuditId())) {
+            // 錨點列已不存在：無法定位下一頁，不可當成「已無資料」回傳
+            throw new IllegalArgumentException("cursor 已失效，請從第一頁重新查詢");
+        }
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) rows = new ArrayList<>(rows.subList(0, pageSize));
 
-        // 2) 封裝成回傳 DTO
+        // 3) 封裝成回傳 DTO
         var dto = new Aca4001AuditQueryDto();
         dto.setItems(rows);
+        dto.setNextCursor(hasMore ? encodeAuditCursor(rows.get(rows.size() - 1), filter) : null);
 
         return new DataDto<>(dto, new ResponseInfo(1, "查詢成功"));
     }
 
+    // 稽核分頁游標：Base64URL("a1|AuditID|篩選條件雜湊")；排序鍵 (CreatedOnDate, AuditID) 由 repo 以 AuditID 取回
+    static String encodeAuditCursor(Aca4001AuditQueryDto.Row last, Aca4001AuditQueryDto.Filter filter) {
+        String raw = "a1|" + last.getAuditId() + "|" + auditFilterHash(filter);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 解析游標並設定 filter.afterAuditId；filter 需已填好篩選條件（用來比對雜湊）
+    static void decodeAuditCursor(String cursor, Aca4001AuditQueryDto.Filter filter) {
+        String[] parts;
+        long afterId;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            parts = raw.split("\\|", -1);
+            if (parts.length != 3 || !"a1".equals(parts[0])) throw new IllegalArgumentException("unknown cursor version");
+            afterId = Long.parseLong(parts[1]);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("cursor 格式不正確", e);
+        }
+        if (!parts[2].equals(auditFilterHash(filter))) {
+            throw new IllegalArgumentException("翻頁時篩選條件需與取得 cursor 時相同");
+        }
+        filter.setAfterAuditId(afterId);
+    }
+
+    // 篩選條件（不含分頁位置）的 CRC32，只用來偵測翻頁時條件被改動
+    private static String auditFilterHash(Aca4001AuditQueryDto.Filter f) {
+        String key = f.getAction() + "|" + f.getAcaCardNo() + "|" + f.getFrom() + "|" + f.getToExclusive();
+        var crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * 多卡號批次「全案塗銷」（保存年限到期清理等情境）。
+     * 流程：
+     * 1) 卡號去空白、去重（保留順序），依 chunkSize 分段；每段為一個獨立交易（GenericEraseService.eraseCards，REQUIRES_NEW）。
+     * 2) 每段先以一次查詢取得整段卡號的 CrmRec / ProRec / AcaDrugUse ID，組成與單筆「未滿 18 全案塗銷」相同的 EraseCommand。
+     * 3) 某段失敗 → 該段回滾後改為逐卡重跑，找出實際失敗的卡號；其他卡號照常提交。
+     * 回傳：逐卡結果（成功/失敗與原因）。本方法本身不開交易。
+     *
+     * @param payload 包含 acaCardNos、docNum、eraseReason、(可選) chunkSize
+     * @param userId  操作人 UserID（用於稽核）
+     * @param userIp  操作人 IP（用於稽核）
+     */
+    @Override
+    public DataDto<Aca4001BatchResultDto> batchErase(GeneralPayload<Aca4001BatchErasePayload> payload, Integer userId, String userIp) {
+        var req = payload.getData();
+        if (req == null) throw new IllegalArgumentException("data 不可為空");
+        var cards = normalizeCardNos(req.getAcaCardNos());
+
+        var dto = runInChunks(cards, req.getChunkSize(), chunk -> {
+            var idsByCard = repo.findAllEraseTargetIdsByAcaCardNos(chunk);
+            var cmds = new ArrayList<EraseCommand>(chunk.size());
+            for (String aca : chunk) {
+                var tableToIds = new java.util.HashMap<String, List<String>>(idsByCard.get(aca));
+                tableToIds.put("ACABrd", List.of(aca)); // 讓 ACABrd 與其子表以卡號為父鍵全案塗銷
+                cmds.add(EraseCommand.builder()
+                        .acaCardNo(aca)
+                        .tableToIds(tableToIds)
+                        .operatorUserId(userId)
+                        .operatorIp(userIp)
+                        .docNum(req.getDocNum())
+                        .eraseReason(req.getEraseReason())
+                        .build());
+            }
+            genericEraseService.eraseCards(cmds);
+        });
+        return new DataDto<>(dto, new ResponseInfo(dto.getFailed() == 0 ? 1 : 0,
+                "批次塗銷完成：成功 " + dto.getSucceeded() + " 筆，失敗 " + dto.getFailed() + " 筆"));
+    }
+
+    /**
+     * 多卡號批次還原；分段與失敗處理方式同 {@link #batchErase}（GenericEraseService.restoreCards，REQUIRES_NEW）。
+     *
+     * @param payload 包含 acaCardNos、restoreReason、(可選) chunkSize
+     * @param userId  操作人 UserID（用於稽核）
+     * @param userIp  操作人 IP（用於稽核）
+     */
+    @Override
+    public DataDto<Aca4001BatchResultDto> batchRestore(GeneralPayload<Aca4001BatchRestorePayload> payload, String userId, String userIp) {
+        var req = payload.getData();
+        if (req == null) throw new IllegalArgumentException("data 不可為空");
+        var cards = normalizeCardNos(req.getAcaCardNos());
+
+        var dto = runInChunks(cards, req.getChunkSize(), chunk -> {
+            var cmds = new ArrayList<RestoreCommand>(chunk.size());
+            for (String aca : chunk) {
+                cmds.add(RestoreCommand.builder()
+                        .acaCardNo(aca)
+                        .operatorUserId(userId)
+                        .operatorIp(userIp)
+                        .restoreReason(req.getRestoreReason())
+                        .build());
+            }
+            genericEraseService.restoreCards(cmds);
+        });
+        return new DataDto<>(dto, new ResponseInfo(dto.getFailed() == 0 ? 1 : 0,
+                "批次還原完成：成功 " + dto.getSucceeded() + " 筆，失敗 " + dto.getFailed() + " 筆"));
+    }
+
+    /**
+     * 以背景作業執行塗銷：請求執行緒只做驗證與組指令，立即回傳 jobId；
+     * 實際的鏡像 → 清空 → 稽核在作業執行緒上以同一個交易完成（GenericEraseService.eraseRows；
+     * erase.schedule.parallel=true 時為平行分支，見 {@link #erase}）。
+     * 進度與結果以 {@link #jobStatus} 查詢。
+     *
+     * @param payload 同 {@link #erase}
+     * @param userId  操作人 UserID（用於稽核）
+     * @param userIp  操作人 IP（用於稽核）
+     * @return 作業初始狀態（含 jobId）
+     * @throws IllegalArgumentException acaCardNo 缺漏或為空時拋出
+     * @throws IllegalStateException    背景作業已達上限
+     */
+    @Override
+    public DataDto<Aca4001JobDto> asyncErase(GeneralPayload<Aca4001ErasePayload> payload, Integer userId, String userIp) {
+        var req = payload.getData();
+        if (req == null || req.getAcaCardNo() == null || req.getAcaCardNo().isBlank())
+            throw new IllegalArgumentException("acaCardNo 不可為空");
+
+        EraseCommand cmd = buildEraseCommand(req, isOver18(req), userId, userIp);
+        var job = jobService.submit(EraseJob.Type.ERASE, req.getAcaCardNo(),
+                Boolean.TRUE.equals(req.getCheckpointed())
+                        ? listener -> checkpointedEraseService.erase(cmd, listener)
+                        : listener -> runErase(cmd, listener));
+        return new DataDto<>(job.toDto(), new ResponseInfo(1, "塗銷作業已受理"));
+    }
+
+    // 一般（非分段）塗銷：erase.schedule.parallel=true 時走平行分支（不開交易、稽核隨最後分支提交），否則單一交易逐條執行
+    private void runErase(EraseCommand cmd, EraseProgressListener listener) {
+        if (genericEraseService.isBranchEraseEnabled()) {
+            genericEraseService.eraseRowsInBranches(cmd, listener);
+        } else {
+            genericEraseService.eraseRows(cmd, listener);
+        }
+    }
+
+    /**
+     * 以背景作業執行還原；流程同 {@link #restore}，進度與結果以 {@link #jobStatus} 查詢。
+     *
+     * @param payload 同 {@link #restore}
+     * @param userId  操作人 UserID（用於稽核）
+     * @param userIp  操作人 IP（用於稽核）
+     * @return 作業初始狀態（含 jobId）
+     */
+    @Override
+    public DataDto<Aca4001JobDto> asyncRestore(GeneralPayload<Aca4001RestorePayload> payload, String userId, String userIp) {
+        var req = payload.getData();
+        if (req == null || req.getAcaCardNo() == null || req.getAcaCardNo().isBlank())
+            throw new IllegalArgumentException("acaCardNo 不可為空");
+
+        RestoreCommand cmd = RestoreCommand.builder()
+                .acaCardNo(req.getAcaCardNo())
+                .operatorUserId(userId)
+                .operatorIp(userIp)
+                .restoreReason(req.getRestoreReason())
+                .build();
+        var job = jobService.submit(EraseJob.Type.RESTORE, req.getAcaCardNo(),
+                listener -> genericEraseService.restoreAllByAcaCardNo(cmd, listener));
+        return new DataDto<>(job.toDto(), new ResponseInfo(1, "還原作業已受理"));
+    }
+
+    /**
+     * 查詢背景作業狀態：狀態、開始/結束時間、耗時與逐規則的鏡像/清空/回寫列數。
+     *
+     * @param payload 包含 jobId
+     * @return 作業狀態；查無（或已超過保留期限）時回傳訊息碼 0
+     */
+    @Override
+    public DataDto<Aca4001JobDto> jobStatus(GeneralPayload<Aca4001JobStatusPayload> payload) {
+        var req = payload.getData();
+        if (req == null || req.getJobId() == null || req.getJobId().isBlank())
+            throw new IllegalArgumentException("jobId 不可為空");
+
+        var job = jobService.find(req.getJobId());
+        if (job == null) return new DataDto<>(null, new ResponseInfo(0, "查無此作業：" + req.getJobId()));
+        return new DataDto<>(job.toDto(), new ResponseInfo(1, "查詢成功"));
+    }
+
+    /**
+     * 塗銷試算（erase plan）：以與 {@link #erase} 相同的輸入解析出要處理的表與鍵，
+     * 依規則順序回傳每張表預計鏡像＋清空的列數、資料量與預估鏡像位元組，不做任何異動。
+     * 供作業人員評估大型塗銷的負載，決定是否排在離峰時段執行。
+     *
+     * @param payload 同 {@link #erase}
+     * @return 各規則試算結果（依執行順序）與合計
+     * @throws IllegalArgumentException acaCardNo 缺漏或為空時拋出
+     */
+    @Override
+    public DataDto<Aca4001ErasePlanDto> erasePlan(GeneralPayload<Aca4001ErasePayload> payload) {
+        var req = payload.getData();
+        if (req == null || req.getAcaCardNo() == null || req.getAcaCardNo().isBlank())
+            throw new IllegalArgumentException("acaCardNo 不可為空");
+
+        boolean isOver18 = isOver18(req);
+        var plan = genericEraseService.planErase(buildEraseCommand(req, isOver18, null, null));
+        plan.setOver18(isOver18);
+        return new DataDto<>(plan, new ResponseInfo(1, "試算完成：預計影響 " + plan.getTotalRows() + " 列"));
+    }
+
+    /*Helper method for erase / asyncErase*/
+
+    // 判定是否已滿 18：若前端有帶 isOver18 就採用；若沒帶，為了相容舊版行為，預設當作「已滿 18」
+    private static boolean isOver18(Aca4001ErasePayload req) {
+        Boolean over18Flag = req.getIsOver18();
+        return (over18Flag != null) ? over18Flag : true;
+    }
+
+    // 依滿/未滿 18 整理「要塗銷的表與其 ID 清單」，組成 EraseCommand
+    private EraseCommand buildEraseCommand(Aca4001ErasePayload req, boolean isOver18, Integer userId, String userIp) {
+        // 3) 整理「要塗銷的表與其 ID 清單」的對應表
+        var tableToIds = new java.util.HashMap<String, List<String>>();
+
+        if (isOver18) {
+            // (A) 已滿 18 → 只塗銷使用者選取的紀錄（可能為空清單，服務會自行跳過）
+            tableToIds.put("CrmRec", java.util.Optional.ofNullable(req.getSelectedCrmRecIds()).orElse(List.of()));
+            tableToIds.put("ProRec", java.util.Optional.ofNullable(req.getSelectedProRecIds()).orElse(List.of()));
+            tableToIds.put("AcaDrugUse", java.util.Optional.ofNullable(req.getSelectedAcaDrugUseIds()).orElse(List.of()));
+        } else {
+            // (B) 未滿 18 → 全案塗銷
+            //     依卡號把該個案底下的所有 CrmRec / ProRec 的 ID 全撈出
+            List<String> allCrmIds = repo.findAllCrmRecIdsByAcaCardNo(req.getAcaCardNo());
+            List<String> allProIds = repo.findAllProRecIdsByAcaCardNo(req.getAcaCardNo());
+            List<String> allDrugIds = repo.findAllAcaDrugUseIdsByAcaCardNo(req.getAcaCardNo());
+
+            tableToIds.put("CrmRec", allCrmIds);
+            tableToIds.put("ProRec", allProIds);
+            tableToIds.put("AcaDrugUse", allDrugIds);
+
+            // 另外放入父表 ACABrd 的 key，讓 DependentEraseTarget（例如 Families / Career / Memo / ACABrd 本身）
+            // 能以 parentTableName() == "ACABrd" 及此卡號清單作為刪空依據。
+            tableToIds.put("ACABrd", List.of(req.getAcaCardNo()));
+        }
+
+        // 4) 組成 EraseCommand（包含人員、IP、發文文號、塗銷原因等資訊）交給共用服務處理
+        return EraseCommand.builder()
+                .acaCardNo(req.getAcaCardNo())
+                .tableToIds(tableToIds)
+                .operatorUserId(userId)
+                .operatorIp(userIp)
+                .docNum(req.getDocNum())
+                .eraseReason(req.getEraseReason())
+                .build();
+    }
+
+    /*Helper method for batchErase / batchRestore*/
+    private List<String> normalizeCardNos(List<String> acaCardNos) {
+        if (acaCardNos == null || acaCardNos.isEmpty()) throw new IllegalArgumentException("acaCardNos 不可為空");
+        var cards = acaCardNos.stream()
+                .filter(c -> c != null && !c.isBlank())
+                .map(String::trim)
+                .distinct()
+                .collect(Collectors.toList());
+        if (cards.isEmpty()) throw new IllegalArgumentException("acaCardNos 不可為空");
+        if (cards.size() > batchMaxCards)
+            throw new IllegalArgumentException("acaCardNos 超過單次上限 " + batchMaxCards + " 筆");
+        return cards;
+    }
+
+    // 依 chunkSize 分段執行；某段失敗則逐卡重跑以取得每張卡的實際結果
+    private Aca4001BatchResultDto runInChunks(List<String> cards, Integer requestedChunkSize, Consumer<List<String>> chunkWork) {
+        int size = Math.max(1, requestedChunkSize != null ? requestedChunkSize : batchChunkSize);
+        var results = new java.util.LinkedHashMap<String, Aca4001BatchResultDto.Item>();
+
+        for (int i = 0; i < cards.size(); i += size) {
+            var chunk = cards.subList(i, Math.min(i + size, cards.size()));
+            try {
+                chunkWork.accept(chunk);
+                chunk.forEach(aca -> results.put(aca, batchItem(aca, null)));
+            } catch (RuntimeException e) {
+                if (chunk.size() == 1) {
+                    results.put(chunk.get(0), batchItem(chunk.get(0), e));
+                    continue;
+                }
+                log.warn("[Batch] chunk failed, retrying per card: cards={}, cause={}", chunk.size(), e.toString());
+                for (String aca : chunk) {
+                    try {
+                        chunkWork.accept(List.of(aca));
+                        results.put(aca, batchItem(aca, null));
+                    } catch (RuntimeException e2) {
+                        results.put(aca, batchItem(aca, e2));
+                    }
+                }
+            }
+        }
+
+        var dto = new Aca4001BatchResultDto();
+        dto.setItems(new ArrayList<>(results.values()));
+        dto.setTotal(cards.size());
+        dto.setSucceeded((int) results.values().stream().filter(Aca4001BatchResultDto.Item::getSuccess).count());
+        dto.setFailed(cards.size() - dto.getSucceeded());
+        return dto;
+    }
+
+    private static Aca4001BatchResultDto.Item batchItem(String aca, RuntimeException error) {
+        var item = new Aca4001BatchResultDto.Item();
+        item.setAcaCardNo(aca);
+        item.setSuccess(error == null);
+        if (error != null) {
+            log.warn("[Batch] card failed: aca={}, cause={}", aca, error.toString());
+            item.setMessage(error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName());
+        }
+        return item;
+    }
+
     //Helper method for eraseQuery
     /*Helper method for eraseQuery*/
     private static LocalDate parseDateOrNull(String s) {
@@ -0,0 +1,151 @@
+package com.hn2.cms.service.aca4001;
+
+import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto;
+import com.hn2.core.dto.DataDto;
+import com.hn2.core.dto.ResponseInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * 塗銷查詢（eraseQuery）回應的短期快取，以 ACACardNo 為鍵。
+ * 設計：
+ * - 存放在 ehcache.xml 的 aca4001EraseQuery（只用 heap、TTL 短），每張卡只留最近一次查詢條件（日期區間）的結果；
+ * 條件不同視為未命中並以新結果覆蓋。只快取成功回應（code = 1）。
+ * - 失效：塗銷、還原與其他寫入 ACABrd / CrmRec / AcaDrugUse 的路徑呼叫 {@link #evictAfterCompletion}，
+ * 在交易結束後清除該卡號（不在交易內時立即清除）。
+ * - 防止舊資料回填：卡號雜湊到固定數量的段，每段一個版本號；清除時遞增版本。
+ * 載入前記下版本，寫入快取後若版本已變（期間有寫入完成）就把剛寫入的結果清掉。
+ * 指標：
+ * - aca4001.eraseQuery.cache（Counter，tag result = hit / miss）：命中率 = hit / (hit + miss)，用來調整 TTL。
+ * - aca4001.eraseQuery.cache.evictions（Counter）：因寫入而清除的次數。
+ */
+@Component
+@Slf4j
+public class EraseQueryCache {
+    static final String CACHE_NAME = "aca4001EraseQuery";
+
+    private final Cache cache; // null = 停用
+    private final AtomicLongArray versions;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public EraseQueryCache(CacheManager cacheManager, MeterRegistry registry,
+                           @Value("${aca4001.queryCache.enabled:true}") boolean enabled,
+                           @Value("${aca4001.queryCache.stripes:256}") int stripes) {
+        this.cache = enabled ? cacheManager.getCache(CACHE_NAME) : null;
+        if (enabled && this.cache == null) {
+            log.warn("Cache '{}' 未設定（ehcache.xml），eraseQuery 快取停用", CACHE_NAME);
+        }
+        this.versions = new AtomicLongArray(Math.max(1, stripes));
+        this.hits = Counter.builder("aca4001.eraseQuery.cache").tag("result", "hit")
+                .description("eraseQuery cache lookups").register(registry);
+        this.misses = Counter.builder("aca4001.eraseQuery.cache").tag("result", "miss")
+                .description("eraseQuery cache lookups").register(registry);
+        this.evictions = Counter.builder("aca4001.eraseQuery.cache.evictions")
+                .description("eraseQuery cache entries evicted by writes").register(registry);
+    }
+
+    /**
+     * 取快取；未命中（或條件不同）時以 loader 查詢，成功回應才寫入快取。
+     *
+     * @param acaCardNo 個案卡號（已 trim）
+     * @param rangeKey  查詢條件（日期區間）識別
+     */
+    public DataDto<Aca4001EraseQueryDto> get(String acaCardNo, String rangeKey, Supplier<DataDto<Aca4001EraseQueryDto>> loader) {
+        if (cache == null) return loader.get();
+
+        String key = key(acaCardNo);
+        Entry cached = cache.get(key, Entry.class);
+        if (cached != null && cached.rangeKey.equals(rangeKey)) {
+            hits.increment();
+            return new DataDto<>(cached.data, new ResponseInfo(1, cached.message)); // 回應時間以本次為準
+        }
+        misses.increment();
+
+        int stripe = stripeOf(key);
+        long version = versions.get(stripe);
+        var result = loader.get();
+        var state = result == null || result.getResponse() == null ? null : result.getResponse().getState();
+        if (state != null && state.getCode() == 1) {
+            cache.put(key, new Entry(rangeKey, result.getData(), state.getMsgSubject()));
+            if (versions.get(stripe) != version) cache.evict(key); // 載入期間有寫入完成 → 結果可能已過期
+        }
+        return result;
+    }
+
+    /**
+     * 卡號資料異動：在目前交易結束後（commit 或 rollback）清除快取；不在交易內時立即清除。
+     * 交易進行中先遞增版本，避免期間載入的舊結果被保留。
+     */
+    public void evictAfterCompletion(Collection<String> acaCardNos) {
+        if (cache == null || acaCardNos == null || acaCardNos.isEmpty()) return;
+        var cards = List.copyOf(acaCardNos);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(cards);
+            return;
+        }
+        bump(cards);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                evict(cards);
+            }
+        });
+    }
+
+    public void evictAfterCompletion(String acaCardNo) {
+        if (acaCardNo != null) evictAfterCompletion(List.of(acaCardNo));
+    }
+
+    private void evict(Collection<String> cards) {
+        bump(cards);
+        for (String c : cards) {
+            if (c == null || c.isBlank()) continue;
+            if (cache.evictIfPresent(key(c))) evictions.increment();
+        }
+    }
+
+    private void bump(Collection<String> cards) {
+        for (String c : cards) {
+            if (c != null && !c.isBlank()) versions.incrementAndGet(stripeOf(key(c)));
+        }
+    }
+
+    private int stripeOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return Math.floorMod(h, versions.length());
+    }
+
+    // 卡號比對方式與 SQL Server 預設定序一致（trim + 不分大小寫）
+    private static String key(String acaCardNo) {
+        return acaCardNo.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // 快取內容：查詢條件、組好的回應資料與訊息（共用同一份 DTO，呼叫端不可修改）
+    private static final class Entry {
+        final String rangeKey;
+        final Aca4001EraseQueryDto data;
+        final String message;
+
+        Entry(String rangeKey, Aca4001EraseQueryDto data, String message) {
+            this.rangeKey = rangeKey;
+            this.data = data;
+            this.message = message;
+        }
+    }
+}
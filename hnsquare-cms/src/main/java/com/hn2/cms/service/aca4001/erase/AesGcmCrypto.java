@@ -21,6 +21,26 @@ public class AesGcmCrypto {
     private final SecretKey key;
     private static final int GCM_TAG_BITS = 128;   // 認證標籤長度 128 bits（標準建議值）
     private static final int GCM_IV_BYTES = 12;    // GCM 推薦 IV 長度：12 bytes（96 bits）
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    // SecureRandom 為執行緒安全，全程共用一個（避免每次 new 重新取種）
+    private static final SecureRandom RANDOM = new SecureRandom();
+    // Cipher / MessageDigest 非執行緒安全 → 每個執行緒各持有一份重複使用（每次使用前都會重新 init/reset）
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
     public AesGcmCrypto(@Value("${erase.crypto.base64Key}") String base64Key) {
         // 1) 讀取並解 Base64；得到原始金鑰位元組
@@ -44,43 +64,66 @@ public class AesGcmCrypto {
         }
     }
 
+    // 位元組版的回傳封裝：密文與 IV 原始位元組（供 VARBINARY 儲存）
+    public static final class EncodedBytes {
+        public final byte[] ciphertext; // AES-GCM(ciphertext || tag)
+        public final byte[] iv;         // 12-byte IV
+
+        public EncodedBytes(byte[] ciphertext, byte[] iv) {
+            this.ciphertext = ciphertext;
+            this.iv = iv;
+        }
+    }
+
     /**
      * 將 JSON（或任意字串）加密為 Base64 密文＋IV（AES-GCM），每次呼叫都會產生新的隨機 IV。
      */
     public Encoded encryptJson(String json) {
+        // 以 UTF-8 編碼後加密，回傳 Base64(ciphertext) 與 Base64(IV)
+        var enc = encryptBytes(json.getBytes(StandardCharsets.UTF_8));
+        return new Encoded(Base64.getEncoder().encodeToString(enc.ciphertext),
+                Base64.getEncoder().encodeToString(enc.iv));
+    }
+
+    /**
+     * 以 Base64 密文＋IV 解回原始 JSON 字串（同金鑰、同 GCM 參數）。
+     */
+    public String decryptToJson(String payloadBase64, String ivBase64) {
+        // 解 Base64 取得 IV 與密文 → 解密 → UTF-8 字串
+        byte[] iv = Base64.getDecoder().decode(ivBase64);
+        byte[] ct = Base64.getDecoder().decode(payloadBase64);
+        return new String(decryptBytes(ct, iv), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 將任意位元組加密（AES-GCM），每次呼叫都會產生新的隨機 IV。
+     */
+    public EncodedBytes encryptBytes(byte[] plain) {
         // 1) 產生 12-byte 隨機 IV（GCM 建議長度）
         byte[] iv = new byte[GCM_IV_BYTES];
-        new SecureRandom().nextBytes(iv);
+        RANDOM.nextBytes(iv);
         try {
-            // 2) 取得 Cipher，設定為 AES/GCM/NoPadding
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            // 2) 取得本執行緒的 AES/GCM/NoPadding Cipher
+            Cipher cipher = CIPHER.get();
             // 3) 以金鑰與 IV 初始化為加密模式，標籤長度 128 bits
             cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            // 4) 執行加密（UTF-8 編碼）
-            byte[] ct = cipher.doFinal(json.getBytes(StandardCharsets.UTF_8));
-            // 5) 回傳 Base64(ciphertext) 與 Base64(IV)
-            return new Encoded(Base64.getEncoder().encodeToString(ct),
-                    Base64.getEncoder().encodeToString(iv));
+            // 4) 執行加密
+            return new EncodedBytes(cipher.doFinal(plain), iv);
         } catch (GeneralSecurityException e) {
             throw new IllegalStateException("AES-GCM encrypt failed", e);
         }
     }
 
     /**
-     * 以 Base64 密文＋IV 解回原始 JSON 字串（同金鑰、同 GCM 參數）。
+     * 以密文＋IV 原始位元組解密（同金鑰、同 GCM 參數）。
      */
-    public String decryptToJson(String payloadBase64, String ivBase64) {
+    public byte[] decryptBytes(byte[] ct, byte[] iv) {
         try {
-            // 1) 解 Base64 取得 IV 與密文
-            byte[] iv = Base64.getDecoder().decode(ivBase64);
-            byte[] ct = Base64.getDecoder().decode(payloadBase64);
-            // 2) 取得 Cipher 並初始化為解密模式（同樣的標籤長度與 IV）
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            // 1) 取得本執行緒的 Cipher 並初始化為解密模式（同樣的標籤長度與 IV）
+            Cipher cipher = CIPHER.get();
             cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            // 3) 執行解密與驗證；若密文/IV/標籤被竄改會在此丟出 AEADBadTagException
-            byte[] pt = cipher.doFinal(ct);
-            // 4) 回傳 UTF-8 字串
-            return new String(pt, StandardCharsets.UTF_8);
+            // 2) 執行解密與驗證；若密文/IV/標籤被竄改會在此丟出 AEADBadTagException
+            return cipher.doFinal(ct);
         } catch (GeneralSecurityException e) {
             throw new IllegalStateException("AES-GCM decrypt failed", e);
         }
@@ -90,14 +133,15 @@ public class AesGcmCrypto {
      * 對任意字串計算 SHA-256 並以 64 位十六進位小寫字串回傳。
      */
     public static String sha256Hex(String s) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-256");
-            byte[] h = md.digest(s.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder(64);
-            for (byte b : h) sb.append(String.format("%02x", b));
-            return sb.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new IllegalStateException(e);
+        MessageDigest md = SHA256.get();
+        md.reset();
+        byte[] h = md.digest(s.getBytes(StandardCharsets.UTF_8));
+        // 查表轉十六進位（輸出與 String.format("%02x") 相同）
+        char[] out = new char[h.length * 2];
+        for (int i = 0; i < h.length; i++) {
+            out[i * 2] = HEX[(h[i] >> 4) & 0x0f];
+            out[i * 2 + 1] = HEX[h[i] & 0x0f];
         }
+        return new String(out);
     }
-}
\ No newline at end of file
+}
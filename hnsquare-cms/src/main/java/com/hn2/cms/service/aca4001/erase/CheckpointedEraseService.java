@@ -0,0 +1,90 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import com.hn2.cms.repository.aca4001.erase.EraseCheckpointRepo;
+import com.hn2.cms.service.aca4001.erase.command.EraseCommand;
+import com.hn2.cms.service.aca4001.erase.rules.ParentKeyLookups;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 分段（checkpointed）塗銷：大型個案不再以單一交易處理全部規則，而是「每條規則一個交易」逐條提交，
+ * 並把完成的規則記到 ACA_EraseCheckpoint；中斷（當機、逾時、例外）後以相同指令重新呼叫即從下一條規則接續。
+ * 一致性：
+ * - 每條規則的鏡像 upsert、清空 UPDATE 與進度紀錄在同一交易內提交（GenericEraseService#eraseRuleStep），
+ * 已記錄完成的規則不會重做，避免以已清空的值覆寫鏡像；未完成的規則整條回滾，重跑時重新鏡像。
+ * - 因此任一時點已清空的列都有對應鏡像，中途放棄時仍可用一般還原完整復原（還原時會一併清除進度紀錄）。
+ * - ERASE 稽核在最後一步才寫入，並清除進度紀錄。
+ * 接續條件：
+ * - 以「卡號 + 各表 ID 清單（排序）」的 SHA-256 識別指令；同卡號存在不同指令的未完成進度時拒絕執行，
+ * 需以相同條件重跑，或先還原。
+ * - 一般塗銷（單筆/批次）遇到有未完成進度的卡號一律拒絕（GenericEraseService#rejectOpenCheckpoints），
+ * 避免重讀已清空的列而覆寫鏡像。
+ * 並行：
+ * - 整段期間持有該卡號的應用層鎖（EraseCardLocks#withLocks），其他塗銷/還原會排隊等候。
+ * - 不使用 erase.schedule.parallel 分支排程（逐條提交本身已縮短每個交易的鎖定時間）。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CheckpointedEraseService {
+    private final GenericEraseService eraseService;
+    private final EraseCheckpointRepo checkpointRepo;
+    private final EraseCardLocks cardLocks;
+
+    /**
+     * 執行（或接續）分段塗銷。每一步都是獨立提交，因此不可在外層交易中呼叫
+     * （外層交易既無法回滾這些步驟，又會在整段期間占用一條閒置連線）。
+     */
+    public void erase(EraseCommand cmd, EraseProgressListener listener) {
+        if (eraseService.getEngine() == EraseEngineMode.DRYRUN) {
+            eraseService.eraseRows(cmd, listener); // 試算模式：只記錄試算結果
+            return;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("分段塗銷不可在外層交易內執行");
+        }
+        String aca = cmd.getAcaCardNo();
+        String hash = commandHash(cmd);
+        cardLocks.withLocks(List.of(aca), () -> {
+            var done = new HashSet<Integer>();
+            for (var cp : checkpointRepo.findByAcaCardNo(aca)) {
+                if (!hash.equals(cp.getCommandHash())) {
+                    throw new IllegalStateException("卡號 " + aca + " 有內容不同的分段塗銷尚未完成，請以相同條件重新執行或先還原");
+                }
+                done.add(cp.getRuleOrder());
+            }
+            if (!done.isEmpty()) log.info("event=erase.resume aca={} completedRules={}", aca, done.size());
+
+            var rules = eraseService.getRules();
+            var lookups = new ParentKeyLookups(); // 本次執行內共用；接續時重新查詢
+            for (int i = 0; i < rules.size(); i++) {
+                if (done.contains(i)) continue;
+                eraseService.eraseRuleStep(cmd, hash, i, rules.get(i).getTable(), lookups, listener);
+            }
+            eraseService.finishCheckpointedErase(cmd);
+            log.info("event=erase.checkpointed.done aca={} rules={} resumedFrom={}", aca, rules.size(), done.size());
+        });
+    }
+
+    /**
+     * 指令識別：卡號 + 各表（排序）→ ID 清單（去重排序）的 SHA-256；與 Map/清單原本的順序無關。
+     */
+    static String commandHash(EraseCommand cmd) {
+        var sb = new StringBuilder(cmd.getAcaCardNo() == null ? "" : cmd.getAcaCardNo().trim());
+        for (Map.Entry<String, List<String>> e : new TreeMap<>(cmd.getTableToIds()).entrySet()) {
+            var ids = new ArrayList<String>();
+            if (e.getValue() != null) e.getValue().stream().filter(java.util.Objects::nonNull).distinct().sorted().forEach(ids::add);
+            if (ids.isEmpty()) continue;
+            sb.append('\n').append(e.getKey()).append('=').append(String.join(",", ids));
+        }
+        return AesGcmCrypto.sha256Hex(sb.toString());
+    }
+}
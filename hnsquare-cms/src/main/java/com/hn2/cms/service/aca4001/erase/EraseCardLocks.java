@@ -0,0 +1,114 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 以 ACACardNo 分段（striped）的應用層鎖，避免重疊卡號的塗銷/還原在 SQL Server 互相死結。
+ * 規則：
+ * - 卡號（trim + 大寫）雜湊到固定數量的段；一次要鎖多張卡時，先把段號去重「由小到大」依序上鎖，
+ * 所有呼叫端取鎖順序一致 → 不會在應用層形成循環等待；衝突的作業排隊，不相干的卡號（不同段）完全平行。
+ * - 鎖一直持有到交易結束（commit/rollback 之後才釋放），確保 DB 端的列鎖也已釋放，下一個作業才進場。
+ * - 取鎖逾時（erase.lock.timeoutSeconds）會釋放已取得的段並拋出 IllegalStateException，不會無限等待。
+ * 注意：
+ * - 必須在 Spring 交易內呼叫（以 TransactionSynchronization 在 afterCompletion 釋放，同一執行緒上執行）。
+ * - ReentrantLock 可重入：同一執行緒在外層已鎖住的卡號，內層再鎖不會卡住。
+ * - 鎖只在單一 JVM 內有效：多台 API 主機同時對同一卡號塗銷/還原時不會互相排隊，
+ * 多機部署需另以資料庫鎖（如 sp_getapplock）或把塗銷/還原集中到單一主機。
+ */
+@Component
+@Slf4j
+public class EraseCardLocks {
+    private final ReentrantLock[] stripes;
+    private final long timeoutSeconds;
+
+    public EraseCardLocks(@Value("${erase.lock.stripes:256}") int stripes,
+                          @Value("${erase.lock.timeoutSeconds:300}") long timeoutSeconds) {
+        this.stripes = new ReentrantLock[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++) this.stripes[i] = new ReentrantLock(true);
+        this.timeoutSeconds = Math.max(1, timeoutSeconds);
+    }
+
+    /**
+     * 依固定順序鎖住 cards 對應的所有段，並在目前交易結束後釋放。
+     *
+     * @throws IllegalStateException 不在交易內，或等待逾時
+     */
+    public void lockUntilCompletion(Collection<String> cards) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("EraseCardLocks 必須在交易內使用");
+        }
+        var held = lockAll(cards);
+        if (held.isEmpty()) return;
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unlockAll(held);
+            }
+        });
+    }
+
+    /**
+     * 不在交易內、需跨多個交易持有時使用（如分段塗銷）：依固定順序鎖住 cards，work 結束（含例外）後釋放。
+     * 其間各交易再呼叫 {@link #lockUntilCompletion} 會重入同一把鎖，不會卡住。
+     */
+    public void withLocks(Collection<String> cards, Runnable work) {
+        var held = lockAll(cards);
+        try {
+            work.run();
+        } finally {
+            unlockAll(held);
+        }
+    }
+
+    /**
+     * 依段號由小到大取鎖；任一段逾時即釋放已取得者並拋出例外。回傳已取得的段（取鎖順序）。
+     */
+    List<ReentrantLock> lockAll(Collection<String> cards) {
+        var order = new TreeSet<Integer>();
+        for (String c : cards) {
+            if (c != null && !c.isBlank()) order.add(stripeOf(c));
+        }
+        var held = new ArrayList<ReentrantLock>(order.size());
+        try {
+            for (int idx : order) {
+                var lock = stripes[idx];
+                if (!lock.tryLock(timeoutSeconds, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("等待卡號鎖逾時（" + timeoutSeconds + " 秒），可能有其他塗銷/還原作業正在處理相同卡號");
+                }
+                held.add(lock);
+            }
+        } catch (InterruptedException e) {
+            unlockAll(held);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待卡號鎖時被中斷", e);
+        } catch (RuntimeException e) {
+            unlockAll(held);
+            throw e;
+        }
+        if (log.isDebugEnabled()) log.debug("event=erase.lock cards={} stripes={}", cards.size(), order);
+        return held;
+    }
+
+    // 反向釋放
+    static void unlockAll(List<ReentrantLock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) held.get(i).unlock();
+    }
+
+    int stripeOf(String card) {
+        int h = card.trim().toUpperCase(Locale.ROOT).hashCode();
+        h ^= (h >>> 16); // 打散低位，避免相近卡號集中在同一段
+        return Math.floorMod(h, stripes.length);
+    }
+}
@@ -0,0 +1,91 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 塗銷/還原的 CPU 密集階段（JSON 序列化、AES-GCM 加解密、SHA-256）專用的有界執行緒池。
+ * 設計：
+ * - 執行緒數 = erase.crypto.parallelism（≤0 時取 CPU 核心數），佇列有上限，滿了由呼叫端執行緒自己跑（CallerRunsPolicy），
+ * 不會無限堆積工作。
+ * - {@link #mapOrdered(List, Function)} 把清單切成連續區段平行處理，結果依原順序回傳，
+ * 後續的 DB 寫入仍維持規則順序與列順序。
+ * - 列數少於 erase.crypto.parallelMinRows 時直接在呼叫端執行緒逐列處理，省去排程成本。
+ * 注意：工作函式不可存取 DB（不在交易執行緒上）。
+ */
+@Component
+@Slf4j
+public class EraseCryptoPool {
+    private final ThreadPoolExecutor pool;
+    private final int parallelism;
+    private final int minRows;
+
+    public EraseCryptoPool(@Value("${erase.crypto.parallelism:0}") int parallelism,
+                           @Value("${erase.crypto.parallelMinRows:64}") int minRows) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.minRows = Math.max(1, minRows);
+        var seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(
+                this.parallelism, this.parallelism, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(this.parallelism * 4),
+                r -> {
+                    var t = new Thread(r, "erase-crypto-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+        log.info("Erase crypto pool: parallelism={}, parallelMinRows={}", this.parallelism, this.minRows);
+    }
+
+    /**
+     * 依原順序平行轉換清單；任一元素失敗即拋出該例外（RuntimeException 原樣往外拋）。
+     */
+    public <T, R> List<R> mapOrdered(List<T> in, Function<? super T, ? extends R> fn) {
+        if (in == null || in.isEmpty()) return List.of();
+        if (parallelism <= 1 || in.size() < minRows) {
+            var out = new ArrayList<R>(in.size());
+            for (T t : in) out.add(fn.apply(t));
+            return out;
+        }
+
+        // 切成 parallelism 個連續區段，每段一個工作，減少排程開銷
+        int chunk = (in.size() + parallelism - 1) / parallelism;
+        var futures = new ArrayList<CompletableFuture<List<R>>>();
+        for (int i = 0; i < in.size(); i += chunk) {
+            var sub = in.subList(i, Math.min(i + chunk, in.size()));
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                var part = new ArrayList<R>(sub.size());
+                for (T t : sub) part.add(fn.apply(t));
+                return part;
+            }, pool));
+        }
+
+        var out = new ArrayList<R>(in.size());
+        try {
+            for (var f : futures) out.addAll(f.join()); // 依區段順序合併 → 維持原列順序
+        } catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(false));
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        return out;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,28 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import java.util.Locale;
+
+/**
+ * erase.engine 設定值：
+ * - RULE：直接以規則引擎執行塗銷。
+ * - DRYRUN：只試算（各規則列數/資料量），不做任何異動；/erase 回傳試算摘要。
+ * - DUAL_DRYRUN：先試算並以 DEBUG 記錄，再照常執行（可比對預估與實際列數）；DEBUG 未開時不做試算。
+ * - LEGACY：舊引擎已移除，視同 RULE。
+ */
+public enum EraseEngineMode {
+    RULE, DRYRUN, DUAL_DRYRUN;
+
+    /**
+     * 容忍大小寫與 '-'（如 dual-dryrun）；空值為 RULE，無法辨識則拋出例外（啟動即失敗）。
+     */
+    public static EraseEngineMode parse(String s) {
+        if (s == null || s.isBlank()) return RULE;
+        String v = s.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+        if ("LEGACY".equals(v)) return RULE;
+        try {
+            return valueOf(v);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("erase.engine must be one of RULE | DRYRUN | DUAL_DRYRUN, got " + s);
+        }
+    }
+}
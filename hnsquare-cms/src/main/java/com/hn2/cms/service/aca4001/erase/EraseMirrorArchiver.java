@@ -0,0 +1,31 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import com.hn2.cms.repository.aca4001.erase.EraseMirrorRepo;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * 鏡像封存的單批搬移（由 EraseMirrorRetentionJob 逐批呼叫，每批一個獨立交易）。
+ */
+@Service
+@RequiredArgsConstructor
+public class EraseMirrorArchiver {
+    private final EraseMirrorRepo mirrorRepo;
+    private final EraseCardLocks cardLocks;
+
+    /**
+     * 鎖住卡號（依固定順序，與塗銷/還原互斥）→ DELETE ... OUTPUT INTO 封存表；整批同一交易，失敗即回滾。
+     *
+     * @return 搬移列數
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int archiveBatch(List<String> acaCardNos, Timestamp cutoff) {
+        cardLocks.lockUntilCompletion(acaCardNos);
+        return mirrorRepo.archiveCards(acaCardNos, cutoff);
+    }
+}
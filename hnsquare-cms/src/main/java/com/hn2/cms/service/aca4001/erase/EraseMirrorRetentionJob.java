@@ -0,0 +1,60 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import com.hn2.cms.repository.aca4001.erase.EraseMirrorRepo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 鏡像保留期限：把過期的鏡像列從 ACA_EraseMirror 搬到 ACA_EraseMirrorArchive，讓熱表（MERGE 的目標）維持小而快。
+ * 規則：
+ * - 以「卡號」為單位：某卡號所有鏡像列都早於保留期限（erase.mirror.archive.retentionDays）才整批搬移，
+ * 同一個案的鏡像不會一半在熱表、一半在封存表。
+ * - 每批最多 cardsPerBatch 個卡號、一個獨立交易並持有卡號鎖（EraseMirrorArchiver#archiveBatch），
+ * 只在排程視窗（cron 觸發起 windowMinutes 分鐘）內持續搬移，時間到即停止，下次排程接續。
+ * - 還原會同時讀取兩張表（見 EraseMirrorRepo#forEachByAcaCardNo），呼叫端不需知道資料在哪裡。
+ * 開關：erase.mirror.archive.enabled（需先執行 sql/aca4001/03_erase_mirror_archive.sql）。
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EraseMirrorRetentionJob {
+    private final EraseMirrorRepo mirrorRepo;
+    private final EraseMirrorArchiver archiver;
+
+    @Value("${erase.mirror.archive.retentionDays:180}")
+    private int retentionDays;
+
+    @Value("${erase.mirror.archive.cardsPerBatch:200}")
+    private int cardsPerBatch;
+
+    @Value("${erase.mirror.archive.windowMinutes:60}")
+    private int windowMinutes;
+
+    @Scheduled(cron = "${erase.mirror.archive.cron:0 0 2 * * *}")
+    public void runWindow() {
+        if (!mirrorRepo.isArchiveEnabled()) return;
+        long deadline = System.nanoTime() + Duration.ofMinutes(Math.max(1, windowMinutes)).toNanos();
+        var cutoff = Timestamp.valueOf(LocalDateTime.now().minusDays(Math.max(1, retentionDays)));
+        int batches = 0, cards = 0, rows = 0;
+        try {
+            while (System.nanoTime() < deadline) {
+                var picked = mirrorRepo.findArchivableCards(cutoff, Math.max(1, cardsPerBatch));
+                if (picked.isEmpty()) break;
+                rows += archiver.archiveBatch(picked, cutoff);
+                cards += picked.size();
+                batches++;
+            }
+        } catch (RuntimeException e) {
+            log.error("event=mirror.archive.failed batches={} cards={} rows={}", batches, cards, rows, e);
+            return;
+        }
+        log.info("event=mirror.archive.done cutoff={} batches={} cards={} rows={}", cutoff, batches, cards, rows);
+    }
+}
@@ -0,0 +1,23 @@
+package com.hn2.cms.service.aca4001.erase;
+
+/**
+ * 塗銷/還原進度回報。
+ * - GenericEraseService 在每條規則完成鏡像、清空、回寫後呼叫；同步請求使用 {@link #NOOP}。
+ * - 開啟 erase.schedule.parallel 或平行分支時可能由多條執行緒同時呼叫，實作需執行緒安全。
+ */
+public interface EraseProgressListener {
+    EraseProgressListener NOOP = new EraseProgressListener() {
+    };
+
+    /** 規則完成鏡像寫入（rows = 寫入鏡像表的列數）。 */
+    default void onMirrored(String table, int rows) {
+    }
+
+    /** 規則完成清空（rows = UPDATE 影響列數）。 */
+    default void onErased(String table, int rows) {
+    }
+
+    /** 規則完成一批還原回寫（rows = 回寫列數）。 */
+    default void onRestored(String table, int rows) {
+    }
+}
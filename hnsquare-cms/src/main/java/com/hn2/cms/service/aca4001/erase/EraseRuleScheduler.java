@@ -0,0 +1,180 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import com.hn2.cms.repository.aca4001.erase.TxSql2o;
+import com.hn2.cms.service.aca4001.erase.rules.EraseTableConfigPojo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 依規則間的相依關係，把塗銷規則切成「互不相干的分支」並平行執行。
+ * 相依判定：
+ * - 同一張表、parentTable、parentIdLookupTable 互相連通的規則屬於同一分支（例如 ACABrd 與其子表 ACAFamilies/Career/Memo），
+ * 分支內維持原本 @Order 的順序逐條執行；不同分支（如 CrmRec、AcaDrugUse、ProRec 系列）同時進行。
+ * 交易協調：
+ * - 每個分支一條獨立連線（autoCommit=false，見 TxSql2o#runInBranch）。
+ * - 收尾步驟（lastStep，如 ERASE 稽核）在最後一個分支的連線上、該分支的規則之後執行，並且該分支最後提交：
+ * 稽核已提交 ⇒ 所有分支皆已提交。
+ * - 全部分支成功 → 依序 commit；任一分支（或收尾步驟）失敗 → 全部 rollback 並拋出第一個例外。
+ * - 非分散式交易：若 commit 途中失敗，已提交的分支無法撤回（稽核所在分支必定尚未提交），會記錄錯誤並拋出例外供人工處理。
+ * - 不可在呼叫端交易內執行（runBranches 會拒絕）：分支提交無法與外層交易一併回滾。
+ * 入口：GenericEraseService#eraseRowsInBranches（不開 Spring 交易）；erase.schedule.parallel=true 時單筆/背景塗銷改走此入口。
+ * 開關：erase.schedule.parallel（預設 false，走原本單一交易逐條執行）。
+ */
+@Component
+@Slf4j
+public class EraseRuleScheduler {
+    private final TxSql2o sql2o;
+    private final boolean enabled;
+    private final ThreadPoolExecutor pool;
+
+    public EraseRuleScheduler(TxSql2o sql2o,
+                              @Value("${erase.schedule.parallel:false}") boolean enabled,
+                              @Value("${erase.schedule.maxBranches:4}") int maxBranches) {
+        this.sql2o = sql2o;
+        this.enabled = enabled;
+        int n = Math.max(1, maxBranches);
+        var seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(n * 4),
+                r -> {
+                    var t = new Thread(r, "erase-branch-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 以 union-find 依表名把規則分成連通分支；分支內與分支間都保留規則的原始順序。
+     */
+    public static List<List<EraseTableConfigPojo>> branches(List<EraseTableConfigPojo> rules) {
+        var parent = new HashMap<String, String>();
+        for (var r : rules) {
+            union(parent, r.getTable(), r.getTable());
+            if (r.getParentTable() != null && !r.getParentTable().isBlank()) union(parent, r.getTable(), r.getParentTable());
+            if (r.getParentIdLookupTable() != null && !r.getParentIdLookupTable().isBlank()) union(parent, r.getTable(), r.getParentIdLookupTable());
+        }
+        var groups = new LinkedHashMap<String, List<EraseTableConfigPojo>>();
+        for (var r : rules) {
+            groups.computeIfAbsent(find(parent, r.getTable()), k -> new ArrayList<>()).add(r);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    /**
+     * 每個分支在自己的連線上依序執行 work；lastStep 接在最後一個分支之後、同一連線上執行。
+     * 全部成功才提交（最後一個分支最後提交），否則全部回滾。
+     */
+    public void runBranches(List<List<EraseTableConfigPojo>> branches, Consumer<EraseTableConfigPojo> work, Runnable lastStep) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("塗銷分支不可在呼叫端交易內平行執行（分支提交無法與外層交易一併回滾）");
+        }
+        // 先在呼叫端開好所有分支連線，失敗時可確實關閉已開的連線
+        var cons = new ArrayList<Connection>(branches.size());
+        try {
+            for (int i = 0; i < branches.size(); i++) cons.add(sql2o.openBranchConnection());
+        } catch (RuntimeException e) {
+            cons.forEach(c -> finish(c, false));
+            throw e;
+        }
+
+        var futures = new ArrayList<CompletableFuture<Void>>(branches.size());
+        for (int i = 0; i < branches.size(); i++) {
+            var branch = branches.get(i);
+            var con = cons.get(i);
+            boolean last = i == branches.size() - 1;
+            futures.add(CompletableFuture.runAsync(() -> sql2o.runInBranch(con, () -> {
+                branch.forEach(work);
+                if (last) lastStep.run();
+            }), pool));
+        }
+
+        // 等待全部分支結束（不論成敗），再統一決定提交或回滾
+        Throwable failure = null;
+        for (var f : futures) {
+            try {
+                f.join();
+            } catch (CompletionException e) {
+                if (failure == null) failure = e.getCause();
+            }
+        }
+
+        if (failure != null) {
+            cons.forEach(c -> finish(c, false));
+            if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+            throw new IllegalStateException(failure);
+        }
+
+        int committed = 0;
+        try {
+            for (var c : cons) {
+                c.commit();
+                committed++;
+            }
+        } catch (SQLException e) {
+            log.error("[EraseBranches] commit failed after {}/{} branches committed", committed, cons.size(), e);
+            for (int i = committed; i < cons.size(); i++) finish(cons.get(i), false);
+            throw new IllegalStateException("塗銷分支提交失敗（已提交 " + committed + "/" + cons.size() + " 個分支）", e);
+        } finally {
+            for (int i = 0; i < committed; i++) finish(cons.get(i), true);
+        }
+        log.info("[EraseBranches] committed branches={}", committed);
+    }
+
+    // 結束分支連線：失敗者先回滾，最後一律關閉
+    private static void finish(Connection c, boolean committed) {
+        try {
+            if (!committed) c.rollback();
+        } catch (SQLException e) {
+            log.warn("[EraseBranches] rollback failed", e);
+        }
+        try {
+            c.close();
+        } catch (SQLException e) {
+            log.warn("[EraseBranches] close failed", e);
+        }
+    }
+
+    private static void union(Map<String, String> parent, String a, String b) {
+        String ra = find(parent, a);
+        String rb = find(parent, b);
+        if (!ra.equals(rb)) parent.put(rb, ra);
+    }
+
+    private static String find(Map<String, String> parent, String x) {
+        parent.putIfAbsent(x, x);
+        String p = parent.get(x);
+        if (p.equals(x)) return x;
+        String root = find(parent, p);
+        parent.put(x, root);
+        return root;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+}
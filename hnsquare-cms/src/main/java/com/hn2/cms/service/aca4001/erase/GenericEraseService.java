@@ -2,21 +2,32 @@ package com.hn2.cms.service.aca4001.erase;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hn2.cms.dto.aca4001.Aca4001ErasePlanDto;
 import com.hn2.cms.repository.aca4001.erase.EraseAuditRepo;
+import com.hn2.cms.repository.aca4001.erase.EraseCheckpointRepo;
 import com.hn2.cms.repository.aca4001.erase.EraseMirrorRepo;
+import com.hn2.cms.service.aca4001.EraseQueryCache;
 import com.hn2.cms.service.aca4001.erase.command.EraseCommand;
 import com.hn2.cms.service.aca4001.erase.command.RestoreCommand;
+import com.hn2.cms.service.aca4001.erase.rules.CompactRow;
 import com.hn2.cms.service.aca4001.erase.rules.EraseTableConfigPojo;
 import com.hn2.cms.service.aca4001.erase.rules.EraseRestoreExecutor;
+import com.hn2.cms.service.aca4001.erase.rules.ParentKeyLookups;
 import com.hn2.cms.service.aca4001.erase.support.RowUtils;
+import com.hn2.cms.service.aca4001.erase.support.TypedFields;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,61 +36,350 @@ import java.util.stream.Collectors;
 public class GenericEraseService {
     private final EraseMirrorRepo mirrorRepo;                       // 鏡像表存取（ACA_EraseMirror）
     private final EraseAuditRepo auditRepo;                         // 塗銷異動表存取（ACA_EraseAudit）
-    private final AesGcmCrypto crypto;                              // AES-GCM 加解密與 sha256 計算
+    private final MirrorPayloadCodec payloadCodec;                  // 鏡像 payload 版本化編解碼（壓縮＋AES-GCM）
     private final ObjectMapper om;                                  // JSON 序列化/反序列化
     private final List<EraseTableConfigPojo> tableConfig;           // 各表的規則宣告
     private final EraseRestoreExecutor executor;                    // 通用執行器
+    private final EraseCryptoPool cryptoPool;                       // 加解密/SHA 平行處理用的有界執行緒池
+    private final EraseRuleScheduler scheduler;                     // 相依分支平行排程（eraseRowsInBranches）
+    private final EraseMetrics metrics;                             // 各規則/各階段耗時與列數（Micrometer）
+    private final EraseCardLocks cardLocks;                         // 依卡號分段的應用層鎖（避免重疊卡號死結）
+    private final EraseCheckpointRepo checkpointRepo;               // 分段塗銷進度（ACA_EraseCheckpoint）
+    private final EraseQueryCache queryCache;                       // eraseQuery 回應快取（交易結束後清除異動卡號）
+
+    private static final String AUDIT_SCHEMA = "dbo";
+    private static final String AUDIT_TABLE = "ACA_EraseAudit";
+
+    @Value("${erase.restore.chunkSize:500}")
+    private int restoreChunkSize;                                   // 串流還原時每批解密＋回寫的列數
+
+    @Value("${erase.engine:RULE}")
+    private String engineSetting;                                   // RULE | DRYRUN | DUAL_DRYRUN（見 EraseEngineMode）
+    private EraseEngineMode engine;
+
+    @PostConstruct
+    void initEngine() {
+        this.engine = EraseEngineMode.parse(engineSetting);
+        log.info("Erase engine mode={}", engine);
+    }
+
+    public EraseEngineMode getEngine() {
+        return engine;
+    }
+
+    @Value("${erase.log.payloadSampleRate:0}")
+    private double payloadSampleRate;                               // 非 DEBUG 時以 INFO 輸出 payload 預覽的抽樣比例（0 = 不輸出，1 = 全部）
 
-    // 新增在類別裡（任一欄位區塊都可）
-    private static final String C_RULE = "\u001B[96m";  // 亮青：Rule
-    private static final String C_RST = "\u001B[95m";  // 粉紫：Restore 標籤
-    private static final String C_ERS = "\u001B[94m";  // 亮藍：Erase 標籤
-    private static final String C_RESET = "\u001B[0m";
+    private static final int PAYLOAD_PREVIEW_MAX = 2000;            // payload 預覽最多字元數
 
     /**
      * 以規則引擎執行：鏡像（寫入 ACA_EraseMirror）→ 清空 → 寫 ERASE 稽核。
      */
     @Transactional
     public void eraseRows(EraseCommand cmd) {
-        runRuleErase(cmd); // 依規則：鏡像→清空
+        eraseRows(cmd, EraseProgressListener.NOOP);
+    }
+
+    /**
+     * 同 {@link #eraseRows(EraseCommand)}，並把每條規則的鏡像/清空列數回報給 listener（背景作業進度用）。
+     */
+    @Transactional
+    public void eraseRows(EraseCommand cmd, EraseProgressListener listener) {
+        if (skipForDryRun(cmd)) return;
+        lockCards(List.of(cmd.getAcaCardNo())); // 同卡號的作業排隊，交易結束才放行
+        rejectOpenCheckpoints(List.of(cmd.getAcaCardNo()));
+        runRuleErase(cmd, listener); // 依規則：鏡像→清空
 
         // 成功後寫一筆 ERASE 稽核（整體流程成功才寫）
-        auditRepo.insertEraseAction(
+        metrics.time(EraseMetrics.Phase.AUDIT, AUDIT_SCHEMA, AUDIT_TABLE, () -> auditRepo.insertEraseAction(
                 cmd.getAcaCardNo(),
                 cmd.getDocNum(),
                 cmd.getEraseReason(),
                 cmd.getOperatorUserId(),
                 cmd.getOperatorIp()
-        );
+        ));
     }
 
-    private void runRuleErase(EraseCommand cmd) {
-        log.info("Loaded rules: {}", tableConfig.stream().map(EraseTableConfigPojo::getTable).collect(Collectors.toList()));
+    /**
+     * 平行分支塗銷（erase.schedule.parallel=true 時的單筆/背景塗銷入口）：本方法不開 Spring 交易，
+     * 依相依關係把規則分成分支，各分支在自己的連線上同時鏡像 → 清空（EraseRuleScheduler#runBranches），
+     * ERASE 稽核寫在最後提交的分支連線上，與所有分支一起提交或回滾。
+     * 卡號鎖以 EraseCardLocks#withLocks 持有到全部分支結束；eraseQuery 快取在結束後清除。
+     *
+     * @throws IllegalStateException 在呼叫端交易內呼叫，或卡號有未完成的分段塗銷
+     */
+    public void eraseRowsInBranches(EraseCommand cmd, EraseProgressListener listener) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("平行分支塗銷不可在外層交易內執行");
+        }
+        if (skipForDryRun(cmd)) return;
+        var cards = List.of(cmd.getAcaCardNo());
+        cardLocks.withLocks(cards, () -> {
+            try {
+                rejectOpenCheckpoints(cards);
+                var lookups = new ParentKeyLookups(); // 各分支共用（執行緒安全）
+                var branches = EraseRuleScheduler.branches(tableConfig);
+                log.info("event=erase.branches aca={} branches={}", cmd.getAcaCardNo(), branches.stream()
+                        .map(b -> b.stream().map(EraseTableConfigPojo::getTable).collect(Collectors.toList()))
+                        .collect(Collectors.toList()));
+                scheduler.runBranches(branches, rule -> eraseRule(cmd, rule, lookups, listener),
+                        () -> metrics.time(EraseMetrics.Phase.AUDIT, AUDIT_SCHEMA, AUDIT_TABLE, () -> auditRepo.insertEraseAction(
+                                cmd.getAcaCardNo(),
+                                cmd.getDocNum(),
+                                cmd.getEraseReason(),
+                                cmd.getOperatorUserId(),
+                                cmd.getOperatorIp()
+                        )));
+            } finally {
+                queryCache.evictAfterCompletion(cards); // 不在交易內 → 立即清除
+            }
+        });
+    }
+
+    /**
+     * 平行分支塗銷是否啟用（erase.schedule.parallel）；呼叫端據此選擇 {@link #eraseRowsInBranches} 或 {@link #eraseRows}。
+     */
+    public boolean isBranchEraseEnabled() {
+        return scheduler.isEnabled();
+    }
+
+    /**
+     * 批次塗銷（同一交易單位內的多個卡號）：以獨立交易（REQUIRES_NEW）執行，成功即提交，失敗只回滾本批。
+     * 與單筆相比：
+     * - 所有卡號共用同一份父鍵映射，並先以整批父鍵一次預查（如整批卡號的 ACACardNo → FamCardNo 只查一次）
+     * - 規則計畫本就預先編譯共用；稽核改為一次 JDBC batch 寫入
+     * - 批次內固定逐卡逐規則執行（不走 erase.schedule.parallel 分支連線，確保整批同一交易）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void eraseCards(List<EraseCommand> cmds) {
+        if (cmds == null || cmds.isEmpty()) return;
+        if (engine == EraseEngineMode.DRYRUN) {
+            cmds.forEach(this::skipForDryRun);
+            return;
+        }
+        // 整批卡號依固定順序上鎖；批內也依卡號排序處理，與其他作業的存取順序一致
+        cmds = sortedByCard(cmds, EraseCommand::getAcaCardNo);
+        var cards = cmds.stream().map(EraseCommand::getAcaCardNo).collect(Collectors.toList());
+        lockCards(cards);
+        rejectOpenCheckpoints(cards);
+        var lookups = new ParentKeyLookups();
         for (var rule : tableConfig) {
-            // 依規則決定用哪個 key 清單：子表用 parentTable 的 keys，主表用自己的 keys
-            List<String> keys = rule.isChild() ? cmd.idsOf(rule.getParentTable()) : cmd.idsOf(rule.getTable());
-            if (keys == null || keys.isEmpty()) continue;
+            if (!rule.isChild()) continue;
+            var parentIds = cmds.stream().flatMap(c -> c.idsOf(rule.getParentTable()).stream())
+                    .distinct().collect(Collectors.toList());
+            if (!parentIds.isEmpty()) executor.prefetchParentKeys(rule, parentIds, lookups);
+        }
 
-            // 撈資料（白名單欄位＋__PK__），子表走父鍵；主表走主鍵
-            var rows = rule.isChild() ? executor.loadRowsByParentIds(rule, keys) : executor.loadRowsByIds(rule, keys);
-            if (rows.isEmpty()) continue;
+        var audits = new ArrayList<EraseAuditRepo.EraseAction>(cmds.size());
+        for (var cmd : cmds) {
+            for (var rule : tableConfig) {
+                eraseRule(cmd, rule, lookups, EraseProgressListener.NOOP);
+            }
+            audits.add(new EraseAuditRepo.EraseAction(cmd.getAcaCardNo(), cmd.getDocNum(), cmd.getEraseReason(),
+                    cmd.getOperatorUserId(), cmd.getOperatorIp()));
+        }
+        metrics.time(EraseMetrics.Phase.AUDIT, AUDIT_SCHEMA, AUDIT_TABLE, () -> auditRepo.insertEraseActions(audits));
+    }
 
-            // —— 鏡像：為每一列把「欄位 Map」打包成 JSON → AES-GCM 加密 → SHA → upsert 鏡像表
-            for (var row : rows) {
-                String id = RowUtils.extractIdOrThrow(row, rule.getIdColumn(), rule.getTable());
-                String json = buildRowPayloadJson(rule.getSchema(), rule.getTable(), rule.getIdColumn(), id, row);
+    /**
+     * 批次還原（同一交易單位內的多個卡號）：以獨立交易（REQUIRES_NEW）執行；稽核與鏡像清理整批一次處理。
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void restoreCards(List<RestoreCommand> cmds) {
+        if (cmds == null || cmds.isEmpty()) return;
+        cmds = sortedByCard(cmds, RestoreCommand::getAcaCardNo);
+        var cards = cmds.stream().map(RestoreCommand::getAcaCardNo).collect(Collectors.toList());
+        lockCards(cards);
+        var audits = new ArrayList<EraseAuditRepo.RestoreAction>(cmds.size());
+        for (var cmd : cmds) {
+            runRuleRestore(cmd, EraseProgressListener.NOOP);
+            audits.add(new EraseAuditRepo.RestoreAction(cmd.getAcaCardNo(), cmd.getRestoreReason(),
+                    cmd.getOperatorUserId(), cmd.getOperatorIp()));
+        }
+        metrics.time(EraseMetrics.Phase.AUDIT, AUDIT_SCHEMA, AUDIT_TABLE, () -> {
+            auditRepo.insertRestoreActions(audits);
+            auditRepo.deleteByAcaCardNos(cards);
+            mirrorRepo.deleteArchivedByAcaCardNos(cards);
+            checkpointRepo.deleteByAcaCardNos(cards);
+        });
+    }
 
-                logJson(false, false, cmd.getAcaCardNo(), rule.getTable(), id, json); // [RULE][ERASE]
+    /**
+     * 分段塗銷的單一步驟（見 CheckpointedEraseService）：以獨立交易（REQUIRES_NEW）執行第 ruleOrder 條規則的
+     * 鏡像 → 清空，並在同一交易內寫入進度紀錄；提交後此規則即不會再被重做。
+     *
+     * @param ruleOrder 規則在 tableConfig 中的位置（0 起算）
+     * @param ruleTable 預期的規則表名（與 ruleOrder 核對，避免規則清單變動後錯位）
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void eraseRuleStep(EraseCommand cmd, String commandHash, int ruleOrder, String ruleTable,
+                              ParentKeyLookups lookups, EraseProgressListener listener) {
+        var rule = ruleAt(ruleOrder, ruleTable);
+        lockCards(List.of(cmd.getAcaCardNo()));
+        int[] counts = new int[2]; // mirrored, erased
+        eraseRule(cmd, rule, lookups, new EraseProgressListener() {
+            @Override
+            public void onMirrored(String table, int rows) {
+                counts[0] += rows;
+                listener.onMirrored(table, rows);
+            }
 
-                var enc = crypto.encryptJson(json);
-                String sha = AesGcmCrypto.sha256Hex(json);
-                mirrorRepo.upsert(rule.getTable(), id, cmd.getAcaCardNo(), enc.payloadBase64, enc.ivBase64, sha, rule.getSchema());
+            @Override
+            public void onErased(String table, int rows) {
+                counts[1] += rows;
+                listener.onErased(table, rows);
             }
+        });
+        checkpointRepo.insert(cmd.getAcaCardNo(), commandHash, ruleOrder, rule.getTable(), counts[0], counts[1]);
+    }
 
-            // —— 清空（Erase）：子表用父鍵，主表用主鍵
-            if (rule.isChild()) executor.eraseByParent(rule, keys);
-            else executor.eraseByIds(rule, keys);
+    /**
+     * 分段塗銷的最後一步：寫入 ERASE 稽核並清除進度紀錄（獨立交易）。
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void finishCheckpointedErase(EraseCommand cmd) {
+        lockCards(List.of(cmd.getAcaCardNo()));
+        metrics.time(EraseMetrics.Phase.AUDIT, AUDIT_SCHEMA, AUDIT_TABLE, () -> auditRepo.insertEraseAction(
+                cmd.getAcaCardNo(),
+                cmd.getDocNum(),
+                cmd.getEraseReason(),
+                cmd.getOperatorUserId(),
+                cmd.getOperatorIp()
+        ));
+        checkpointRepo.deleteByAcaCardNos(List.of(cmd.getAcaCardNo()));
+    }
+
+    public List<EraseTableConfigPojo> getRules() {
+        return tableConfig;
+    }
+
+    private EraseTableConfigPojo ruleAt(int ruleOrder, String ruleTable) {
+        if (ruleOrder < 0 || ruleOrder >= tableConfig.size() || !tableConfig.get(ruleOrder).getTable().equals(ruleTable)) {
+            throw new IllegalStateException("分段塗銷規則順序不符：order=" + ruleOrder + ", table=" + ruleTable);
         }
+        return tableConfig.get(ruleOrder);
+    }
+
+    /**
+     * 試算（Dry-run）：依規則順序解析父鍵並以 COUNT(*) / DATALENGTH 估算每張表會被鏡像＋清空的列數與資料量，
+     * 不讀回欄位內容、不做加密、不寫任何資料。
+     * 鏡像位元組為未壓縮上限：payload v1 另計 Base64 膨脹（×4/3）；v2 實際大小依壓縮率而定，通常明顯較小。
+     */
+    @Transactional(readOnly = true)
+    public Aca4001ErasePlanDto planErase(EraseCommand cmd) {
+        long t0 = System.nanoTime();
+        var lookups = new ParentKeyLookups();
+        int tagAndIvBytes = 16 + 24; // GCM tag + IV Base64
+        boolean base64 = payloadCodec.getWriteVersion() == MirrorPayloadCodec.V1_BASE64;
+
+        var plan = new Aca4001ErasePlanDto();
+        plan.setAcaCardNo(cmd.getAcaCardNo());
+        long totalRows = 0, totalData = 0, totalMirror = 0;
+        int order = 0;
+        for (var rule : tableConfig) {
+            List<String> keys = rule.isChild() ? cmd.idsOf(rule.getParentTable()) : cmd.idsOf(rule.getTable());
+            if (keys == null || keys.isEmpty()) continue;
+
+            long s0 = System.nanoTime();
+            var c = rule.isChild() ? executor.countByParent(rule, keys, lookups) : executor.countByIds(rule, keys);
+            long mirror = c.getPayloadBytes() + c.getRows() * tagAndIvBytes;
+            if (base64) mirror = mirror * 4 / 3;
+
+            var e = new Aca4001ErasePlanDto.RuleEstimate();
+            e.setOrder(++order);
+            e.setTable(rule.getTable());
+            e.setParentTable(rule.isChild() ? rule.getParentTable() : null);
+            e.setKeys(c.getKeys());
+            e.setRows(c.getRows());
+            e.setDataBytes(c.getDataBytes());
+            e.setMirrorBytes(mirror);
+            e.setCountMs((System.nanoTime() - s0) / 1_000_000);
+            plan.getRules().add(e);
+
+            totalRows += c.getRows();
+            totalData += c.getDataBytes();
+            totalMirror += mirror;
+        }
+        plan.setTotalRows(totalRows);
+        plan.setTotalDataBytes(totalData);
+        plan.setTotalMirrorBytes(totalMirror);
+        plan.setElapsedMs((System.nanoTime() - t0) / 1_000_000);
+        return plan;
+    }
+
+    /**
+     * 依 erase.engine 處理試算：DRYRUN 記錄試算結果並回傳 true（呼叫端不做任何異動）；
+     * DUAL_DRYRUN 在 DEBUG 開啟時記錄試算結果後回傳 false（照常執行）。
+     */
+    private boolean skipForDryRun(EraseCommand cmd) {
+        if (engine == EraseEngineMode.DRYRUN) {
+            log.info("[EraseDryRun] skip execution, plan={}", planErase(cmd));
+            return true;
+        }
+        if (engine == EraseEngineMode.DUAL_DRYRUN && log.isDebugEnabled()) {
+            log.debug("[EraseDryRun] plan before execution={}", planErase(cmd));
+        }
+        return false;
+    }
+
+    private void runRuleErase(EraseCommand cmd, EraseProgressListener listener) {
+        if (log.isDebugEnabled()) {
+            log.debug("event=erase.rules aca={} rules={}", cmd.getAcaCardNo(),
+                    tableConfig.stream().map(EraseTableConfigPojo::getTable).collect(Collectors.toList()));
+        }
+        var lookups = new ParentKeyLookups(); // 本指令內共用的父鍵映射結果（如 ACACardNo → FamCardNo 只查一次）
+
+        // 在呼叫端交易內逐條執行（平行分支見 eraseRowsInBranches）
+        for (var rule : tableConfig) {
+            eraseRule(cmd, rule, lookups, listener);
+        }
+    }
+
+    /**
+     * 單一規則：撈資料 → 鏡像 → 清空。
+     */
+    private void eraseRule(EraseCommand cmd, EraseTableConfigPojo rule, ParentKeyLookups lookups, EraseProgressListener listener) {
+        // 依規則決定用哪個 key 清單：子表用 parentTable 的 keys，主表用自己的 keys；
+        // 去重排序，讓並行作業以相同順序觸及同一批列
+        List<String> keys = sortedKeys(rule.isChild() ? cmd.idsOf(rule.getParentTable()) : cmd.idsOf(rule.getTable()));
+        if (keys.isEmpty()) return;
+
+        String schema = rule.getSchema(), table = rule.getTable();
+        long start = System.nanoTime();
+
+        // 撈資料（白名單欄位＋__PK__），子表走父鍵；主表走主鍵
+        var rows = metrics.time(EraseMetrics.Phase.LOAD, schema, table,
+                () -> rule.isChild() ? executor.loadRowsByParentIds(rule, keys, lookups) : executor.loadRowsByIds(rule, keys));
+        metrics.rows(EraseMetrics.Phase.LOAD, schema, table, rows.size());
+        if (rows.isEmpty()) return;
+
+        // —— 鏡像：為每一列把「欄位 Map」打包成 JSON →（依版本壓縮）AES-GCM 加密 → SHA（純 CPU 工作，平行處理、保持列順序），
+        //    整條規則的鏡像列再批次 upsert 鏡像表
+        var entries = cryptoPool.mapOrdered(rows, row -> {
+            long t0 = System.nanoTime();
+            String id = row.idOrThrow(rule.getIdColumn(), table);
+            String json = buildRowPayloadJson(schema, table, rule.getIdColumn(), id, row);
+            String sha = AesGcmCrypto.sha256Hex(json);
+            long t1 = System.nanoTime();
+            var entry = payloadCodec.encode(id, json, sha);
+            metrics.record(EraseMetrics.Phase.SERIALIZE, schema, table, t1 - t0);
+            metrics.record(EraseMetrics.Phase.ENCRYPT, schema, table, System.nanoTime() - t1);
+
+            logPayload("erase", cmd.getAcaCardNo(), table, id, json); // 不計入 serialize/encrypt 耗時
+            return entry;
+        });
+        metrics.time(EraseMetrics.Phase.MIRROR_WRITE, schema, table,
+                () -> mirrorRepo.upsertBatch(table, cmd.getAcaCardNo(), schema, entries));
+        metrics.rows(EraseMetrics.Phase.MIRROR_WRITE, schema, table, entries.size());
+        listener.onMirrored(table, entries.size());
+
+        // —— 清空（Erase）：子表用父鍵，主表用主鍵
+        int erased = metrics.time(EraseMetrics.Phase.ERASE, schema, table,
+                () -> rule.isChild() ? executor.eraseByParent(rule, keys, lookups) : executor.eraseByIds(rule, keys));
+        metrics.rows(EraseMetrics.Phase.ERASE, schema, table, erased);
+        listener.onErased(table, erased);
+        log.info("event=erase.rule aca={} table={} keys={} loaded={} mirrored={} erased={} ms={}",
+                cmd.getAcaCardNo(), table, keys.size(), rows.size(), entries.size(), erased, (System.nanoTime() - start) / 1_000_000);
     }
 
     /**
@@ -87,62 +387,121 @@ public class GenericEraseService {
      */
     @Transactional
     public void restoreAllByAcaCardNo(RestoreCommand cmd) {
-        runRuleRestore(cmd); // 依規則：從鏡像解密→校驗→回寫
+        restoreAllByAcaCardNo(cmd, EraseProgressListener.NOOP);
+    }
+
+    /**
+     * 同 {@link #restoreAllByAcaCardNo(RestoreCommand)}，並把每批回寫列數回報給 listener（背景作業進度用）。
+     */
+    @Transactional
+    public void restoreAllByAcaCardNo(RestoreCommand cmd, EraseProgressListener listener) {
+        lockCards(List.of(cmd.getAcaCardNo())); // 同卡號的作業排隊，交易結束才放行
+        runRuleRestore(cmd, listener); // 依規則：從鏡像解密→校驗→回寫
 
         // 成功後寫一筆 RESTORE 稽核，並刪除該卡號的鏡像紀錄
-        auditRepo.insertRestoreAction(
-                cmd.getAcaCardNo(),
-                cmd.getRestoreReason(),
-                cmd.getOperatorUserId(),
-                cmd.getOperatorIp()
-        );
-        auditRepo.deleteByAcaCardNo(cmd.getAcaCardNo());
+        metrics.time(EraseMetrics.Phase.AUDIT, AUDIT_SCHEMA, AUDIT_TABLE, () -> {
+            auditRepo.insertRestoreAction(
+                    cmd.getAcaCardNo(),
+                    cmd.getRestoreReason(),
+                    cmd.getOperatorUserId(),
+                    cmd.getOperatorIp()
+            );
+            auditRepo.deleteByAcaCardNo(cmd.getAcaCardNo());
+            mirrorRepo.deleteArchivedByAcaCardNos(List.of(cmd.getAcaCardNo())); // 封存表中的舊鏡像一併刪除
+            checkpointRepo.deleteByAcaCardNos(List.of(cmd.getAcaCardNo())); // 分段塗銷做到一半即還原時，一併清除進度
+        });
     }
 
-    private void runRuleRestore(RestoreCommand cmd) {
-        // 只處理 rule 有定義過的表（避免鏡像表裡有舊資料或非本規則表）
-        var allowedTables = tableConfig.stream()
-                .map(EraseTableConfigPojo::getTable)
-                .distinct()
-                .collect(Collectors.toList());
+    private void runRuleRestore(RestoreCommand cmd, EraseProgressListener listener) {
+        // 只處理 rule 有定義過的表（避免鏡像表裡有舊資料或非本規則表）；LinkedHashMap 保留規則順序
+        var ruleByTable = new java.util.LinkedHashMap<String, EraseTableConfigPojo>();
+        for (var rule : tableConfig) ruleByTable.putIfAbsent(rule.getTable(), rule);
+
+        // 以 cursor 依「規則順序 → TargetID」串流讀出鏡像，同表累積到 chunk 上限或換表時就解密＋回寫一批，
+        // 記憶體只保留一個 chunk，不隨個案大小成長
+        int chunkSize = Math.max(1, restoreChunkSize);
+        var chunk = new ArrayList<EraseMirrorRepo.MirrorRow>(chunkSize);
+        int total = mirrorRepo.forEachByAcaCardNo(cmd.getAcaCardNo(), new ArrayList<>(ruleByTable.keySet()), "dbo", m -> {
+            if (!chunk.isEmpty() && (chunk.size() >= chunkSize || !chunk.get(0).getTargetTable().equals(m.getTargetTable()))) {
+                restoreChunk(cmd, ruleByTable.get(chunk.get(0).getTargetTable()), chunk, listener);
+                chunk.clear();
+            }
+            chunk.add(m);
+        });
+        if (!chunk.isEmpty()) restoreChunk(cmd, ruleByTable.get(chunk.get(0).getTargetTable()), chunk, listener);
+        log.info("event=restore.done aca={} mirrors={}", cmd.getAcaCardNo(), total);
+    }
 
-        // 撈出該卡號、且目標表在 allowedTables 的所有鏡像資料
-        var mirrors = mirrorRepo.findAllByAcaCardNo(cmd.getAcaCardNo(), allowedTables, "dbo");
-        if (mirrors.isEmpty()) return;
+    /**
+     * 還原同一張表的一批鏡像列：解密＋校驗＋解析 → 依規則回寫。
+     */
+    private void restoreChunk(RestoreCommand cmd, EraseTableConfigPojo rule, List<EraseMirrorRepo.MirrorRow> chunk, EraseProgressListener listener) {
+        // 解密 + SHA 校驗 + 解析（純 CPU 工作，平行處理、保持列順序）
+        String schema = rule.getSchema(), table = rule.getTable();
+        long start = System.nanoTime();
+        var rows = cryptoPool.mapOrdered(chunk, m -> {
+            long t0 = System.nanoTime();
+            String json = decryptPayloadJson(m, true); // 解密＋SHA 校驗
+            var row = parsePayloadToMap(json); // 還原用的 Map（含 __PK__）
+            metrics.record(EraseMetrics.Phase.DECRYPT, schema, table, System.nanoTime() - t0);
+            logPayload("restore", m.getAcaCardNo(), m.getTargetTable(), m.getTargetId(), json); // 不計入 decrypt 耗時
+            return row;
+        });
+        metrics.rows(EraseMetrics.Phase.DECRYPT, schema, table, rows.size());
+
+        // 只覆蓋白名單欄位，並套用 restoreExtraSet（如 isERASE=0, ModifiedByUserID=:uid）
+        int restored = metrics.time(EraseMetrics.Phase.RESTORE, schema, table,
+                () -> executor.restoreRows(rule, rows, cmd.getOperatorUserId()));
+        metrics.rows(EraseMetrics.Phase.RESTORE, schema, table, restored);
+        listener.onRestored(table, restored);
+        log.info("event=restore.chunk aca={} table={} mirrors={} restored={} ms={}",
+                cmd.getAcaCardNo(), table, chunk.size(), restored, (System.nanoTime() - start) / 1_000_000);
+    }
 
-        // 依目標表分組 → 依規則順序逐表回寫
-        var byTable = mirrors.stream()
-                .collect(Collectors.groupingBy(EraseMirrorRepo.MirrorRow::getTargetTable));
+    // ====== Helpers ======
 
-        for (var rule : tableConfig) {
-            var list = byTable.get(rule.getTable());
-            if (list == null || list.isEmpty()) continue;
-
-            var rows = new ArrayList<Map<String, Object>>();
-            for (var m : list) {
-                // 解密 +（可選）SHA 驗證
-                String json = decryptPayloadJson(m, true); // 解密＋SHA 校驗
-                logJson(false, true, m.getAcaCardNo(), m.getTargetTable(), m.getTargetId(), json); // [RULE][RESTORE]
-                rows.add(parsePayloadToMap(json)); // 還原用的 Map（含 __PK__）
-            }
+    /**
+     * 鎖住本交易要異動的卡號（交易結束才放行），並在交易結束後清除其 eraseQuery 快取。
+     */
+    private void lockCards(java.util.Collection<String> cards) {
+        cardLocks.lockUntilCompletion(cards);
+        queryCache.evictAfterCompletion(cards);
+    }
 
-            // 只覆蓋白名單欄位，並套用 restoreExtraSet（如 isERASE=0, ModifiedByUserID=:uid）
-            executor.restoreRows(rule, rows, cmd.getOperatorUserId());
+    /**
+     * 一般塗銷（單筆/批次）不可接在未完成的分段塗銷之後：已提交的規則列已被清空（且載入不排除 isERASE），
+     * 重跑會以空值覆寫既有鏡像。已上鎖後才檢查，避免與進行中的分段塗銷競爭。
+     */
+    private void rejectOpenCheckpoints(List<String> cards) {
+        var open = checkpointRepo.findCardsWithCheckpoints(cards);
+        if (!open.isEmpty()) {
+            throw new IllegalStateException("卡號 " + open + " 有尚未完成的分段塗銷，請以 checkpointed=true 及相同條件重新執行或先還原");
         }
     }
 
-    // ====== Helpers ======
+    private static List<String> sortedKeys(List<String> keys) {
+        if (keys == null || keys.isEmpty()) return List.of();
+        return keys.stream().filter(java.util.Objects::nonNull).distinct().sorted().collect(Collectors.toList());
+    }
+
+    private static <T> List<T> sortedByCard(List<T> cmds, java.util.function.Function<T, String> card) {
+        var out = new ArrayList<>(cmds);
+        out.sort(java.util.Comparator.comparing(card, java.util.Comparator.nullsFirst(String::compareTo)));
+        return out;
+    }
 
     /**
      * 將單列資料打包成鏡像 JSON（含 schema/table/idColumn/id/fields）。
+     * 採 fmt 2：另帶 types（欄位 → 型別代碼），還原時可直接綁定型別化值（見 TypedFields）。
      */
-    private String buildRowPayloadJson(String schema, String table, String idCol, String id, Map<String, Object> fields) {
+    private String buildRowPayloadJson(String schema, String table, String idCol, String id, CompactRow row) {
         var node = om.createObjectNode();
         node.put("schema", schema);
         node.put("table", table);
         node.put("idColumn", idCol);
         node.put("id", id);
-        node.set("fields", om.valueToTree(fields));
+        node.put(TypedFields.FMT_KEY, TypedFields.FMT_TYPED);
+        TypedFields.encode(om, row.getLayout().getColumns(), row.values(), node.putObject("fields"), node.putObject(TypedFields.TYPES_KEY));
         try {
             return om.writeValueAsString(node);
         } catch (JsonProcessingException e) {
@@ -151,10 +510,10 @@ public class GenericEraseService {
     }
 
     /**
-     * 解密鏡像 payload，必要時進行 SHA-256 驗證。
+     * 解密鏡像 payload（依 PayloadVersion 自動判斷 v1/v2），必要時進行 SHA-256 驗證。
      */
     private String decryptPayloadJson(EraseMirrorRepo.MirrorRow m, boolean verifySha) {
-        final String json = crypto.decryptToJson(m.getPayloadBase64(), m.getIvBase64());
+        final String json = payloadCodec.decode(m);
         if (verifySha) {
             final String sha = AesGcmCrypto.sha256Hex(json);
             if (!sha.equalsIgnoreCase(m.getSha256())) {
@@ -166,6 +525,8 @@ public class GenericEraseService {
 
     /**
      * 將鏡像 JSON 解析回可回寫用的欄位 Map（含 __PK__）。
+     * - fmt 2：依 types 直接還原成 JDBC 型別，並以 __TYPED__ 標記這些欄位（執行器不再做 SqlNorm 解析）
+     * - 舊格式：數字/布林保留，其餘轉文字，交給 SqlNorm 正規化
      */
     private Map<String, Object> parsePayloadToMap(String json) {
         final var root = readJson(json);
@@ -186,34 +547,47 @@ public class GenericEraseService {
         if (idCol != null) map.put("idColumn", idCol);
         if (id != null) map.put("id", id);
 
+        var typesNode = root.path(TypedFields.FMT_KEY).asInt(1) == TypedFields.FMT_TYPED ? root.get(TypedFields.TYPES_KEY) : null;
+        var typedCols = new java.util.HashSet<String>();
         var it = fieldsNode.fields();
         while (it.hasNext()) {
             var e = it.next();
             var v = e.getValue();
-            Object val = v.isNull() ? null
-                    : v.isNumber() ? v.numberValue()
-                    : v.isBoolean() ? v.booleanValue()
-                    : v.asText();
+            var type = typesNode == null ? null : typesNode.get(e.getKey());
+            Object val;
+            if (type != null) {
+                val = TypedFields.decode(v, type.asText());
+                typedCols.add(RowUtils.normKey(e.getKey()));
+            } else {
+                val = v.isNull() ? null
+                        : v.isNumber() ? v.numberValue()
+                        : v.isBoolean() ? v.booleanValue()
+                        : v.asText();
+            }
             map.put(e.getKey(), val);
         }
+        if (!typedCols.isEmpty()) map.put(TypedFields.TYPED_COLS_KEY, typedCols);
 
         if (id != null) map.put("__PK__", id);
         return map;
     }
 
     /**
-     * 彩色 JSON log（Rule/Erase vs Rule/Restore）。
+     * 單列 payload 預覽（熱迴圈內呼叫）：
+     * - DEBUG 開啟時每列以 DEBUG 輸出；否則依 erase.log.payloadSampleRate 抽樣以 INFO 輸出。
+     * - 兩者皆關閉時只做一次判斷即返回，不截字串、不組訊息。
+     * 一般情況請看每條規則/每批的 event=erase.rule / event=restore.chunk 摘要（只含數量與卡號）。
      */
-    private void logJson(boolean isLegacyShouldAlwaysFalse, boolean isRestore, String aca, String table, String id, String json) {
-        // 只保留 RULE；參數 isLegacyShouldAlwaysFalse 僅為了沿用既有呼叫點簽名（可視需要移除並改呼叫點）
-        if (!log.isInfoEnabled()) return;
-        String phase = isRestore ? "RESTORE" : "ERASE";
-        String colorPhase = isRestore ? C_RST : C_ERS;
-        String preview = (json != null && json.length() > 2000) ? json.substring(0, 2000) + "...(truncated)" : json;
-        log.info("{}[{}]{}{}[{}]{} aca={}, tbl={}, id={}, json={}",
-                C_RULE, "RULE", C_RESET,
-                colorPhase, phase, C_RESET,
-                aca, table, id, preview);
+    private void logPayload(String phase, String aca, String table, String id, String json) {
+        boolean debug = log.isDebugEnabled();
+        if (!debug && (payloadSampleRate <= 0 || ThreadLocalRandom.current().nextDouble() >= payloadSampleRate)) return;
+        String preview = (json != null && json.length() > PAYLOAD_PREVIEW_MAX)
+                ? json.substring(0, PAYLOAD_PREVIEW_MAX) + "...(truncated)" : json;
+        if (debug) {
+            log.debug("event={}.payload aca={} table={} id={} json={}", phase, aca, table, id, preview);
+        } else {
+            log.info("event={}.payload sampled=true aca={} table={} id={} json={}", phase, aca, table, id, preview);
+        }
     }
 
     // JSON 容錯工具：readJson / getTextCI / getObjCI
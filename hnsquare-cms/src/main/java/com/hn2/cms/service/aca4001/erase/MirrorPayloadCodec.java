@@ -0,0 +1,123 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import com.hn2.cms.repository.aca4001.erase.EraseMirrorRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * ACA_EraseMirror 鏡像 payload 的版本化編解碼。
+ * 格式：
+ * - v1（PayloadVersion 為 NULL 或 1，舊資料）：EncodedPayload = Base64( AES-GCM(UTF-8 JSON) )，AesIvBase64 = Base64(IV)
+ * - v2：EncryptedPayload (VARBINARY) = AES-GCM( Deflate(UTF-8 JSON) )，AesIvBase64 = Base64(IV)，EncodedPayload 為 NULL
+ * 說明：
+ * - 先壓縮再加密（密文不可壓縮），並省去 Base64 約 33% 的膨脹。
+ * - PayloadSha256Hex 兩種版本皆為「明文 JSON」的 SHA-256，校驗邏輯不變。
+ * - 寫入版本由 erase.mirror.payloadVersion 決定（預設 2）；讀取時依每列的 PayloadVersion 自動判斷，舊資料可持續還原。
+ * - 不論寫入版本，EraseMirrorRepo 都會讀寫 PayloadVersion / EncryptedPayload 欄位，
+ * sql/aca4001/01_erase_mirror_payload_v2.sql 為必要的資料庫變更（設為 1 只影響新寫入列的格式）。
+ */
+@Component
+@Slf4j
+public class MirrorPayloadCodec {
+    public static final int V1_BASE64 = 1;
+    public static final int V2_DEFLATE_BINARY = 2;
+
+    private final AesGcmCrypto crypto;
+    private final int writeVersion;
+
+    public MirrorPayloadCodec(AesGcmCrypto crypto, @Value("${erase.mirror.payloadVersion:2}") int writeVersion) {
+        if (writeVersion != V1_BASE64 && writeVersion != V2_DEFLATE_BINARY) {
+            throw new IllegalArgumentException("erase.mirror.payloadVersion must be 1 or 2, got " + writeVersion);
+        }
+        this.crypto = crypto;
+        this.writeVersion = writeVersion;
+        log.info("Mirror payload write version={}", writeVersion);
+    }
+
+    public int getWriteVersion() {
+        return writeVersion;
+    }
+
+    /**
+     * 依設定的寫入版本把明文 JSON 編碼成鏡像列（SHA 由呼叫端另外計算）。
+     */
+    public EraseMirrorRepo.MirrorEntry encode(String targetId, String json, String sha256) {
+        byte[] plain = json.getBytes(StandardCharsets.UTF_8);
+        if (writeVersion == V1_BASE64) {
+            var enc = crypto.encryptBytes(plain);
+            return new EraseMirrorRepo.MirrorEntry(targetId, V1_BASE64,
+                    Base64.getEncoder().encodeToString(enc.ciphertext), null,
+                    Base64.getEncoder().encodeToString(enc.iv), sha256);
+        }
+        var enc = crypto.encryptBytes(deflate(plain));
+        return new EraseMirrorRepo.MirrorEntry(targetId, V2_DEFLATE_BINARY,
+                null, enc.ciphertext,
+                Base64.getEncoder().encodeToString(enc.iv), sha256);
+    }
+
+    /**
+     * 依鏡像列的 PayloadVersion 解回明文 JSON（NULL 視為 v1）。
+     */
+    public String decode(EraseMirrorRepo.MirrorRow m) {
+        int ver = m.getPayloadVersion() == null ? V1_BASE64 : m.getPayloadVersion();
+        switch (ver) {
+            case V1_BASE64:
+                return crypto.decryptToJson(m.getPayloadBase64(), m.getIvBase64());
+            case V2_DEFLATE_BINARY:
+                if (m.getEncryptedPayload() == null) {
+                    throw new IllegalStateException("Mirror payload v2 缺少 EncryptedPayload: " + m.getTargetId());
+                }
+                byte[] iv = Base64.getDecoder().decode(m.getIvBase64());
+                return new String(inflate(crypto.decryptBytes(m.getEncryptedPayload(), iv)), StandardCharsets.UTF_8);
+            default:
+                throw new IllegalStateException("不支援的 Mirror PayloadVersion=" + ver + ", id=" + m.getTargetId());
+        }
+    }
+
+    // raw Deflate（nowrap，不含 zlib header/checksum；完整性由 GCM tag 與 SHA-256 保證）
+    private static byte[] deflate(byte[] in) {
+        var d = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            d.setInput(in);
+            d.finish();
+            var out = new ByteArrayOutputStream(Math.max(64, in.length / 2));
+            byte[] buf = new byte[8192];
+            while (!d.finished()) {
+                int n = d.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            d.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] in) {
+        var inf = new Inflater(true);
+        try {
+            inf.setInput(in);
+            var out = new ByteArrayOutputStream(in.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inf.finished()) {
+                int n = inf.inflate(buf);
+                if (n == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    throw new IllegalStateException("Mirror payload v2 解壓縮失敗：資料不完整");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Mirror payload v2 解壓縮失敗", e);
+        } finally {
+            inf.end();
+        }
+    }
+}
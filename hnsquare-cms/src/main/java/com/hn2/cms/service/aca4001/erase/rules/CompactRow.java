@@ -0,0 +1,126 @@
+package com.hn2.cms.service.aca4001.erase.rules;
+
+import com.hn2.cms.service.aca4001.erase.support.RowUtils;
+import org.sql2o.ResultSetHandler;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 塗銷讀取用的精簡列：以欄位序號（ordinal）存放的 Object[]，取代每列一個 Map&lt;String,Object&gt;。
+ * 設計：
+ * - 欄位名稱、序號對照與主鍵位置放在同一查詢共用的 {@link Layout}（由 ResultSetMetaData 建一次），
+ * 每列只配置一個 Object[]，不再為每列建 HashMap/Entry。
+ * - 主鍵固定在 SELECT 第一欄（EraseRulePlan 的 "id AS __PK__"），{@link #idOrThrow} 為 O(1)。
+ * - 欄位名稱沿用 DB 回傳的標籤（保留原大小寫）。舊版經 Row::asMap 會轉成小寫，因此新舊鏡像 JSON 的 fields/types
+ * 鍵大小寫不同；還原端以不分大小寫比對（RowUtils.getCI / normKey），兩種鏡像皆可還原。
+ */
+public final class CompactRow {
+
+    /**
+     * 同一查詢結果的欄位配置：欄位標籤（SELECT 順序）、不分大小寫的序號對照、主鍵序號。
+     */
+    public static final class Layout {
+        private final List<String> columns;
+        private final Map<String, Integer> ordinals;
+        private final int idOrdinal;
+
+        Layout(List<String> columns) {
+            this.columns = Collections.unmodifiableList(columns);
+            var m = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+            for (int i = columns.size() - 1; i >= 0; i--) m.put(columns.get(i), i); // 同名時取第一個
+            this.ordinals = m;
+            Integer pk = m.get("__PK__");
+            this.idOrdinal = pk == null ? -1 : pk;
+        }
+
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * 欄位序號（不分大小寫）；不存在回 -1。
+         */
+        public int ordinalOf(String column) {
+            Integer i = ordinals.get(column);
+            return i == null ? -1 : i;
+        }
+    }
+
+    private final Layout layout;
+    private final Object[] values;
+
+    CompactRow(Layout layout, Object[] values) {
+        this.layout = layout;
+        this.values = values;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public String column(int ordinal) {
+        return layout.columns.get(ordinal);
+    }
+
+    /**
+     * 底層值陣列（依 SELECT 順序；唯讀使用，勿修改）。
+     */
+    public Object[] values() {
+        return values;
+    }
+
+    public Object get(int ordinal) {
+        return values[ordinal];
+    }
+
+    /**
+     * 取出有效主鍵（__PK__，trim 後非空），否則拋 IllegalStateException。
+     */
+    public String idOrThrow(String idColumn, String table) {
+        int i = layout.idOrdinal >= 0 ? layout.idOrdinal : layout.ordinalOf(idColumn);
+        String id = i < 0 ? null : RowUtils.toIdString(values[i]);
+        if (id == null) {
+            throw new IllegalStateException("無法取得有效主鍵: table=" + table + ", idColumn=" + idColumn + ", rowKeys=" + layout.columns);
+        }
+        return id;
+    }
+
+    /**
+     * sql2o 用的列對應器：第一列時由 ResultSetMetaData 建 Layout，之後每列只讀值進 Object[]。
+     * 有狀態，每次查詢 new 一個。
+     */
+    static ResultSetHandler<CompactRow> handler() {
+        return new ResultSetHandler<>() {
+            private Layout layout;
+
+            @Override
+            public CompactRow handle(ResultSet rs) throws SQLException {
+                if (layout == null) layout = layoutOf(rs.getMetaData());
+                var v = new Object[layout.columns.size()];
+                for (int i = 0; i < v.length; i++) v[i] = rs.getObject(i + 1);
+                return new CompactRow(layout, v);
+            }
+        };
+    }
+
+    private static Layout layoutOf(ResultSetMetaData md) throws SQLException {
+        int n = md.getColumnCount();
+        var cols = new ArrayList<String>(n);
+        for (int i = 1; i <= n; i++) {
+            String label = md.getColumnLabel(i);
+            cols.add(label == null || label.isEmpty() ? md.getColumnName(i) : label);
+        }
+        return new Layout(cols);
+    }
+}
@@ -1,10 +1,16 @@
 package com.hn2.cms.service.aca4001.erase.rules;
 
+import com.hn2.cms.repository.aca4001.erase.TxSql2o;
 import com.hn2.cms.service.aca4001.erase.support.RowUtils;
 import com.hn2.cms.service.aca4001.erase.support.SqlNorm;
+import com.hn2.cms.service.aca4001.erase.support.TypedFields;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.sql.Statement;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -14,247 +20,264 @@ import java.util.stream.Collectors;
  * - 支援：
  * 1) 以主鍵 ID 清單讀／改
  * 2) 以父鍵（可經 lookup 映射）讀／改子表
+ * - 透過 TxSql2o 取連線：在 @Transactional 內所有語句共用同一條交易連線，回滾可涵蓋全部。
+ * - SQL 字串與欄位資訊取自啟動時預先編譯的 EraseRulePlan，執行時只做參數綁定。
+ * - 讀取結果以 CompactRow（欄位序號 → Object[]）承接，不再每列建 Map。
  */
 @Component
 @RequiredArgsConstructor
 public class EraseRestoreExecutor {
 
-    private final org.sql2o.Sql2o sql2o;
+    private final TxSql2o sql2o; // 交易感知：有交易時沿用同一條 JDBC 連線
+    private final EraseRulePlans plans; // 各規則預先編譯的執行計畫
+
+    @Value("${erase.restore.batchSize:500}")
+    private int restoreBatchSize; // 還原 UPDATE 每個 JDBC batch 最多幾列
 
     /* ========== 讀取資料（以主鍵 ID 清單） ========== */
-    public List<Map<String, Object>> loadRowsByIds(EraseTableConfigPojo r, List<String> ids) {
+    public List<CompactRow> loadRowsByIds(EraseTableConfigPojo r, List<String> ids) {
         if (ids == null || ids.isEmpty()) return List.of();
         // 主鍵 + 白名單欄位
-        String cols = buildSelectCols(r);
-        String sql = "SELECT " + cols + " FROM " + r.getSchema() + "." + r.getTable() + " WHERE " + r.getIdColumn() + " IN (:ids)";
-        var out = new ArrayList<Map<String, Object>>();
+        String sql = plans.of(r).getSelectByIdsSql();
+        var out = new ArrayList<CompactRow>();
         // 分批執行，避免 IN(...) 過長造成效能或語法限制
-        for (int i = 0; i < ids.size(); i += 1000) {
-            var sub = ids.subList(i, Math.min(i + 1000, ids.size()));
-            try (var con = sql2o.open()) {
-                var t = con.createQuery(sql).addParameter("ids", sub).executeAndFetchTable();
-                out.addAll(t.rows().stream().map(org.sql2o.data.Row::asMap).collect(Collectors.toList()));
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < ids.size(); i += 1000) {
+                var sub = ids.subList(i, Math.min(i + 1000, ids.size()));
+                out.addAll(con.createQuery(sql).addParameter("ids", sub).executeAndFetch(CompactRow.handler()));
             }
         }
         return out;
     }
 
     /* ========== 讀取資料（以父鍵清單；子表用） ========== */
-    public List<Map<String, Object>> loadRowsByParentIds(EraseTableConfigPojo r, List<String> parentIds) {
+    public List<CompactRow> loadRowsByParentIds(EraseTableConfigPojo r, List<String> parentIds) {
+        return loadRowsByParentIds(r, parentIds, new ParentKeyLookups());
+    }
+
+    /**
+     * 同上，父鍵映射結果記在 lookups（同一指令內共用，避免重複查詢）。
+     */
+    public List<CompactRow> loadRowsByParentIds(EraseTableConfigPojo r, List<String> parentIds, ParentKeyLookups lookups) {
         if (!r.isChild() || parentIds == null || parentIds.isEmpty()) return List.of();
 
         // 先把 ACACardNo 轉成 FamCardNo（或其他對應）
-        List<String> keys = resolveParentKeys(r, parentIds);
+        List<String> keys = resolveParentKeys(r, parentIds, lookups);
         if (keys.isEmpty()) return List.of();
 
-        String cols = buildSelectCols(r);
-        String sql = "SELECT " + cols + " FROM " + r.getSchema() + "." + r.getTable()
-                + " WHERE " + r.getParentFkColumn() + " IN (:pids)";
+        String sql = plans.of(r).getSelectByParentSql();
 
-        var out = new ArrayList<Map<String, Object>>();
-        for (int i = 0; i < keys.size(); i += 1000) {                      // ★ 用 keys 計數
-            var sub = keys.subList(i, Math.min(i + 1000, keys.size()));     // ★ 切 keys
-            try (var con = sql2o.open()) {
-                var t = con.createQuery(sql)
+        var out = new ArrayList<CompactRow>();
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < keys.size(); i += 1000) {                      // ★ 用 keys 計數
+                var sub = keys.subList(i, Math.min(i + 1000, keys.size()));     // ★ 切 keys
+                out.addAll(con.createQuery(sql)
                         .addParameter("pids", sub)                        // ★ 綁 keys 的 sub
-                        .executeAndFetchTable();
-                out.addAll(t.rows().stream().map(org.sql2o.data.Row::asMap).collect(Collectors.toList()));
+                        .executeAndFetch(CompactRow.handler()));
             }
         }
         return out;
     }
 
     /* ========== 父鍵映射（例如 ACACardNo -> FamCardNo） ========== */
-    private List<String> resolveParentKeys(EraseTableConfigPojo r, List<String> parentIds) {
+    private List<String> resolveParentKeys(EraseTableConfigPojo r, List<String> parentIds, ParentKeyLookups lookups) {
         // 若規則沒設定 lookup（table/src/dst 任一為 null），直接回傳原父鍵
-        if (r.getParentIdLookupTable() == null || r.getParentIdLookupSrcColumn() == null || r.getParentIdLookupDstColumn() == null) {
+        String sql = plans.of(r).getLookupSql();
+        if (sql == null) {
             return parentIds;
         }
         if (parentIds == null || parentIds.isEmpty()) return List.of();
 
-        // SELECT DISTINCT [dst] AS v FROM schema.lookupTable WHERE [src] IN (:pids)
-        String sql = "SELECT DISTINCT [" + r.getParentIdLookupDstColumn() + "] AS v " +
-                "FROM " + r.getSchema() + "." + r.getParentIdLookupTable() +
-                " WHERE [" + r.getParentIdLookupSrcColumn() + "] IN (:pids)";
+        // 同一指令（或批次）內已查過的父鍵直接取用，只查缺的
+        return lookups.resolve(sql, parentIds, missing -> queryParentKeys(sql, missing));
+    }
 
-        var out = new ArrayList<String>();
+    /**
+     * 批次作業用：先以整批父鍵一次查好映射並記在 lookups，之後逐卡處理時不必再查。
+     * 規則沒有 lookup 時不做事。
+     */
+    public void prefetchParentKeys(EraseTableConfigPojo r, List<String> parentIds, ParentKeyLookups lookups) {
+        if (!r.isChild()) return;
+        resolveParentKeys(r, parentIds, lookups);
+    }
+
+    // 回傳：正規化父鍵（ParentKeyLookups.norm）→ 映射鍵清單
+    private Map<String, List<String>> queryParentKeys(String sql, List<String> parentIds) {
+        var out = new HashMap<String, List<String>>();
 
         // 分批查出對應鍵值
-        for (int i = 0; i < parentIds.size(); i += 1000) {
-            var sub = parentIds.subList(i, Math.min(i + 1000, parentIds.size()));
-            try (var con = sql2o.open()) {
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < parentIds.size(); i += 1000) {
+                var sub = parentIds.subList(i, Math.min(i + 1000, parentIds.size()));
                 var t = con.createQuery(sql).addParameter("pids", sub).executeAndFetchTable();
-                // 讀出別名 v 的值，去空白、過濾空字串
+                // 讀出別名 k / v 的值，去空白、過濾空字串
                 for (var row : t.rows()) {
+                    var k = row.getObject("k");
                     var v = row.getObject("v");
-                    if (v != null) {
+                    if (k != null && v != null) {
                         String s = v.toString().trim();
-                        if (!s.isEmpty()) out.add(s);
+                        if (!s.isEmpty()) out.computeIfAbsent(ParentKeyLookups.norm(k.toString()), x -> new ArrayList<>()).add(s);
                     }
                 }
             }
         }
-        // 去重後回傳
-        return out.stream().distinct().collect(Collectors.toList());
+        return out;
     }
 
-    /* ========== 組 SELECT 欄位字串（主鍵必帶為 __PK__） ========== */
-    private String buildSelectCols(EraseTableConfigPojo r) {
-        return (r.getWhitelist() == null || r.getWhitelist().isEmpty())
-                ? r.getIdColumn() + " AS __PK__"
-                : r.getIdColumn() + " AS __PK__," + String.join(",", r.getWhitelist());
+    /* ========== 試算（Dry-run）：只數列數與資料量，不讀回欄位 ========== */
+
+    /**
+     * 單一規則的試算結果：實際過濾鍵數、命中列數、欄位值儲存長度加總、預估鏡像 JSON 位元組。
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class RuleCount {
+        private final int keys;
+        private final long rows;
+        private final long dataBytes;
+        private final long payloadBytes; // rows × 每列 JSON 固定長度 + dataBytes（未壓縮、未加密）
+
+        static final RuleCount EMPTY = new RuleCount(0, 0L, 0L, 0L);
+    }
+
+    public RuleCount countByIds(EraseTableConfigPojo r, List<String> ids) {
+        if (ids == null || ids.isEmpty()) return RuleCount.EMPTY;
+        var plan = plans.of(r);
+        return count(plan, plan.getCountByIdsSql(), "ids", ids);
+    }
+
+    /**
+     * 子表：先做父鍵映射（與實際塗銷共用 lookups），再以映射後的鍵計數。
+     */
+    public RuleCount countByParent(EraseTableConfigPojo r, List<String> parentIds, ParentKeyLookups lookups) {
+        if (!r.isChild() || parentIds == null || parentIds.isEmpty()) return RuleCount.EMPTY;
+        List<String> keys = resolveParentKeys(r, parentIds, lookups);
+        if (keys.isEmpty()) return RuleCount.EMPTY;
+        var plan = plans.of(r);
+        return count(plan, plan.getCountByParentSql(), "pids", keys);
+    }
+
+    private RuleCount count(EraseRulePlan plan, String sql, String param, List<String> keys) {
+        long rows = 0, bytes = 0;
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < keys.size(); i += 1000) {
+                var sub = keys.subList(i, Math.min(i + 1000, keys.size()));
+                var row = con.createQuery(sql).addParameter(param, sub).executeAndFetchTable().rows().get(0);
+                rows += row.getLong("cnt");
+                bytes += row.getLong("bytes");
+            }
+        }
+        return new RuleCount(keys.size(), rows, bytes, rows * plan.getPayloadOverheadBytes() + bytes);
     }
 
     /* ========== 清空（Erase）by 主鍵 ID ========== */
     public int eraseByIds(EraseTableConfigPojo r, List<String> ids) {
         if (ids == null || ids.isEmpty()) return 0;
         // 將白名單欄位清成 NULL，再覆蓋 eraseExtraSet
-        String setSql = buildEraseSetSql(r);
-        String sql = "UPDATE " + r.getSchema() + "." + r.getTable()
-                + " SET " + setSql + " WHERE " + r.getIdColumn() + " IN (:ids)";
         try (var con = sql2o.open()) {
-            return con.createQuery(sql).addParameter("ids", ids).executeUpdate().getResult();
+            return con.createQuery(plans.of(r).getEraseByIdsSql()).addParameter("ids", ids).executeUpdate().getResult();
         }
     }
 
     /* ========== 清空（Erase）by 父鍵（會先做映射） ========== */
     public int eraseByParent(EraseTableConfigPojo r, List<String> parentIds) {
+        return eraseByParent(r, parentIds, new ParentKeyLookups());
+    }
+
+    /**
+     * 同上，父鍵映射結果記在 lookups（與讀取階段共用，清空時不必再查）。
+     */
+    public int eraseByParent(EraseTableConfigPojo r, List<String> parentIds, ParentKeyLookups lookups) {
         if (!r.isChild() || parentIds == null || parentIds.isEmpty()) return 0;
 
         // 先把父鍵映射成子表實際過濾鍵
-        List<String> keys = resolveParentKeys(r, parentIds);
+        List<String> keys = resolveParentKeys(r, parentIds, lookups);
         if (keys.isEmpty()) return 0;
 
-        String setSql = buildEraseSetSql(r);
-        String sql = "UPDATE " + r.getSchema() + "." + r.getTable()
-                + " SET " + setSql + " WHERE " + r.getParentFkColumn() + " IN (:pids)";
         try (var con = sql2o.open()) {
-            return con.createQuery(sql).addParameter("pids", keys).executeUpdate().getResult();
-        }
-    }
-
-    /* ========== 產生 Erase 用的 SET 子句 ========== */
-    private String buildEraseSetSql(EraseTableConfigPojo r) {
-
-        var parts = new ArrayList<String>();
-        // 1) 白名單欄位預設 = NULL（若 eraseExtraSet 有覆蓋就不清）
-        for (String c : r.getWhitelist()) {
-            if (!r.getEraseExtraSet().containsKey(c)) {
-                parts.add("[" + c + "]=NULL");
-            }
-        }
-        // 2) 附加 eraseExtraSet（支援 ${NOW}、:param、字串、數值）
-        for (var e : r.getEraseExtraSet().entrySet()) {
-            parts.add("[" + e.getKey() + "]=" + renderSqlValue(e.getValue()));
+            return con.createQuery(plans.of(r).getEraseByParentSql()).addParameter("pids", keys).executeUpdate().getResult();
         }
-        return String.join(", ", parts);
-    }
-
-    /* ========== 將宣告的值轉成 SQL 字面值/參數 ========== */
-    private String renderSqlValue(Object v) {
-        if (v == null) return "NULL";
-        if (v instanceof Number) return v.toString();
-        String s = v.toString();
-        if ("${NOW}".equals(s)) return "SYSDATETIME()";
-        if (s.startsWith(":")) return s;                 // 參數名，留給外層綁（:uid）
-        // 其餘當作 NVARCHAR 常值，做引號轉義避免 SQL 注入
-        return "N'" + s.replace("'", "''") + "'";
     }
 
     /* ========== 還原（Restore） ========== */
     public int restoreRows(EraseTableConfigPojo r, List<Map<String, Object>> rows, String operatorUserId) {
         if (rows == null || rows.isEmpty()) return 0;
-        int total = 0;
+        var plan = plans.of(r);
+        if (plan.getRestoreSql() == null) return 0; // 沒東西可寫回就略過
 
-        // 逐列更新（通常 rows 來自鏡像／備份資料）
-        for (var row : rows) {
-            // 每列必須帶 __PK__（主鍵）
-            String id = RowUtils.toStringCI(row, "__PK__");
-            if (id == null || id.isBlank()) {
-                throw new IllegalStateException("Restore: __PK__ 不可為空, table=" + r.getTable());
-            }
-
-            // 1) 依規則的 dateCols/intCols 對白名單欄位做型態正規化
-            var cleaned = new LinkedHashMap<String, Object>();
-            for (String c : r.getWhitelist()) {
-                // ModifiedByUserID 交給 restoreExtraSet 控制，避免衝突
-                if ("ModifiedByUserID".equalsIgnoreCase(c)) continue; // 讓 restoreExtraSet 控制
-                Object raw = RowUtils.getCI(row, c);
-                Object norm = SqlNorm.normalizeForColumn(c, raw, normSet(r.getDateCols()), normSet(r.getIntCols()));
-                cleaned.put(c, norm);
-            }
-
-            // 2) 白名單欄位組成動態 SET（使用命名參數）
-            StringBuilder set = new StringBuilder();
-            int i = 0;
-            for (var e : cleaned.entrySet()) {
-                if (i++ > 0) set.append(", ");
-                set.append("[").append(e.getKey()).append("] = :").append(RowUtils.paramName(e.getKey()));
-            }
-            // 3) 追加 restoreExtraSet（支援 :uid / ${NOW}）
-            for (var e : r.getRestoreExtraSet().entrySet()) {
-                if (set.length() > 0) set.append(", ");
-                String val = renderSqlValue(e.getValue());
-                set.append("[").append(e.getKey()).append("] = ").append(val);
-            }
-
-            if (set.length() == 0) continue; // 沒東西可寫回就略過
+        // 若 restoreExtraSet 用到 :uid，嘗試以 int 綁定，否則以字串
+        Object uid = null;
+        if (plan.isRestoreBindsUid()) {
+            Integer uidInt = SqlNorm.tryParseInt(operatorUserId);
+            uid = uidInt != null ? uidInt : operatorUserId;
+        }
+        int size = Math.max(1, restoreBatchSize);
+        int total = 0;
 
-            // 安全柵欄：只還原目前 isERASE=1 的列，避免覆蓋正常資料
-            String sql = "UPDATE " + r.getSchema() + "." + r.getTable()
-                    + " SET " + set + " WHERE " + r.getIdColumn() + "=:id AND ISNULL(isERASE,0)=1";
-            try (var con = sql2o.open()) {
-                var q = con.createQuery(sql).addParameter("id", id);
-                // 綁定白名單欄位的命名參數
-                for (var e : cleaned.entrySet()) {
-                    q.addParameter(RowUtils.paramName(e.getKey()), e.getValue());
-                }
-                // 若 restoreExtraSet 用到 :uid，嘗試以 int 綁定，否則以字串
-                if (r.getRestoreExtraSet().values().stream().anyMatch(v -> (v != null && v.toString().startsWith(":uid")))) {
-                    Integer uidInt = SqlNorm.tryParseInt(operatorUserId);
-                    q.addParameter("uid", uidInt != null ? uidInt : operatorUserId);
+        // 同一條 PreparedStatement 以 JDBC batch 送出，每批 size 列；逐列檢查 update count
+        try (var con = sql2o.open()) {
+            for (int i = 0; i < rows.size(); i += size) {
+                var sub = rows.subList(i, Math.min(i + size, rows.size()));
+                var ids = new ArrayList<String>(sub.size());
+                int[] counts;
+                try (var q = con.createQuery(plan.getRestoreSql())) {
+                    for (var row : sub) {
+                        // 每列必須帶 __PK__（主鍵）
+                        String id = RowUtils.toStringCI(row, "__PK__");
+                        if (id == null || id.isBlank()) {
+                            throw new IllegalStateException("Restore: __PK__ 不可為空, table=" + r.getTable());
+                        }
+                        ids.add(id);
+                        q.addParameter("id", id);
+                        // 型別化 payload（fmt 2）的欄位直接綁定；舊格式才依規則的 dateCols/intCols 做型態正規化
+                        for (var c : plan.getRestoreColumns()) {
+                            Object raw = RowUtils.getCI(row, c.getColumn());
+                            q.addParameter(c.getParamName(), TypedFields.isTyped(row, c.getColumn()) ? raw : c.normalize(raw));
+                        }
+                        if (plan.isRestoreBindsUid()) q.addParameter("uid", uid);
+                        q.addToBatch();
+                    }
+                    q.executeBatch();
+                    counts = con.getBatchResult();
                 }
-                total += q.executeUpdate().getResult();
+                total += checkRestoreCounts(r, ids, counts);
             }
         }
         return total;
     }
 
-    /* ========== 欄位名集合正規化（大小寫一致化） ========== */
-    private Set<String> normSet(Set<String> s) {
-        if (s == null) return Set.of();
-        return s.stream().map(com.hn2.cms.service.aca4001.erase.support.RowUtils::normKey).collect(Collectors.toSet());
+    /**
+     * 檢查 batch 每列的 update count：0（未命中 isERASE=1 安全柵欄）或 EXECUTE_FAILED 視為還原失敗，
+     * 整批丟出例外讓交易回滾；驅動回報 SUCCESS_NO_INFO 時視為成功一列。
+     */
+    private static int checkRestoreCounts(EraseTableConfigPojo r, List<String> ids, int[] counts) {
+        if (counts == null || counts.length != ids.size()) {
+            throw new IllegalStateException("Restore: batch 回傳筆數不符, table=" + r.getTable()
+                    + ", expected=" + ids.size() + ", actual=" + (counts == null ? 0 : counts.length));
+        }
+        int ok = 0;
+        var failed = new ArrayList<String>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO) ok += Math.max(counts[i], 1);
+            else failed.add(ids.get(i));
+        }
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException("Restore: 以下列未還原（不存在或非 isERASE=1）, table=" + r.getTable() + ", ids=" + failed);
+        }
+        return ok;
     }
 
     /*
-    loadRowsByIds() & loadRowsByParentIds() 回傳型別：List<Map<String,Object>>
-    範例（以 ProRec 為例）：
-
-    [
-  {
-    "__PK__": "PR00123",
-    "ProPlight": "A類",
-    "HasPreviousPlight": 1,
-    "PreviousPlightChangedDesc": null,
-    "ProStatus": "CLOSE",
-    "ProFile": null,
-    "ProMemo": "備註文字",
-    "ProWorkerBackup": null,
-    "CreatedByUserID": 88,
-    "ModifiedByUserID": 88
-  },
-  {
-    "__PK__": "PR00124",
-    "ProPlight": null,
-    "HasPreviousPlight": 0,
-    "PreviousPlightChangedDesc": "",
-    "ProStatus": "OPEN",
-    "ProFile": "xxx.pdf",
-    "ProMemo": null,
-    "ProWorkerBackup": null,
-    "CreatedByUserID": 12,
-    "ModifiedByUserID": 12
-  }
-    ]
+    loadRowsByIds() & loadRowsByParentIds() 回傳型別：List<CompactRow>（欄位依 SELECT 順序，第一欄固定為 __PK__）
+    同一次查詢的列共用一個 Layout（欄名清單），每列只存值陣列；以 ProRec 為例：
+
+    getLayout().getColumns()（整批共用，欄名保留 DB 大小寫）：
+      ["__PK__", "ProPlight", "HasPreviousPlight", "PreviousPlightChangedDesc", "ProStatus",
+       "ProFile", "ProMemo", "ProWorkerBackup", "CreatedByUserID", "ModifiedByUserID"]
+
+    rows.get(0).values()：["PR00123", "A類", 1, null, "CLOSE", null, "備註文字", null, 88, 88]
+    rows.get(1).values()：["PR00124", null, 0, "", "OPEN", "xxx.pdf", null, null, 12, 12]
+
+    單欄取值：row.get(row.getLayout().ordinalOf("ProStatus")) → "CLOSE"；主鍵：row.idOrThrow(idColumn, table) → "PR00123"
     */
 }
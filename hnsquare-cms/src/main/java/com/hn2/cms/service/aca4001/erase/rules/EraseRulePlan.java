@@ -0,0 +1,195 @@
+package com.hn2.cms.service.aca4001.erase.rules;
+
+import com.hn2.cms.service.aca4001.erase.support.RowUtils;
+import com.hn2.cms.service.aca4001.erase.support.SqlNorm;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 【EraseRulePlan】單一 EraseTableConfigPojo 預先編譯後的「不可變執行計畫」。
+ * 目的：
+ * - 規則在啟動後就不再變動，因此 SELECT / UPDATE 的 SQL 字串、正規化後的欄位集合、
+ * 命名參數名稱都可以只算一次，熱迴圈只需綁定參數與執行。
+ * 產生方式：
+ * - 由 {@link EraseRulePlans} 於啟動時對每個規則 Bean 呼叫 {@link #compile(EraseTableConfigPojo)}。
+ */
+@Getter
+public final class EraseRulePlan {
+
+    /**
+     * 還原時白名單欄位的型態正規化種類（由 dateCols / intCols 決定）。
+     */
+    public enum ColumnKind {DATE, INT, PLAIN}
+
+    /**
+     * 還原 UPDATE 中的一個白名單欄位：欄位名、命名參數名與正規化種類。
+     */
+    @Getter
+    public static final class RestoreColumn {
+        private final String column;
+        private final String paramName;
+        private final ColumnKind kind;
+
+        RestoreColumn(String column, String paramName, ColumnKind kind) {
+            this.column = column;
+            this.paramName = paramName;
+            this.kind = kind;
+        }
+
+        /**
+         * 依欄位種類將鏡像值正規化為 JDBC 友善型別（規則同 SqlNorm.normalizeForColumn）。
+         */
+        public Object normalize(Object raw) {
+            switch (kind) {
+                case DATE:
+                    return SqlNorm.normalizeDate(raw);
+                case INT:
+                    return SqlNorm.normalizeInt(raw);
+                default:
+                    return raw;
+            }
+        }
+    }
+
+    private final EraseTableConfigPojo rule;
+
+    private final String selectByIdsSql;        // SELECT ... WHERE [id] IN (:ids)
+    private final String selectByParentSql;     // SELECT ... WHERE [parentFk] IN (:pids)；非子表為 null
+    private final String lookupSql;             // 父鍵映射 SELECT DISTINCT k, v；未設定 lookup 為 null
+    private final String eraseByIdsSql;         // UPDATE ... SET ... WHERE [id] IN (:ids)
+    private final String eraseByParentSql;      // UPDATE ... SET ... WHERE [parentFk] IN (:pids)；非子表為 null
+    private final String restoreSql;            // UPDATE ... WHERE [id]=:id AND ISNULL(isERASE,0)=1；沒有可寫回欄位為 null
+    private final String countByIdsSql;         // 試算用：SELECT COUNT(*) AS cnt, SUM(DATALENGTH(...)) AS bytes ... WHERE [id] IN (:ids)
+    private final String countByParentSql;      // 試算用：同上 WHERE [parentFk] IN (:pids)；非子表為 null
+    private final int payloadOverheadBytes;     // 試算用：每列鏡像 JSON 除欄位值以外的固定長度（鍵名、types、外框）
+
+    private final List<RestoreColumn> restoreColumns; // 還原時要綁定的白名單欄位（已排除 ModifiedByUserID）
+    private final boolean restoreBindsUid;            // restoreExtraSet 是否用到 :uid
+    private final Set<String> dateColsNorm;           // normKey 後的日期欄位
+    private final Set<String> intColsNorm;            // normKey 後的整數欄位
+
+    private EraseRulePlan(EraseTableConfigPojo r) {
+        this.rule = r;
+        String target = r.getSchema() + "." + r.getTable();
+
+        // 主鍵 + 白名單欄位（主鍵必帶為 __PK__）
+        String cols = (r.getWhitelist() == null || r.getWhitelist().isEmpty())
+                ? r.getIdColumn() + " AS __PK__"
+                : r.getIdColumn() + " AS __PK__," + String.join(",", r.getWhitelist());
+        this.selectByIdsSql = "SELECT " + cols + " FROM " + target + " WHERE " + r.getIdColumn() + " IN (:ids)";
+        this.selectByParentSql = r.isChild()
+                ? "SELECT " + cols + " FROM " + target + " WHERE " + r.getParentFkColumn() + " IN (:pids)"
+                : null;
+
+        // SELECT DISTINCT [src] AS k, [dst] AS v FROM schema.lookupTable WHERE [src] IN (:pids)（k 供逐父鍵記憶）
+        boolean hasLookup = r.getParentIdLookupTable() != null && r.getParentIdLookupSrcColumn() != null && r.getParentIdLookupDstColumn() != null;
+        this.lookupSql = hasLookup
+                ? "SELECT DISTINCT [" + r.getParentIdLookupSrcColumn() + "] AS k, [" + r.getParentIdLookupDstColumn() + "] AS v " +
+                "FROM " + r.getSchema() + "." + r.getParentIdLookupTable() +
+                " WHERE [" + r.getParentIdLookupSrcColumn() + "] IN (:pids)"
+                : null;
+
+        // 試算：只算列數與欄位值的實際儲存長度，不把資料讀回應用程式
+        String count = "SELECT COUNT(*) AS cnt, ISNULL(SUM(" + buildDataLengthSql(r) + "),0) AS bytes FROM " + target;
+        this.countByIdsSql = count + " WHERE " + r.getIdColumn() + " IN (:ids)";
+        this.countByParentSql = r.isChild() ? count + " WHERE " + r.getParentFkColumn() + " IN (:pids)" : null;
+        this.payloadOverheadBytes = estimatePayloadOverhead(r);
+
+        String eraseSet = buildEraseSetSql(r);
+        this.eraseByIdsSql = "UPDATE " + target + " SET " + eraseSet + " WHERE " + r.getIdColumn() + " IN (:ids)";
+        this.eraseByParentSql = r.isChild()
+                ? "UPDATE " + target + " SET " + eraseSet + " WHERE " + r.getParentFkColumn() + " IN (:pids)"
+                : null;
+
+        this.dateColsNorm = normSet(r.getDateCols());
+        this.intColsNorm = normSet(r.getIntCols());
+
+        // 還原：白名單欄位（ModifiedByUserID 交給 restoreExtraSet 控制）→ 命名參數；再追加 restoreExtraSet
+        var restoreCols = new ArrayList<RestoreColumn>();
+        var set = new StringBuilder();
+        for (String c : r.getWhitelist()) {
+            if ("ModifiedByUserID".equalsIgnoreCase(c)) continue;
+            String key = RowUtils.normKey(c);
+            ColumnKind kind = dateColsNorm.contains(key) ? ColumnKind.DATE
+                    : intColsNorm.contains(key) ? ColumnKind.INT
+                    : ColumnKind.PLAIN;
+            var rc = new RestoreColumn(c, RowUtils.paramName(c), kind);
+            restoreCols.add(rc);
+            if (set.length() > 0) set.append(", ");
+            set.append("[").append(c).append("] = :").append(rc.getParamName());
+        }
+        for (var e : r.getRestoreExtraSet().entrySet()) {
+            if (set.length() > 0) set.append(", ");
+            set.append("[").append(e.getKey()).append("] = ").append(renderSqlValue(e.getValue()));
+        }
+        this.restoreColumns = Collections.unmodifiableList(restoreCols);
+        this.restoreBindsUid = r.getRestoreExtraSet().values().stream().anyMatch(v -> v != null && v.toString().startsWith(":uid"));
+        // 安全柵欄：只還原目前 isERASE=1 的列，避免覆蓋正常資料
+        this.restoreSql = set.length() == 0 ? null
+                : "UPDATE " + target + " SET " + set + " WHERE " + r.getIdColumn() + "=:id AND ISNULL(isERASE,0)=1";
+    }
+
+    /**
+     * 將規則編譯成執行計畫。
+     */
+    public static EraseRulePlan compile(EraseTableConfigPojo r) {
+        return new EraseRulePlan(r);
+    }
+
+    /* ========== 試算用：主鍵 + 白名單欄位的 DATALENGTH 加總（逐欄轉 BIGINT 避免溢位） ========== */
+    private static String buildDataLengthSql(EraseTableConfigPojo r) {
+        var parts = new ArrayList<String>();
+        parts.add("CAST(ISNULL(DATALENGTH(" + r.getIdColumn() + "),0) AS BIGINT)");
+        for (String c : r.getWhitelist()) {
+            parts.add("CAST(ISNULL(DATALENGTH([" + c + "]),0) AS BIGINT)");
+        }
+        return String.join("+", parts);
+    }
+
+    /* ========== 試算用：fmt 2 鏡像 JSON 每列的固定長度（外框與 schema/table/idColumn + 每欄 fields 鍵名與 types 項目） ========== */
+    private static int estimatePayloadOverhead(EraseTableConfigPojo r) {
+        int n = 80 + r.getSchema().length() + r.getTable().length() + r.getIdColumn().length();
+        for (String c : r.getWhitelist()) {
+            n += 2 * c.length() + 14; // "c":  與  "c":"STR",
+        }
+        return n;
+    }
+
+    /* ========== 產生 Erase 用的 SET 子句 ========== */
+    private static String buildEraseSetSql(EraseTableConfigPojo r) {
+        var parts = new ArrayList<String>();
+        // 1) 白名單欄位預設 = NULL（若 eraseExtraSet 有覆蓋就不清）
+        for (String c : r.getWhitelist()) {
+            if (!r.getEraseExtraSet().containsKey(c)) {
+                parts.add("[" + c + "]=NULL");
+            }
+        }
+        // 2) 附加 eraseExtraSet（支援 ${NOW}、:param、字串、數值）
+        for (var e : r.getEraseExtraSet().entrySet()) {
+            parts.add("[" + e.getKey() + "]=" + renderSqlValue(e.getValue()));
+        }
+        return String.join(", ", parts);
+    }
+
+    /* ========== 將宣告的值轉成 SQL 字面值/參數 ========== */
+    private static String renderSqlValue(Object v) {
+        if (v == null) return "NULL";
+        if (v instanceof Number) return v.toString();
+        String s = v.toString();
+        if ("${NOW}".equals(s)) return "SYSDATETIME()";
+        if (s.startsWith(":")) return s;                 // 參數名，留給外層綁（:uid）
+        // 其餘當作 NVARCHAR 常值，做引號轉義避免 SQL 注入
+        return "N'" + s.replace("'", "''") + "'";
+    }
+
+    /* ========== 欄位名集合正規化（大小寫一致化） ========== */
+    private static Set<String> normSet(Set<String> s) {
+        if (s == null) return Set.of();
+        return s.stream().map(RowUtils::normKey).collect(Collectors.toUnmodifiableSet());
+    }
+}
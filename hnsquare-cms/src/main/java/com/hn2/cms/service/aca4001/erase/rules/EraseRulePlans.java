@@ -0,0 +1,33 @@
+package com.hn2.cms.service.aca4001.erase.rules;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 規則執行計畫的登錄表：啟動時把所有 EraseTableConfigPojo Bean 各編譯一次成 {@link EraseRulePlan}。
+ * - 以物件身分（identity）對應，避免 @Data 的 equals/hashCode 每次比對全部欄位。
+ * - 傳入未登錄的規則（例如測試或臨時組出的規則）時，當場編譯但不快取。
+ */
+@Slf4j
+@Component
+public class EraseRulePlans {
+
+    private final Map<EraseTableConfigPojo, EraseRulePlan> plans = new IdentityHashMap<>();
+
+    public EraseRulePlans(List<EraseTableConfigPojo> rules) {
+        for (var r : rules) plans.put(r, EraseRulePlan.compile(r));
+        log.info("Compiled erase rule plans: {}", rules.stream().map(EraseTableConfigPojo::getTable).toArray());
+    }
+
+    /**
+     * 取得規則的執行計畫。
+     */
+    public EraseRulePlan of(EraseTableConfigPojo rule) {
+        var plan = plans.get(rule);
+        return plan != null ? plan : EraseRulePlan.compile(rule);
+    }
+}
@@ -0,0 +1,54 @@
+package com.hn2.cms.service.aca4001.erase.rules;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 單一塗銷指令（EraseCommand）或同一批次內的「父鍵映射」記憶表。
+ * 背景：
+ * - 子表規則透過 lookup（如 ACABrd.ACACardNo → FamCardNo）取得實際過濾鍵，
+ * 同一條規則的讀取與清空各查一次，多條規則共用同一組 lookup 時又各自重查。
+ * 作法：
+ * - 以「lookup SQL（已含 schema/表/來源欄/目的欄）→ 單一父鍵 → 映射鍵」記住結果，只查尚未查過的父鍵；
+ * 批次作業可先以整批父鍵預查一次（見 EraseRestoreExecutor#prefetchParentKeys），之後逐卡處理都直接命中。
+ * - 父鍵以 trim + 大寫比對（與 SQL Server 預設定序的比較方式一致）。
+ * 注意：
+ * - 每個指令/批次 new 一份，隨作業結束丟棄，不跨請求共用（資料可能已變動）。
+ * - 可由平行分支（EraseRuleScheduler）共用：只有讀寫記憶表時持鎖，loader（查資料庫）在鎖外執行，
+ * 分支不會因彼此的 lookup 查詢而排隊；兩個分支同時查到同一父鍵時各查一次，結果相同，以先寫入者為準。
+ */
+public final class ParentKeyLookups {
+    private final Map<String, Map<String, List<String>>> memo = new HashMap<>();
+
+    /**
+     * 取得 parentIds 對應的映射鍵（去重、保留順序）；未查過的父鍵才交給 loader 一次查回（loader 回傳以 {@link #norm} 為鍵）。
+     */
+    List<String> resolve(String lookupSql, List<String> parentIds, Function<List<String>, Map<String, List<String>>> loader) {
+        List<String> missing;
+        synchronized (memo) {
+            var bySrc = memo.computeIfAbsent(lookupSql, k -> new HashMap<>());
+            missing = parentIds.stream().filter(id -> !bySrc.containsKey(norm(id))).distinct().collect(Collectors.toList());
+        }
+        var found = missing.isEmpty() ? Map.<String, List<String>>of() : loader.apply(missing);
+
+        var out = new LinkedHashSet<String>();
+        synchronized (memo) {
+            var bySrc = memo.get(lookupSql);
+            for (String id : missing) bySrc.putIfAbsent(norm(id), found.getOrDefault(norm(id), List.of()));
+            for (String id : parentIds) out.addAll(bySrc.get(norm(id)));
+        }
+        return List.copyOf(out);
+    }
+
+    /**
+     * 父鍵比對用的正規化（trim + 大寫）。
+     */
+    static String norm(String id) {
+        return id == null ? "" : id.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -8,7 +8,7 @@ import java.util.Map;
  * - 大小寫不敏感的取值（getCI / toStringCI）
  * - 將欄位名轉成安全的 SQL 參數名稱（paramName）
  * - 將欄位名正規化為比對用鍵（normKey）
- * - 從 row 取出主鍵值（優先 "__PK__"，否則依 idColumn）且做有效性檢查（extractIdOrThrow）
+ * - 主鍵值轉字串並做有效性檢查（toIdString）
  * 設計：
  * - final + 私有建構子：純工具類，禁止實例化/繼承。
  */
@@ -59,54 +59,9 @@ public final class RowUtils {
     }
 
     /**
-     * 取出 row 的主鍵值（字串）：
-     * - 優先取 "__PK__"（建議在 SELECT 時使用 "ID AS __PK__"）
-     * - 否則依 idColumn（原樣/大寫/小寫）嘗試
-     * - 轉字串並 trim，若為 null/空白/字面 "null" → 拋 IllegalStateException
+     * 主鍵值轉字串：字串 trim、數字原樣；null/空白/字面 "null" 視為無效回傳 null。
      */
-    public static String extractIdOrThrow(Map<String, Object> row, String idColumn, String table) {
-        if (row == null || row.isEmpty()) {
-            throw new IllegalStateException("無法取得有效主鍵: row 為空, table=" + table + ", idColumn=" + idColumn);
-        }
-
-        Object v = null;
-
-        // 1) 通用別名：支援大小寫變體
-        if (row.containsKey("__PK__")) v = row.get("__PK__");
-        if (v == null && row.containsKey("__pk__")) v = row.get("__pk__");
-
-        // 2) 指定的 idColumn：先原樣，再大小寫變體
-        if (v == null && idColumn != null && !idColumn.isEmpty()) {
-            v = row.get(idColumn);
-            if (v == null) v = row.get(idColumn.toUpperCase());
-            if (v == null) v = row.get(idColumn.toLowerCase());
-
-            // 2.1) 仍找不到 → 做一次不分大小寫線性掃描（保守但穩）
-            if (v == null) {
-                String foundKey = null;
-                for (String k : row.keySet()) {
-                    if (k != null && k.equalsIgnoreCase(idColumn)) {
-                        foundKey = k;
-                        break;
-                    }
-                }
-                if (foundKey != null) v = row.get(foundKey);
-            }
-        }
-
-        // 3) 再次 fallback：若某些查詢只回了 __Pk__ 這種奇怪大小寫
-        if (v == null) {
-            String foundKey = null;
-            for (String k : row.keySet()) {
-                if ("__PK__".equalsIgnoreCase(k)) {
-                    foundKey = k;
-                    break;
-                }
-            }
-            if (foundKey != null) v = row.get(foundKey);
-        }
-
-        // 4) 轉成字串
+    public static String toIdString(Object v) {
         String id = null;
         if (v instanceof CharSequence) {
             id = v.toString().trim();
@@ -116,13 +71,6 @@ public final class RowUtils {
         } else if (v != null) {
             id = v.toString().trim();
         }
-
-        // 5) 驗證
-        if (id == null || id.isEmpty() || "null".equalsIgnoreCase(id)) {
-            throw new IllegalStateException("無法取得有效主鍵: table=" + table
-                    + ", idColumn=" + idColumn + ", rowKeys=" + row.keySet());
-        }
-        return id;
+        return (id == null || id.isEmpty() || "null".equalsIgnoreCase(id)) ? null : id;
     }
-
 }
@@ -48,55 +48,74 @@ public final class SqlNorm {
         String key = RowUtils.normKey(col);
 
         // -------- 日期欄位正規化 --------
-        if (dateColsNorm.contains(key)) {
-            // 已是 JDBC 友善型別
-            if (val instanceof java.sql.Timestamp) return val;
-            if (val instanceof java.util.Date) return new java.sql.Timestamp(((java.util.Date) val).getTime());
+        if (dateColsNorm.contains(key)) return normalizeDate(val);
 
-            // 其餘 → 轉字串處理
-            String s = val.toString().trim();
-            if (s.isEmpty()) return null; // 空字串視為 NULL
+        // -------- 整數欄位正規化 --------
+        if (intColsNorm.contains(key)) return normalizeInt(val);
+
+        // 其他欄位：不變動
+        return val;
+    }
+
+    /**
+     * 日期欄位正規化（規則見 normalizeForColumn）；供已預先判定欄位種類的呼叫端直接使用。
+     *
+     * @param val 欲正規化的值
+     * @return Timestamp / null / 原字串（無法解析時）
+     */
+    public static Object normalizeDate(Object val) {
+        if (val == null) return null;
+        // 已是 JDBC 友善型別
+        if (val instanceof java.sql.Timestamp) return val;
+        if (val instanceof java.util.Date) return new java.sql.Timestamp(((java.util.Date) val).getTime());
 
-            // 1) 優先試有時區資訊的格式
-            try {
-                var odt = java.time.OffsetDateTime.parse(s);
-                return java.sql.Timestamp.from(odt.toInstant());
-            } catch (Exception ignore) {
-            }
+        // 其餘 → 轉字串處理
+        String s = val.toString().trim();
+        if (s.isEmpty()) return null; // 空字串視為 NULL
 
-            // 2) 寬鬆處理 ISO-like：去掉 'T'、時區偏移(+08:00)/Z、小數秒等
-            try {
-                var zdt = java.time.ZonedDateTime.parse(s);
-                return java.sql.Timestamp.from(zdt.toInstant());
-            } catch (Exception ignore) {
-            }
-            s = s.replace('T', ' ');
-            int plus = Math.max(s.indexOf('+'), s.indexOf('-'));
-            if (plus > 10) s = s.substring(0, plus);
-            int z = s.indexOf('Z');
-            if (z > 0) s = s.substring(0, z);
-            int dot = s.indexOf('.');
-            if (dot > 0) s = s.substring(0, dot);
-            if (s.length() == 10) s += " 00:00:00";
-            String ts = s.substring(0, Math.min(19, s.length()));
-            try {
-                return java.sql.Timestamp.valueOf(ts);
-            } catch (IllegalArgumentException ex) {
-                return val.toString();
-            }
+        // 1) 優先試有時區資訊的格式
+        try {
+            var odt = java.time.OffsetDateTime.parse(s);
+            return java.sql.Timestamp.from(odt.toInstant());
+        } catch (Exception ignore) {
         }
 
-        // -------- 整數欄位正規化 --------
-        if (intColsNorm.contains(key)) {
-            if (val instanceof Number) return ((Number) val).intValue();
-            try {
-                return Integer.parseInt(val.toString().trim());
-            } catch (Exception ex) {
-                return val.toString();
-            }
+        // 2) 寬鬆處理 ISO-like：去掉 'T'、時區偏移(+08:00)/Z、小數秒等
+        try {
+            var zdt = java.time.ZonedDateTime.parse(s);
+            return java.sql.Timestamp.from(zdt.toInstant());
+        } catch (Exception ignore) {
+        }
+        s = s.replace('T', ' ');
+        int plus = Math.max(s.indexOf('+'), s.indexOf('-'));
+        if (plus > 10) s = s.substring(0, plus);
+        int z = s.indexOf('Z');
+        if (z > 0) s = s.substring(0, z);
+        int dot = s.indexOf('.');
+        if (dot > 0) s = s.substring(0, dot);
+        if (s.length() == 10) s += " 00:00:00";
+        String ts = s.substring(0, Math.min(19, s.length()));
+        try {
+            return java.sql.Timestamp.valueOf(ts);
+        } catch (IllegalArgumentException ex) {
+            return val.toString();
+        }
+    }
+
+    /**
+     * 整數欄位正規化（規則見 normalizeForColumn）；供已預先判定欄位種類的呼叫端直接使用。
+     *
+     * @param val 欲正規化的值
+     * @return Integer / null / 原字串（無法解析時）
+     */
+    public static Object normalizeInt(Object val) {
+        if (val == null) return null;
+        if (val instanceof Number) return ((Number) val).intValue();
+        try {
+            return Integer.parseInt(val.toString().trim());
+        } catch (Exception ex) {
+            return val.toString();
         }
-        // 其他欄位：不變動
-        return val;
     }
 
     /**
@@ -0,0 +1,130 @@
+package com.hn2.cms.service.aca4001.erase.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 鏡像 JSON「fmt 2」的型別化欄位編解碼。
+ * 目的：
+ * - 舊格式只存值，還原時得靠 SqlNorm 以字串猜型別（OffsetDateTime/ZonedDateTime 解析失敗再退回清理字串）。
+ * - fmt 2 於 payload 額外記錄 "types": { 欄位: 型別代碼 }，值以固定格式寫入，還原時直接轉回 JDBC 型別綁定，不需任何嘗試解析。
+ * 型別代碼：
+ * - STR / INT / LONG / DEC / DBL / BOOL / TS（LocalDateTime ISO）/ DATE（LocalDate ISO）/ TIME / BIN（Base64）
+ * - 無法辨識的型別不寫 types（值照舊序列化），還原時仍交給 SqlNorm 處理；null 值也不寫 types。
+ * 設計：
+ * - final + 私有建構子：純工具類，禁止實例化/繼承。
+ */
+public final class TypedFields {
+    private TypedFields() {
+    }
+
+    /** payload 版本欄位名與值（有此標記才會讀 types）。 */
+    public static final String FMT_KEY = "fmt";
+    public static final int FMT_TYPED = 2;
+    public static final String TYPES_KEY = "types";
+
+    /** 解析後的 Map 以此鍵攜帶「已是型別化值」的欄位集合（RowUtils.normKey 後），執行器據此略過 SqlNorm。 */
+    public static final String TYPED_COLS_KEY = "__TYPED__";
+
+    /**
+     * 將一列資料（欄位名/值陣列，依序號對應，見 CompactRow）寫入 fields 節點，並把可辨識的型別登記到 types 節點。
+     */
+    public static void encode(ObjectMapper om, List<String> cols, Object[] values, ObjectNode fields, ObjectNode types) {
+        for (int i = 0; i < values.length; i++) {
+            encode(om, cols.get(i), values[i], fields, types);
+        }
+    }
+
+    private static void encode(ObjectMapper om, String col, Object v, ObjectNode fields, ObjectNode types) {
+        if (v == null) {
+            fields.putNull(col);
+        } else if (v instanceof String) {
+            fields.put(col, (String) v);
+            types.put(col, "STR");
+        } else if (v instanceof Integer || v instanceof Short || v instanceof Byte) {
+            fields.put(col, ((Number) v).intValue());
+            types.put(col, "INT");
+        } else if (v instanceof Long) {
+            fields.put(col, (Long) v);
+            types.put(col, "LONG");
+        } else if (v instanceof BigDecimal) {
+            fields.put(col, ((BigDecimal) v).toPlainString()); // 以字串保存，避免精度流失
+            types.put(col, "DEC");
+        } else if (v instanceof Double || v instanceof Float) {
+            fields.put(col, ((Number) v).doubleValue());
+            types.put(col, "DBL");
+        } else if (v instanceof Boolean) {
+            fields.put(col, (Boolean) v);
+            types.put(col, "BOOL");
+        } else if (v instanceof Timestamp || v instanceof LocalDateTime) {
+            var ldt = v instanceof Timestamp ? ((Timestamp) v).toLocalDateTime() : (LocalDateTime) v;
+            fields.put(col, ldt.toString()); // 不帶時區，避免 JVM/DB 時區差造成位移
+            types.put(col, "TS");
+        } else if (v instanceof java.sql.Date || v instanceof LocalDate) {
+            var ld = v instanceof java.sql.Date ? ((java.sql.Date) v).toLocalDate() : (LocalDate) v;
+            fields.put(col, ld.toString());
+            types.put(col, "DATE");
+        } else if (v instanceof java.sql.Time || v instanceof LocalTime) {
+            var lt = v instanceof java.sql.Time ? ((java.sql.Time) v).toLocalTime() : (LocalTime) v;
+            fields.put(col, lt.toString());
+            types.put(col, "TIME");
+        } else if (v instanceof byte[]) {
+            fields.put(col, Base64.getEncoder().encodeToString((byte[]) v));
+            types.put(col, "BIN");
+        } else {
+            // 其他型別（如 java.util.Date、驅動專屬型別）：維持舊行為序列化、不登記型別，還原交給 SqlNorm
+            fields.set(col, om.valueToTree(v));
+        }
+    }
+
+    /**
+     * 依型別代碼把 JSON 值轉回 JDBC 可直接綁定的型別（只處理 types 有登記的欄位；未知代碼視為資料錯誤）。
+     */
+    public static Object decode(JsonNode v, String type) {
+        if (v == null || v.isNull()) return null;
+        switch (type) {
+            case "STR":
+                return v.asText();
+            case "INT":
+                return v.asInt();
+            case "LONG":
+                return v.asLong();
+            case "DEC":
+                return new BigDecimal(v.asText());
+            case "DBL":
+                return v.asDouble();
+            case "BOOL":
+                return v.asBoolean();
+            case "TS":
+                return Timestamp.valueOf(LocalDateTime.parse(v.asText()));
+            case "DATE":
+                return java.sql.Date.valueOf(LocalDate.parse(v.asText()));
+            case "TIME":
+                return java.sql.Time.valueOf(LocalTime.parse(v.asText()));
+            case "BIN":
+                return Base64.getDecoder().decode(v.asText());
+            default:
+                throw new IllegalStateException("鏡像 payload 含不支援的欄位型別: " + type);
+        }
+    }
+
+    /**
+     * 判斷某欄位的值是否已是型別化值（可略過 SqlNorm）。
+     */
+    @SuppressWarnings("unchecked")
+    public static boolean isTyped(Map<String, Object> row, String col) {
+        Object s = row.get(TYPED_COLS_KEY);
+        return s instanceof Set && ((Set<String>) s).contains(RowUtils.normKey(col));
+    }
+}
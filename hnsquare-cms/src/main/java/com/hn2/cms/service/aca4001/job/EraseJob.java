@@ -0,0 +1,116 @@
+package com.hn2.cms.service.aca4001.job;
+
+import com.hn2.cms.dto.aca4001.Aca4001JobDto;
+import com.hn2.cms.service.aca4001.erase.EraseProgressListener;
+import lombok.Getter;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一個背景塗銷/還原作業的狀態與逐規則進度。
+ * - 本身即為 EraseProgressListener，由 GenericEraseService 於執行中回報；狀態由 EraseJobService 推進。
+ * - 可能被作業執行緒（或平行分支）與查詢請求同時存取，欄位以 volatile / 同步保護。
+ */
+@Getter
+public class EraseJob implements EraseProgressListener {
+    public enum Type {ERASE, RESTORE}
+
+    public enum State {QUEUED, RUNNING, SUCCEEDED, FAILED}
+
+    private final String jobId;
+    private final Type type;
+    private final String acaCardNo;
+    private final long submittedAt = System.currentTimeMillis();
+    private volatile long startedAt;   // 0 = 尚未開始
+    private volatile long finishedAt;  // 0 = 尚未結束
+    private volatile State state = State.QUEUED;
+    private volatile String message;
+
+    private final Map<String, Progress> rules = new LinkedHashMap<>(); // 依回報先後（即規則執行順序）
+
+    private static final class Progress {
+        final AtomicLong mirrored = new AtomicLong();
+        final AtomicLong erased = new AtomicLong();
+        final AtomicLong restored = new AtomicLong();
+    }
+
+    EraseJob(String jobId, Type type, String acaCardNo) {
+        this.jobId = jobId;
+        this.type = type;
+        this.acaCardNo = acaCardNo;
+    }
+
+    void markRunning() {
+        startedAt = System.currentTimeMillis();
+        state = State.RUNNING;
+    }
+
+    void markFinished(Throwable error) {
+        finishedAt = System.currentTimeMillis();
+        if (error != null) message = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        state = error == null ? State.SUCCEEDED : State.FAILED;
+    }
+
+    boolean isFinished() {
+        return state == State.SUCCEEDED || state == State.FAILED;
+    }
+
+    @Override
+    public void onMirrored(String table, int rows) {
+        progress(table).mirrored.addAndGet(rows);
+    }
+
+    @Override
+    public void onErased(String table, int rows) {
+        progress(table).erased.addAndGet(rows);
+    }
+
+    @Override
+    public void onRestored(String table, int rows) {
+        progress(table).restored.addAndGet(rows);
+    }
+
+    private Progress progress(String table) {
+        synchronized (rules) {
+            return rules.computeIfAbsent(table, k -> new Progress());
+        }
+    }
+
+    /**
+     * 轉成回傳用 DTO（當下快照）。
+     */
+    public Aca4001JobDto toDto() {
+        var dto = new Aca4001JobDto();
+        dto.setJobId(jobId);
+        dto.setType(type.name());
+        dto.setAcaCardNo(acaCardNo);
+        dto.setState(state.name());
+        dto.setSubmittedOn(new Timestamp(submittedAt));
+        long start = startedAt;
+        long end = finishedAt;
+        if (start > 0) {
+            dto.setStartedOn(new Timestamp(start));
+            dto.setElapsedMs((end > 0 ? end : System.currentTimeMillis()) - start);
+        }
+        if (end > 0) dto.setFinishedOn(new Timestamp(end));
+        dto.setMessage(message);
+
+        var list = new ArrayList<Aca4001JobDto.RuleProgress>();
+        synchronized (rules) {
+            for (var e : rules.entrySet()) {
+                var rp = new Aca4001JobDto.RuleProgress();
+                rp.setTable(e.getKey());
+                rp.setRowsMirrored(e.getValue().mirrored.get());
+                rp.setRowsErased(e.getValue().erased.get());
+                rp.setRowsRestored(e.getValue().restored.get());
+                list.add(rp);
+            }
+        }
+        dto.setRules(list);
+        return dto;
+    }
+}
@@ -0,0 +1,99 @@
+package com.hn2.cms.service.aca4001.job;
+
+import com.hn2.cms.service.aca4001.erase.EraseProgressListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 背景塗銷/還原作業的排程與登記。
+ * - 有界執行緒池：同時執行上限 erase.job.maxConcurrent，排隊上限 erase.job.queueCapacity；滿了直接拒絕（不佔用請求執行緒）。
+ * - 作業登記在記憶體中（單機），結束後保留 erase.job.retentionMinutes 分鐘供查詢；
+ * 過期者於提交、查詢時及每 erase.job.purgeIntervalMillis 毫秒的排程清除。
+ * - 作業本身的交易由被呼叫的 GenericEraseService（@Transactional）負責；本類別只管執行緒與狀態。
+ */
+@Service
+@Slf4j
+public class EraseJobService {
+    private final ThreadPoolExecutor pool;
+    private final long retentionMillis;
+    private final Map<String, EraseJob> jobs = new ConcurrentHashMap<>();
+
+    public EraseJobService(@Value("${erase.job.maxConcurrent:2}") int maxConcurrent,
+                           @Value("${erase.job.queueCapacity:20}") int queueCapacity,
+                           @Value("${erase.job.retentionMinutes:60}") long retentionMinutes) {
+        int n = Math.max(1, maxConcurrent);
+        var seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> new Thread(r, "erase-job-" + seq.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(Math.max(1, retentionMinutes));
+    }
+
+    /**
+     * 提交一個背景作業；work 收到的 listener 即為該作業的進度紀錄。
+     *
+     * @throws IllegalStateException 執行中與排隊中的作業已達上限
+     */
+    public EraseJob submit(EraseJob.Type type, String acaCardNo, Consumer<EraseProgressListener> work) {
+        purgeExpired();
+        var job = new EraseJob(UUID.randomUUID().toString(), type, acaCardNo);
+        jobs.put(job.getJobId(), job);
+        try {
+            pool.execute(() -> run(job, work));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getJobId());
+            throw new IllegalStateException("背景作業已達上限，請稍後再試");
+        }
+        log.info("[EraseJob] submitted jobId={}, type={}, aca={}", job.getJobId(), type, acaCardNo);
+        return job;
+    }
+
+    /**
+     * 依 jobId 取得作業（不存在或已過保留期限回 null）。
+     */
+    public EraseJob find(String jobId) {
+        if (jobId == null) return null;
+        purgeExpired();
+        return jobs.get(jobId);
+    }
+
+    private void run(EraseJob job, Consumer<EraseProgressListener> work) {
+        job.markRunning();
+        try {
+            work.accept(job);
+            job.markFinished(null);
+            log.info("[EraseJob] succeeded jobId={}, type={}, aca={}", job.getJobId(), job.getType(), job.getAcaCardNo());
+        } catch (Throwable e) {
+            // Error（如 OutOfMemoryError）也要標記失敗，否則作業永遠停在 RUNNING；標記後照常往外拋
+            job.markFinished(e);
+            log.error("[EraseJob] failed jobId={}, type={}, aca={}", job.getJobId(), job.getType(), job.getAcaCardNo(), e);
+            if (e instanceof Error) throw (Error) e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${erase.job.purgeIntervalMillis:300000}")
+    void purgeExpired() {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        jobs.values().removeIf(j -> j.isFinished() && j.getFinishedAt() < cutoff);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+}
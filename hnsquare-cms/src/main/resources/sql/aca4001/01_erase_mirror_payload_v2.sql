@@ -0,0 +1,37 @@
+-- ACA_EraseMirror：鏡像 payload v2（Deflate 壓縮 + AES-GCM，密文以 VARBINARY 儲存）
+-- 舊資料 PayloadVersion 維持 NULL（視同 v1，EncodedPayload 為 Base64 文字），仍可正常還原。
+-- 上線順序：本腳本為必要變更，須在部署新版程式前執行（不論 erase.mirror.payloadVersion 設為 1 或 2，
+-- EraseMirrorRepo 的讀寫都會用到 PayloadVersion / EncryptedPayload 欄位）。可重複執行。
+
+IF COL_LENGTH('dbo.ACA_EraseMirror', 'PayloadVersion') IS NULL
+    ALTER TABLE dbo.ACA_EraseMirror ADD PayloadVersion TINYINT NULL;
+GO
+
+IF COL_LENGTH('dbo.ACA_EraseMirror', 'EncryptedPayload') IS NULL
+    ALTER TABLE dbo.ACA_EraseMirror ADD EncryptedPayload VARBINARY(MAX) NULL;
+GO
+
+-- v2 列不再寫入 EncodedPayload，需允許 NULL。
+-- ALTER COLUMN 必須重述型別：依現有欄位定義組出原型別（含長度與定序），只改為可為 NULL，不變更型別。
+DECLARE @type NVARCHAR(400);
+SELECT @type = t.name
+        + CASE
+              WHEN t.name IN (N'nvarchar', N'nchar')
+                  THEN N'(' + CASE WHEN c.max_length = -1 THEN N'MAX' ELSE CAST(c.max_length / 2 AS NVARCHAR(10)) END + N')'
+              WHEN t.name IN (N'varchar', N'char', N'varbinary', N'binary')
+                  THEN N'(' + CASE WHEN c.max_length = -1 THEN N'MAX' ELSE CAST(c.max_length AS NVARCHAR(10)) END + N')'
+              ELSE N''
+          END
+        + CASE WHEN c.collation_name IS NOT NULL THEN N' COLLATE ' + c.collation_name ELSE N'' END
+FROM sys.columns c
+JOIN sys.types t ON t.user_type_id = c.user_type_id
+WHERE c.object_id = OBJECT_ID(N'dbo.ACA_EraseMirror')
+  AND c.name = N'EncodedPayload'
+  AND c.is_nullable = 0;
+
+IF @type IS NOT NULL
+BEGIN
+    DECLARE @sql NVARCHAR(600) = N'ALTER TABLE dbo.ACA_EraseMirror ALTER COLUMN EncodedPayload ' + @type + N' NULL;';
+    EXEC sp_executesql @sql;
+END
+GO
@@ -0,0 +1,22 @@
+-- ACA_EraseCheckpoint：分段（逐規則提交）塗銷的進度紀錄
+-- 每完成一條規則（鏡像 + 清空）即在同一交易內寫入一列；整個塗銷完成（寫入 ERASE 稽核）後刪除該卡號的紀錄。
+-- 中斷後以相同指令重新執行時，CommandHash 相同者會略過已完成的規則，從下一條接續。
+
+IF OBJECT_ID(N'dbo.ACA_EraseCheckpoint', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.ACA_EraseCheckpoint (
+        ID            BIGINT IDENTITY(1,1) NOT NULL CONSTRAINT PK_ACA_EraseCheckpoint PRIMARY KEY,
+        AcaCardNo     NVARCHAR(20)  NOT NULL,
+        CommandHash   CHAR(64)      NOT NULL, -- 卡號 + 各表 ID 清單（排序後）的 SHA-256
+        RuleOrder     INT           NOT NULL, -- 規則執行順序（0 起算）
+        RuleTable     NVARCHAR(128) NOT NULL,
+        RowsMirrored  INT           NOT NULL,
+        RowsErased    INT           NOT NULL,
+        CompletedOn   DATETIME2     NOT NULL CONSTRAINT DF_ACA_EraseCheckpoint_CompletedOn DEFAULT SYSDATETIME()
+    );
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'UX_ACA_EraseCheckpoint_Rule' AND object_id = OBJECT_ID(N'dbo.ACA_EraseCheckpoint'))
+    CREATE UNIQUE INDEX UX_ACA_EraseCheckpoint_Rule ON dbo.ACA_EraseCheckpoint (AcaCardNo, CommandHash, RuleOrder);
+GO
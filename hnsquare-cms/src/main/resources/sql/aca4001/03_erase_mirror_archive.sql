@@ -0,0 +1,39 @@
+-- ACA_EraseMirrorArchive：ACA_EraseMirror 的冷資料封存表（鏡像保留期限，見 erase.mirror.archive.*）
+-- 排程依卡號把「所有鏡像列皆早於保留期限」的個案，以 DELETE ... OUTPUT INTO 分批搬到本表；
+-- 還原時會同時讀取 ACA_EraseMirror 與本表（同一目標兩邊都有時以 ACA_EraseMirror 為準），還原完成後兩邊一併刪除。
+-- 上線順序：先執行本腳本，再將 erase.mirror.archive.enabled 設為 true。
+--
+-- 儲存配置：
+-- - 叢集索引為 (ArchivedOn, ArchiveID)：只會附加寫入，日後若要改成依 ArchivedOn 分割（partition）做滑動視窗清除，
+--   可直接以同一欄位建立 partition scheme，不需重建資料表結構。例如：
+--   CREATE PARTITION FUNCTION PF_EraseMirrorArchive (DATETIME2) AS RANGE RIGHT FOR VALUES ('2026-01-01', '2026-07-01', ...);
+-- - 還原以 ACACardNo 查詢，另建非叢集索引。
+
+IF OBJECT_ID(N'dbo.ACA_EraseMirrorArchive', N'U') IS NULL
+BEGIN
+    CREATE TABLE dbo.ACA_EraseMirrorArchive (
+        ArchiveID         BIGINT IDENTITY(1,1) NOT NULL,
+        TargetSchema      NVARCHAR(128)  NULL,
+        TargetTable       NVARCHAR(128)  NOT NULL,
+        TargetID          NVARCHAR(100)  NOT NULL,
+        ACACardNo         NVARCHAR(20)   NOT NULL,
+        PayloadVersion    TINYINT        NULL,
+        EncodedPayload    NVARCHAR(MAX)  NULL,
+        EncryptedPayload  VARBINARY(MAX) NULL,
+        AesIvBase64       NVARCHAR(64)   NOT NULL,
+        PayloadSha256Hex  CHAR(64)       NOT NULL,
+        CreatedOnDate     DATETIME2      NOT NULL, -- 原鏡像建立時間
+        ArchivedOn        DATETIME2      NOT NULL CONSTRAINT DF_ACA_EraseMirrorArchive_ArchivedOn DEFAULT SYSDATETIME(),
+        CONSTRAINT PK_ACA_EraseMirrorArchive PRIMARY KEY CLUSTERED (ArchivedOn, ArchiveID)
+    );
+END
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_ACA_EraseMirrorArchive_ACACardNo' AND object_id = OBJECT_ID(N'dbo.ACA_EraseMirrorArchive'))
+    CREATE INDEX IX_ACA_EraseMirrorArchive_ACACardNo ON dbo.ACA_EraseMirrorArchive (ACACardNo, TargetTable, TargetID);
+GO
+
+-- 排程挑選可封存卡號（GROUP BY ACACardNo HAVING MAX(CreatedOnDate) < 期限）用的窄索引
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_ACA_EraseMirror_ACACardNo_CreatedOnDate' AND object_id = OBJECT_ID(N'dbo.ACA_EraseMirror'))
+    CREATE INDEX IX_ACA_EraseMirror_ACACardNo_CreatedOnDate ON dbo.ACA_EraseMirror (ACACardNo, CreatedOnDate);
+GO
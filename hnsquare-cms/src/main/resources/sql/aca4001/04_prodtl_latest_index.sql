@@ -0,0 +1,44 @@
+-- IX_ProDtl_ProRecID_ID：塗銷查詢（ProRec 明細）的「最新 ProDtl」投影用索引。
+-- Aca4001RepositoryImpl 的 ProRec SELECT 以單一 OUTER APPLY 依 ProRecID 取出 ProDtl，
+-- 依 ID DESC 一次掃描算出 ProItem / Interview / ProPlace 各自最新一筆非 NULL 值（原本為三個 TOP (1) 子查詢）。
+-- 本索引讓該掃描成為「每個 ProRec 一次 seek + 依序讀取」：
+-- - 鍵 (ProRecID, ID DESC) 與視窗函式的 ORDER BY 一致 → 不需排序運算子；
+-- - INCLUDE 三個欄位 → 不需回查叢集索引；
+-- - 篩選 IsDeleted = 0 → 與查詢條件相同，索引只含有效資料。
+-- 未建立本索引時查詢結果不變，只是每個 ProRec 多一次排序。
+--
+-- ⚠ 篩選索引的限制：建立後，任何對 dbo.ProDtl 的 INSERT / UPDATE / DELETE 都必須在
+--   QUOTED_IDENTIFIER ON 且 ANSI_NULLS ON 的工作階段執行，否則語句直接失敗（錯誤 1934）。
+--   - 本系統 JDBC（mssql-jdbc）連線預設皆為 ON，不受影響。
+--   - 預存程序 / 觸發程序的設定是在「建立當時」固定下來的（sys.sql_modules.uses_quoted_identifier / uses_ansi_nulls），
+--     舊程序若以 OFF 建立，呼叫時即使連線為 ON 仍會失敗，需以 ON 重新 ALTER。
+--   - sqlcmd（未加 -I）與 SQL Agent 的 T-SQL 作業步驟預設 QUOTED_IDENTIFIER OFF；排程/維運腳本若會寫 ProDtl，需先 SET QUOTED_IDENTIFIER ON。
+--   下方先檢查定義中提到 ProDtl、且以 OFF 建立的模組；有的話列出並中止，不建立索引（修正後重跑即可，腳本可重複執行）。
+
+SET QUOTED_IDENTIFIER ON;
+SET ANSI_NULLS ON;
+GO
+
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_ProDtl_ProRecID_ID' AND object_id = OBJECT_ID(N'dbo.ProDtl'))
+BEGIN
+    IF EXISTS (SELECT 1 FROM sys.sql_modules m
+               WHERE m.definition LIKE N'%ProDtl%'
+                 AND (m.uses_quoted_identifier = 0 OR m.uses_ansi_nulls = 0))
+    BEGIN
+        SELECT OBJECT_SCHEMA_NAME(m.object_id) AS SchemaName,
+               OBJECT_NAME(m.object_id)        AS ObjectName,
+               m.uses_quoted_identifier,
+               m.uses_ansi_nulls
+        FROM sys.sql_modules m
+        WHERE m.definition LIKE N'%ProDtl%'
+          AND (m.uses_quoted_identifier = 0 OR m.uses_ansi_nulls = 0);
+        RAISERROR (N'有以 QUOTED_IDENTIFIER/ANSI_NULLS OFF 建立、且引用 ProDtl 的模組（見上方結果），建立篩選索引後其寫入會失敗；請先以 ON 重新建立這些模組。', 16, 1);
+        RETURN;
+    END
+
+    CREATE NONCLUSTERED INDEX IX_ProDtl_ProRecID_ID
+        ON dbo.ProDtl (ProRecID, ID DESC)
+        INCLUDE (ProItem, Interview, ProPlace)
+        WHERE IsDeleted = 0;
+END
+GO
@@ -0,0 +1,22 @@
+-- ACA_EraseAudit 稽核查詢（/aca4001/auditQuery）keyset 分頁用索引。
+-- 查詢依 (CreatedOnDate DESC, AuditID DESC) 排序，從上一頁最後一列之後取 TOP (pageSize)，可選篩選 ActionType / ACACardNo / 日期區間。
+-- 各索引的鍵尾端皆為 (CreatedOnDate DESC, AuditID DESC)，等值篩選欄位放在前面：
+-- 翻到任何一頁都是「一次 seek + 讀 pageSize 列」，不需排序，也不會隨資料表成長而變慢。
+-- 顯示欄位（原因、IP 等）只對本頁的列回查叢集索引，不放進 INCLUDE 以免索引過大。
+
+-- 無篩選 / 只有日期區間
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_ACA_EraseAudit_Created' AND object_id = OBJECT_ID(N'dbo.ACA_EraseAudit'))
+    CREATE INDEX IX_ACA_EraseAudit_Created ON dbo.ACA_EraseAudit (CreatedOnDate DESC, AuditID DESC)
+        INCLUDE (ACACardNo, ActionType);
+GO
+
+-- 依卡號（可再加動作類型 / 日期區間）
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_ACA_EraseAudit_Card' AND object_id = OBJECT_ID(N'dbo.ACA_EraseAudit'))
+    CREATE INDEX IX_ACA_EraseAudit_Card ON dbo.ACA_EraseAudit (ACACardNo, CreatedOnDate DESC, AuditID DESC)
+        INCLUDE (ActionType);
+GO
+
+-- 依動作類型（ERASE / RESTORE，可再加日期區間）
+IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = N'IX_ACA_EraseAudit_Action' AND object_id = OBJECT_ID(N'dbo.ACA_EraseAudit'))
+    CREATE INDEX IX_ACA_EraseAudit_Action ON dbo.ACA_EraseAudit (ActionType, CreatedOnDate DESC, AuditID DESC);
+GO
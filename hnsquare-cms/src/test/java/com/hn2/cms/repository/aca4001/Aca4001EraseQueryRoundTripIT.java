@@ -0,0 +1,153 @@
+package com.hn2.cms.repository.aca4001;
+
+import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto.EraseQueryBundle;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * eraseQuery 批次載入（loadEraseQueryBundle）對真實 SQL Server 的往返次數與延遲。
+ * 需要連線資訊，未設定時略過（一般 test 不會執行）：
+ * - ACA4001_IT_JDBC_URL（如 jdbc:sqlserver://host:1433;databaseName=CaseManagementT;encrypt=false）
+ * - ACA4001_IT_JDBC_USER / ACA4001_IT_JDBC_PASSWORD
+ * - ACA4001_IT_CARD：已滿 18、有 CrmRec / ProRec / AcaDrugUse 資料的卡號
+ * 驗證：
+ * - 批次載入只送出一個語句（一次往返），逐項查詢則每個子查詢各一次。
+ * - 兩種方式的結果相同。
+ * - 各跑 ACA4001_IT_ROUNDS（預設 20）次，輸出 p50 / p95 延遲供比較（不做門檻斷言，數值依環境而定）。
+ */
+@Tag("integration")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfEnvironmentVariable(named = "ACA4001_IT_JDBC_URL", matches = ".+")
+class Aca4001EraseQueryRoundTripIT {
+    private final AtomicInteger statements = new AtomicInteger(); // 送出的 execute* 次數
+    private Aca4001RepositoryImpl repo;
+    private String card;
+    private int rounds;
+
+    @BeforeAll
+    void setUp() {
+        var ds = new DriverManagerDataSource(System.getenv("ACA4001_IT_JDBC_URL"),
+                System.getenv("ACA4001_IT_JDBC_USER"), System.getenv("ACA4001_IT_JDBC_PASSWORD"));
+        var counting = new DelegatingDataSource(ds) {
+            @Override
+            public Connection getConnection() throws java.sql.SQLException {
+                return countingConnection(super.getConnection());
+            }
+        };
+        repo = new Aca4001RepositoryImpl(new JdbcTemplate(counting), new NamedParameterJdbcTemplate(counting),
+                new org.sql2o.Sql2o(counting));
+        card = System.getenv("ACA4001_IT_CARD");
+        assertNotNull(card, "ACA4001_IT_CARD 未設定");
+        String r = System.getenv("ACA4001_IT_ROUNDS");
+        rounds = r == null ? 20 : Integer.parseInt(r);
+    }
+
+    @Test
+    void batchLoadIsOneRoundTripAndMatchesPerQueryLoad() {
+        LocalDateTime start = null, end = null;
+
+        statements.set(0);
+        var batch = repo.loadEraseQueryBundle(card, start, end);
+        assertEquals(1, statements.get(), "批次載入應只送出一個語句");
+
+        statements.set(0);
+        var perQuery = loadPerQuery(card, start, end);
+        int perQueryStatements = statements.get();
+
+        assertNotNull(batch.getPersonBirth(), "查無此卡號：" + card);
+        assertEquals(perQuery.getPersonBirth(), batch.getPersonBirth());
+        assertEquals(perQuery.getErased(), batch.getErased());
+        assertEquals(perQuery.getLatestProRecClosed(), batch.getLatestProRecClosed());
+        assertEquals(perQuery.getCrmRecs(), batch.getCrmRecs());
+        assertEquals(perQuery.getProRecs(), batch.getProRecs());
+        assertEquals(perQuery.getAcaDrugUses(), batch.getAcaDrugUses());
+
+        var batchMs = time(() -> repo.loadEraseQueryBundle(card, start, end));
+        var perQueryMs = time(() -> loadPerQuery(card, start, end));
+        System.out.printf("[Aca4001EraseQueryRoundTripIT] card=%s rounds=%d statements batch=1 perQuery=%d%n"
+                        + "  batch    p50=%.2fms p95=%.2fms%n  perQuery p50=%.2fms p95=%.2fms%n",
+                card, rounds, perQueryStatements, pct(batchMs, 50), pct(batchMs, 95), pct(perQueryMs, 50), pct(perQueryMs, 95));
+    }
+
+    // 逐項查詢（改版前的載入方式，循序執行）
+    private EraseQueryBundle loadPerQuery(String aca, LocalDateTime startTs, LocalDateTime endInclusive) {
+        var b = new EraseQueryBundle();
+        var pb = repo.findPersonBirth(aca);
+        b.setPersonBirth(pb);
+        if (pb == null || pb.getBirthDate() == null || LocalDate.now().isBefore(pb.getEighteenthStart())) return b;
+        b.setCrmRecs(repo.findCrmRecsByIds(repo.findAllCrmRecIdsByAcaCardNo(aca)));
+        b.setProRecs(repo.findProRecsByIds(repo.findProRecIdsBefore18(aca, pb.getEighteenthStart().atStartOfDay(), startTs, endInclusive)));
+        b.setAcaDrugUses(repo.findAcaDrugUsesByIds(repo.findAllAcaDrugUseIdsByAcaCardNo(aca)));
+        b.setLatestProRecClosed(repo.findLatestProRecClosed(aca));
+        b.setErased(repo.findPersonErased(aca));
+        return b;
+    }
+
+    private double[] time(Supplier<?> load) {
+        for (int i = 0; i < 3; i++) load.get(); // 暖身（連線、執行計畫快取）
+        var ms = new double[rounds];
+        for (int i = 0; i < rounds; i++) {
+            long t0 = System.nanoTime();
+            load.get();
+            ms[i] = (System.nanoTime() - t0) / 1_000_000.0;
+        }
+        Arrays.sort(ms);
+        return ms;
+    }
+
+    private static double pct(double[] sorted, int p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p / 100.0 * sorted.length) - 1)];
+    }
+
+    // 以 Proxy 包住連線與其建立的 Statement，計算 execute* 呼叫次數（每次即一次往返）
+    private Connection countingConnection(Connection con) {
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class}, (p, m, args) -> {
+            Object r = invoke(con, m, args);
+            if (r instanceof Statement) {
+                var st = r;
+                return Proxy.newProxyInstance(getClass().getClassLoader(), allInterfaces(st.getClass()), (sp, sm, sargs) -> {
+                    if (sm.getName().startsWith("execute")) statements.incrementAndGet();
+                    return invoke(st, sm, sargs);
+                });
+            }
+            return r;
+        });
+    }
+
+    private static Class<?>[] allInterfaces(Class<?> c) {
+        var out = new ArrayList<Class<?>>();
+        for (; c != null; c = c.getSuperclass()) {
+            for (var i : c.getInterfaces()) if (!out.contains(i)) out.add(i);
+        }
+        return out.toArray(new Class<?>[0]);
+    }
+
+    private static Object invoke(Object target, java.lang.reflect.Method m, Object[] args) throws Throwable {
+        try {
+            return m.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.hn2.cms.repository.aca4001.erase;
+
+import org.junit.jupiter.api.Test;
+import org.sql2o.quirks.parameterparsing.impl.DefaultSqlParameterParsingStrategy;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批次 MERGE 的 JDBC 參數數量：以 sql2o 的參數解析（同名參數每次出現各算一個 ?）計算，
+ * 不可超過 SQL Server 單一語句 2100 個參數。
+ */
+class EraseMirrorMergeSqlTest {
+
+    @Test
+    void sharedParametersAreBoundOnce() {
+        var params = parse(EraseMirrorRepo.buildMergeSql(3));
+
+        for (String shared : List.of("sch", "tbl", "aca")) {
+            assertEquals(1, params.get(shared).size(), shared);
+        }
+        assertEquals(6 * 3 + 3, jdbcParameterCount(params));
+    }
+
+    @Test
+    void maxRowsPerMergeStaysWithinSqlServerLimit() {
+        int n = EraseMirrorRepo.MAX_ROWS_PER_MERGE;
+
+        assertTrue(jdbcParameterCount(parse(EraseMirrorRepo.buildMergeSql(n))) <= 2100);
+        assertTrue(jdbcParameterCount(parse(EraseMirrorRepo.buildMergeSql(n + 1))) > 2100);
+    }
+
+    private static Map<String, List<Integer>> parse(String sql) {
+        var params = new HashMap<String, List<Integer>>();
+        new DefaultSqlParameterParsingStrategy().parseSql(sql, params);
+        return params;
+    }
+
+    private static int jdbcParameterCount(Map<String, List<Integer>> params) {
+        return params.values().stream().mapToInt(List::size).sum();
+    }
+}
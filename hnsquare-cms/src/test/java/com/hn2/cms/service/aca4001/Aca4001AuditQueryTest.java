@@ -0,0 +1,189 @@
+package com.hn2.cms.service.aca4001;
+
+import com.hn2.cms.dto.aca4001.Aca4001AuditQueryDto;
+import com.hn2.cms.payload.aca4001.Aca4001AuditQueryPayload;
+import com.hn2.cms.repository.aca4001.Aca4001Repository;
+import com.hn2.cms.service.aca4001.erase.CheckpointedEraseService;
+import com.hn2.cms.service.aca4001.erase.GenericEraseService;
+import com.hn2.cms.service.aca4001.job.EraseJobService;
+import com.hn2.core.payload.GeneralPayload;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class Aca4001AuditQueryTest {
+    private final Aca4001Repository repo = mock(Aca4001Repository.class);
+    private final Aca4001ServiceImpl service;
+
+    Aca4001AuditQueryTest() {
+        service = new Aca4001ServiceImpl(repo, mock(GenericEraseService.class), mock(EraseJobService.class),
+                mock(CheckpointedEraseService.class), mock(Aca4001QueryPool.class), mock(EraseQueryCache.class));
+        ReflectionTestUtils.setField(service, "auditPageSize", 2);
+        ReflectionTestUtils.setField(service, "auditMaxPageSize", 5);
+    }
+
+    @Test
+    void cursorRoundTripRestoresAnchorId() {
+        var filter = filter("ERASE", "A000000001");
+        String cursor = Aca4001ServiceImpl.encodeAuditCursor(row(42L), filter);
+
+        var next = filter("ERASE", "A000000001");
+        Aca4001ServiceImpl.decodeAuditCursor(cursor, next);
+        assertEquals(42L, next.getAfterAuditId());
+    }
+
+    /**
+     * 翻頁時改了篩選條件：游標不可沿用（否則錨點落在另一組結果之外，頁面會跳號或重複）。
+     */
+    @Test
+    void cursorIsRejectedWhenFilterChanges() {
+        String cursor = Aca4001ServiceImpl.encodeAuditCursor(row(42L), filter("ERASE", "A000000001"));
+
+        var ex = assertThrows(IllegalArgumentException.class,
+                () -> Aca4001ServiceImpl.decodeAuditCursor(cursor, filter("RESTORE", "A000000001")));
+        assertTrue(ex.getMessage().contains("篩選條件"));
+        assertThrows(IllegalArgumentException.class,
+                () -> Aca4001ServiceImpl.decodeAuditCursor(cursor, filter("ERASE", null)));
+    }
+
+    @Test
+    void malformedOrLegacyCursorIsRejected() {
+        for (String c : List.of("not-base64!", encode("a1|42"), encode("a9|42|0"), encode("a1|x|0"))) {
+            var ex = assertThrows(IllegalArgumentException.class, () -> Aca4001ServiceImpl.decodeAuditCursor(c, filter(null, null)));
+            assertEquals("cursor 格式不正確", ex.getMessage());
+        }
+    }
+
+    /**
+     * 取 pageSize + 1 列：多出的一列只用來判斷有下一頁，不回傳；nextCursor 指向本頁最後一列。
+     */
+    @Test
+    void extraRowSignalsNextPageAndIsDropped() {
+        when(repo.findAuditRows(any(), eq(3))).thenReturn(rows(10L, 9L, 8L));
+
+        var dto = service.auditQuery(payload(null)).getData();
+
+        assertEquals(List.of(10L, 9L), ids(dto.getItems()));
+        var next = filter(null, null);
+        Aca4001ServiceImpl.decodeAuditCursor(dto.getNextCursor(), next);
+        assertEquals(9L, next.getAfterAuditId());
+    }
+
+    @Test
+    void fullLastPageHasNoNextCursor() {
+        when(repo.findAuditRows(any(), eq(3))).thenReturn(rows(10L, 9L));
+
+        var dto = service.auditQuery(payload(null)).getData();
+
+        assertEquals(List.of(10L, 9L), ids(dto.getItems()));
+        assertNull(dto.getNextCursor());
+    }
+
+    @Test
+    void pageSizeIsCappedAtMax() {
+        when(repo.findAuditRows(any(), anyInt())).thenReturn(new ArrayList<>());
+        var req = new Aca4001AuditQueryPayload();
+        req.setPageSize(1000);
+
+        service.auditQuery(wrap(req));
+
+        verify(repo).findAuditRows(any(), eq(6));
+    }
+
+    @Test
+    void secondPagePassesAnchorToRepo() {
+        String cursor = Aca4001ServiceImpl.encodeAuditCursor(row(9L), filter(null, null));
+        when(repo.findAuditRows(any(), eq(3))).thenReturn(rows(8L));
+
+        var dto = service.auditQuery(payload(cursor)).getData();
+
+        assertEquals(List.of(8L), ids(dto.getItems()));
+        assertNull(dto.getNextCursor());
+        verify(repo).findAuditRows(argThat(f -> Long.valueOf(9L).equals(f.getAfterAuditId())), eq(3));
+        verify(repo, never()).existsAuditRow(anyLong());
+    }
+
+    /**
+     * 錨點列已被刪除：查詢結果為空，但不可當成「已到最後一頁」。
+     */
+    @Test
+    void missingAnchorIsReportedAsBadCursor() {
+        String cursor = Aca4001ServiceImpl.encodeAuditCursor(row(9L), filter(null, null));
+        when(repo.findAuditRows(any(), anyInt())).thenReturn(new ArrayList<>());
+        when(repo.existsAuditRow(9L)).thenReturn(false);
+
+        var ex = assertThrows(IllegalArgumentException.class, () -> service.auditQuery(payload(cursor)));
+        assertTrue(ex.getMessage().contains("cursor 已失效"));
+    }
+
+    @Test
+    void emptyPageAfterExistingAnchorIsNormal() {
+        String cursor = Aca4001ServiceImpl.encodeAuditCursor(row(9L), filter(null, null));
+        when(repo.findAuditRows(any(), anyInt())).thenReturn(new ArrayList<>());
+        when(repo.existsAuditRow(9L)).thenReturn(true);
+
+        var dto = service.auditQuery(payload(cursor)).getData();
+
+        assertEquals(List.of(), dto.getItems());
+        assertNull(dto.getNextCursor());
+    }
+
+    private static Aca4001AuditQueryDto.Filter filter(String action, String aca) {
+        var f = new Aca4001AuditQueryDto.Filter();
+        f.setAction(action);
+        f.setAcaCardNo(aca);
+        return f;
+    }
+
+    private static Aca4001AuditQueryDto.Row row(Long id) {
+        var r = new Aca4001AuditQueryDto.Row();
+        r.setAuditId(id);
+        return r;
+    }
+
+    private static List<Aca4001AuditQueryDto.Row> rows(Long... ids) {
+        var out = new ArrayList<Aca4001AuditQueryDto.Row>();
+        for (Long id : ids) out.add(row(id));
+        return out;
+    }
+
+    private static List<Long> ids(List<Aca4001AuditQueryDto.Row> rows) {
+        var out = new ArrayList<Long>();
+        rows.forEach(r -> out.add(r.getAuditId()));
+        return out;
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static GeneralPayload<Aca4001AuditQueryPayload> payload(String cursor) {
+        var req = new Aca4001AuditQueryPayload();
+        req.setCursor(cursor);
+        return wrap(req);
+    }
+
+    private static GeneralPayload<Aca4001AuditQueryPayload> wrap(Aca4001AuditQueryPayload req) {
+        var p = new GeneralPayload<Aca4001AuditQueryPayload>();
+        p.setData(req);
+        return p;
+    }
+}
@@ -0,0 +1,154 @@
+package com.hn2.cms.service.aca4001;
+
+import com.hn2.cms.dto.aca4001.Aca4001EraseQueryDto;
+import com.hn2.core.dto.DataDto;
+import com.hn2.core.dto.ResponseInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class EraseQueryCacheTest {
+    private static final String ACA = "A000000001";
+    private static final String RANGE = "2020-01-01~2020-12-31";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final EraseQueryCache cache = new EraseQueryCache(
+            new ConcurrentMapCacheManager(EraseQueryCache.CACHE_NAME), registry, true, 16);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void secondGetIsServedFromCache() {
+        var first = cache.get(ACA, RANGE, loader());
+        var second = cache.get(ACA, RANGE, loader());
+
+        assertEquals(1, loads.get());
+        assertSame(first.getData(), second.getData());
+        assertEquals(1, second.getResponse().getState().getCode());
+        assertCounters(1, 1, 0);
+    }
+
+    /**
+     * 卡號比對不分大小寫、忽略前後空白（與 SQL Server 預設定序一致）。
+     */
+    @Test
+    void cardNumberKeyIsCaseAndSpaceInsensitive() {
+        cache.get(ACA, RANGE, loader());
+        cache.get(" a000000001 ", RANGE, loader());
+
+        assertEquals(1, loads.get());
+        assertCounters(1, 1, 0);
+    }
+
+    /**
+     * 同卡號、不同日期區間：視為未命中並以新結果覆蓋，原區間再查也要重載。
+     */
+    @Test
+    void differentRangeMissesAndReplacesEntry() {
+        cache.get(ACA, RANGE, loader());
+        cache.get(ACA, "2021-01-01~2021-12-31", loader());
+        cache.get(ACA, RANGE, loader());
+
+        assertEquals(3, loads.get());
+        assertCounters(0, 3, 0);
+    }
+
+    @Test
+    void failedResponseIsNotCached() {
+        Supplier<DataDto<Aca4001EraseQueryDto>> notFound = () -> {
+            loads.incrementAndGet();
+            return new DataDto<>(null, new ResponseInfo(0, "查無此個案編號，請重新輸入"));
+        };
+        cache.get(ACA, RANGE, notFound);
+        cache.get(ACA, RANGE, notFound);
+
+        assertEquals(2, loads.get());
+        assertCounters(0, 2, 0);
+    }
+
+    @Test
+    void evictionOutsideTransactionForcesReload() {
+        cache.get(ACA, RANGE, loader());
+        cache.evictAfterCompletion(ACA);
+        cache.get(ACA, RANGE, loader());
+
+        assertEquals(2, loads.get());
+        assertCounters(0, 2, 1);
+    }
+
+    /**
+     * 交易內的清除延後到 afterCompletion；交易進行中仍可讀到舊值，結束後重載。
+     */
+    @Test
+    void evictionInTransactionAppliesAfterCompletion() {
+        cache.get(ACA, RANGE, loader());
+
+        TransactionSynchronizationManager.initSynchronization();
+        List<TransactionSynchronization> syncs;
+        try {
+            cache.evictAfterCompletion(List.of(ACA));
+            cache.get(ACA, RANGE, loader());
+            assertEquals(1, loads.get());
+        } finally {
+            syncs = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        syncs.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        cache.get(ACA, RANGE, loader());
+        assertEquals(2, loads.get());
+        assertCounters(1, 2, 1);
+    }
+
+    /**
+     * 載入期間有寫入完成（清除該卡號）：剛載入的結果可能已過期，不可留在快取，下一次必須重載。
+     */
+    @Test
+    void evictionDuringLoadDropsLoadedResult() {
+        cache.get(ACA, RANGE, () -> {
+            var r = loader().get();
+            cache.evictAfterCompletion(ACA); // 模擬另一個請求的塗銷在查詢途中提交
+            return r;
+        });
+        cache.get(ACA, RANGE, loader());
+
+        assertEquals(2, loads.get());
+        assertCounters(0, 2, 0); // 清除當下快取內尚無資料，不計 evictions
+    }
+
+    /**
+     * 其他卡號的寫入不影響本卡號已快取的結果。
+     */
+    @Test
+    void evictionOfOtherCardKeepsEntry() {
+        cache.get(ACA, RANGE, loader());
+        cache.evictAfterCompletion("A000000002");
+        cache.get(ACA, RANGE, loader());
+
+        assertEquals(1, loads.get());
+        assertCounters(1, 1, 0);
+    }
+
+    private Supplier<DataDto<Aca4001EraseQueryDto>> loader() {
+        return () -> {
+            loads.incrementAndGet();
+            var dto = new Aca4001EraseQueryDto();
+            dto.setOver18(true);
+            return new DataDto<>(dto, new ResponseInfo(1, "查詢成功"));
+        };
+    }
+
+    private void assertCounters(double hits, double misses, double evictions) {
+        assertEquals(hits, registry.get("aca4001.eraseQuery.cache").tag("result", "hit").counter().count(), "hit");
+        assertEquals(misses, registry.get("aca4001.eraseQuery.cache").tag("result", "miss").counter().count(), "miss");
+        assertEquals(evictions, registry.get("aca4001.eraseQuery.cache.evictions").counter().count(), "evictions");
+    }
+}
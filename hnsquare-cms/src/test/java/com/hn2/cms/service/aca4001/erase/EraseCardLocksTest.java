@@ -0,0 +1,133 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EraseCardLocksTest {
+
+    /**
+     * 大量並行「塗銷/還原」：每個作業以隨機順序要求 1~4 張重疊卡號，
+     * 全部作業必須在時限內完成（無死結、無逾時），且同一卡號不會同時被兩個作業持有。
+     */
+    @Test
+    void overlappingCardsNeverDeadlockAndStayExclusive() {
+        var locks = new EraseCardLocks(8, 5); // 段數少 → 不同卡號也常落在同段，放大競爭
+        var cards = new ArrayList<String>();
+        for (int i = 0; i < 20; i++) cards.add("A" + String.format("%09d", i));
+        var inUse = new ConcurrentHashMap<String, AtomicBoolean>();
+        cards.forEach(c -> inUse.put(c, new AtomicBoolean()));
+        var violations = new AtomicInteger();
+        var done = new AtomicInteger();
+
+        int threads = 16, opsPerThread = 300;
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                var futures = new ArrayList<Future<?>>();
+                for (int t = 0; t < threads; t++) {
+                    futures.add(pool.submit(() -> {
+                        var rnd = ThreadLocalRandom.current();
+                        for (int op = 0; op < opsPerThread; op++) {
+                            var picked = new ArrayList<String>(new LinkedHashSet<>(List.of(
+                                    cards.get(rnd.nextInt(cards.size())), cards.get(rnd.nextInt(cards.size())),
+                                    cards.get(rnd.nextInt(cards.size())), cards.get(rnd.nextInt(cards.size())))
+                                    .subList(0, 1 + rnd.nextInt(4))));
+                            Collections.shuffle(picked); // 呼叫端給的順序不固定
+                            inTransaction(() -> {
+                                locks.lockUntilCompletion(picked);
+                                for (String c : picked) if (!inUse.get(c).compareAndSet(false, true)) violations.incrementAndGet();
+                                if (rnd.nextInt(10) == 0) Thread.yield();
+                                for (String c : picked) inUse.get(c).set(false);
+                            });
+                            done.incrementAndGet();
+                        }
+                        return null;
+                    }));
+                }
+                for (var f : futures) f.get();
+            } finally {
+                pool.shutdownNow();
+            }
+        });
+        assertEquals(0, violations.get());
+        assertEquals(threads * opsPerThread, done.get());
+    }
+
+    /**
+     * 不同段的卡號不互相阻擋：A 作業持鎖期間，B 作業鎖另一段的卡號可立即取得。
+     */
+    @Test
+    void unrelatedCardsRunInParallel() throws Exception {
+        var locks = new EraseCardLocks(256, 1);
+        String a = "A000000001";
+        String b = a;
+        for (int i = 2; locks.stripeOf(b) == locks.stripeOf(a); i++) b = String.format("A%09d", i);
+        String other = b;
+
+        var held = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var holder = new Thread(() -> inTransaction(() -> {
+            locks.lockUntilCompletion(List.of(a));
+            held.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        assertTrue(held.await(5, TimeUnit.SECONDS));
+        try {
+            var got = new AtomicBoolean();
+            inTransaction(() -> {
+                locks.lockUntilCompletion(List.of(other));
+                got.set(true);
+            });
+            assertTrue(got.get());
+            // 同卡號則會等待，逾時後拋出例外
+            assertThrows(IllegalStateException.class, () -> inTransaction(() -> locks.lockUntilCompletion(List.of(a))));
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    void requiresTransaction() {
+        var locks = new EraseCardLocks(16, 1);
+        assertThrows(IllegalStateException.class, () -> locks.lockUntilCompletion(List.of("A000000001")));
+    }
+
+    // 模擬 Spring 交易邊界：開啟同步 → 執行 → afterCompletion（釋放卡號鎖）→ 清除
+    private static void inTransaction(Runnable body) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            body.run();
+        } finally {
+            List<TransactionSynchronization> syncs = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            syncs.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        }
+    }
+}
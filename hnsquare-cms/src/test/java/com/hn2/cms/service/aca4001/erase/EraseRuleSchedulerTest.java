@@ -0,0 +1,158 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import com.hn2.cms.repository.aca4001.erase.TxSql2o;
+import com.hn2.cms.service.aca4001.erase.rules.EraseTableConfigPojo;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EraseRuleSchedulerTest {
+    private final TxSql2o sql2o = mock(TxSql2o.class);
+    private final List<Connection> cons = Collections.synchronizedList(new ArrayList<>());
+    private final Map<Object, Connection> ranOn = Collections.synchronizedMap(new IdentityHashMap<>()); // 規則/收尾步驟 → 所在連線
+    private final ThreadLocal<Connection> bound = new ThreadLocal<>();
+    private final EraseRuleScheduler scheduler = new EraseRuleScheduler(sql2o, true, 4);
+
+    EraseRuleSchedulerTest() {
+        when(sql2o.openBranchConnection()).thenAnswer(inv -> {
+            var c = mock(Connection.class);
+            cons.add(c);
+            return c;
+        });
+        doAnswer(inv -> {
+            bound.set(inv.getArgument(0));
+            try {
+                ((Runnable) inv.getArgument(1)).run();
+            } finally {
+                bound.remove();
+            }
+            return null;
+        }).when(sql2o).runInBranch(any(), any());
+    }
+
+    @Test
+    void branchesFollowParentAndLookupLinks() {
+        var rules = List.of(rule("ACABrd", null, null), rule("CrmRec", null, null), rule("ACAFamilies", "ACABrd", null),
+                rule("AcaDrugUse", null, null), rule("FamMemo", null, "ACAFamilies"));
+
+        var tables = EraseRuleScheduler.branches(rules).stream()
+                .map(b -> b.stream().map(EraseTableConfigPojo::getTable).collect(Collectors.toList()))
+                .collect(Collectors.toList());
+
+        assertEquals(List.of(List.of("ACABrd", "ACAFamilies", "FamMemo"), List.of("CrmRec"), List.of("AcaDrugUse")), tables);
+    }
+
+    /**
+     * 收尾步驟（ERASE 稽核）在最後一個分支的連線上、該分支規則之後執行，且該連線最後提交。
+     */
+    @Test
+    void lastStepRunsOnLastBranchWhichCommitsLast() throws SQLException {
+        var a = rule("CrmRec", null, null);
+        var b = rule("AcaDrugUse", null, null);
+        Runnable audit = () -> ranOn.put("audit", bound.get());
+
+        scheduler.runBranches(List.of(List.of(a), List.of(b)), r -> ranOn.put(r, bound.get()), audit);
+
+        assertEquals(2, cons.size());
+        assertSame(cons.get(0), ranOn.get(a));
+        assertSame(cons.get(1), ranOn.get(b));
+        assertSame(cons.get(1), ranOn.get("audit"));
+        InOrder order = inOrder(cons.get(0), cons.get(1));
+        order.verify(cons.get(0)).commit();
+        order.verify(cons.get(1)).commit();
+    }
+
+    @Test
+    void failingLastStepRollsBackEveryBranch() throws SQLException {
+        Runnable audit = () -> {
+            throw new IllegalStateException("audit failed");
+        };
+
+        var ex = assertThrows(IllegalStateException.class, () -> scheduler.runBranches(
+                List.of(List.of(rule("CrmRec", null, null)), List.of(rule("AcaDrugUse", null, null))), r -> { }, audit));
+
+        assertEquals("audit failed", ex.getMessage());
+        for (var c : cons) {
+            verify(c, never()).commit();
+            verify(c).rollback();
+            verify(c).close();
+        }
+    }
+
+    @Test
+    void failingBranchRollsBackAll() throws SQLException {
+        var bad = rule("CrmRec", null, null);
+
+        assertThrows(IllegalArgumentException.class, () -> scheduler.runBranches(
+                List.of(List.of(bad), List.of(rule("AcaDrugUse", null, null))),
+                r -> {
+                    if (r == bad) throw new IllegalArgumentException("boom");
+                }, () -> { }));
+
+        for (var c : cons) {
+            verify(c, never()).commit();
+            verify(c).rollback();
+        }
+    }
+
+    /**
+     * 提交途中失敗：稽核所在的最後分支不會被提交（已提交的前段分支無法撤回，需人工處理）。
+     */
+    @Test
+    void commitFailureNeverCommitsAuditBranch() throws SQLException {
+        doAnswer(inv -> {
+            var c = mock(Connection.class);
+            if (cons.size() == 1) doThrow(new SQLException("network")).when(c).commit();
+            cons.add(c);
+            return c;
+        }).when(sql2o).openBranchConnection();
+
+        assertThrows(IllegalStateException.class, () -> scheduler.runBranches(List.of(
+                List.of(rule("A", null, null)), List.of(rule("B", null, null)), List.of(rule("C", null, null))), r -> { }, () -> { }));
+
+        verify(cons.get(0)).commit();
+        verify(cons.get(2), never()).commit();
+        verify(cons.get(2)).rollback();
+    }
+
+    @Test
+    void refusesToRunInsideOuterTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(IllegalStateException.class,
+                    () -> scheduler.runBranches(List.of(List.of(rule("A", null, null))), r -> { }, () -> { }));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        verify(sql2o, never()).openBranchConnection();
+    }
+
+    private static EraseTableConfigPojo rule(String table, String parentTable, String lookupTable) {
+        var r = new EraseTableConfigPojo();
+        r.setTable(table);
+        r.setParentTable(parentTable);
+        r.setParentIdLookupTable(lookupTable);
+        return r;
+    }
+}
@@ -0,0 +1,243 @@
+package com.hn2.cms.service.aca4001.erase;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hn2.cms.repository.aca4001.erase.EraseAuditRepo;
+import com.hn2.cms.repository.aca4001.erase.EraseCheckpointRepo;
+import com.hn2.cms.repository.aca4001.erase.EraseMirrorRepo;
+import com.hn2.cms.service.aca4001.EraseQueryCache;
+import com.hn2.cms.service.aca4001.erase.command.EraseCommand;
+import com.hn2.cms.service.aca4001.erase.command.RestoreCommand;
+import com.hn2.cms.service.aca4001.erase.rules.EraseRestoreExecutor;
+import com.hn2.cms.service.aca4001.erase.rules.EraseTableConfigPojo;
+import com.hn2.cms.service.aca4001.erase.rules.ParentKeyLookups;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class GenericEraseServiceTest {
+    private static final String ACA = "A000000001";
+
+    private final EraseMirrorRepo mirrorRepo = mock(EraseMirrorRepo.class);
+    private final EraseAuditRepo auditRepo = mock(EraseAuditRepo.class);
+    private final EraseRestoreExecutor executor = mock(EraseRestoreExecutor.class);
+    private final EraseCheckpointRepo checkpointRepo = mock(EraseCheckpointRepo.class);
+    private final EraseRuleScheduler scheduler = mock(EraseRuleScheduler.class);
+    private final Set<String> openCheckpoints = ConcurrentHashMap.newKeySet(); // 模擬 ACA_EraseCheckpoint 內的卡號
+    private final GenericEraseService service;
+
+    GenericEraseServiceTest() {
+        var crmRec = new EraseTableConfigPojo();
+        crmRec.setTable("CrmRec");
+        var proRec = new EraseTableConfigPojo();
+        proRec.setTable("ProRec");
+
+        // 進度表：insert 記下卡號，查詢時回傳有紀錄的卡號
+        when(checkpointRepo.findCardsWithCheckpoints(anyList())).thenAnswer(inv -> ((List<?>) inv.getArgument(0)).stream()
+                .map(String::valueOf).filter(openCheckpoints::contains).collect(Collectors.toList()));
+        doAnswer(inv -> openCheckpoints.add(inv.getArgument(0)))
+                .when(checkpointRepo).insert(anyString(), anyString(), anyInt(), anyString(), anyInt(), anyInt());
+        when(executor.loadRowsByIds(any(), anyList())).thenReturn(new ArrayList<>());
+
+        service = new GenericEraseService(mirrorRepo, auditRepo, mock(MirrorPayloadCodec.class), new ObjectMapper(),
+                List.of(crmRec, proRec), executor, mock(EraseCryptoPool.class), scheduler,
+                new EraseMetrics(new SimpleMeterRegistry()), new EraseCardLocks(16, 10), checkpointRepo,
+                mock(EraseQueryCache.class));
+    }
+
+    private static EraseCommand command() {
+        return EraseCommand.builder().acaCardNo(ACA)
+                .tableIds("CrmRec", List.of("1", "2"))
+                .tableIds("ProRec", List.of("10"))
+                .operatorUserId(1).operatorIp("127.0.0.1").build();
+    }
+
+    /**
+     * 分段塗銷做完第一條規則後中斷，再以一般塗銷（未帶 checkpointed=true）重試：
+     * 必須拒絕，且不可讀取/鏡像任何列（否則會以已清空的值覆寫既有鏡像）。
+     */
+    @Test
+    void plainRetryAfterInterruptedCheckpointedEraseIsRejected() {
+        var cmd = command();
+        inTransaction(() -> service.eraseRuleStep(cmd, CheckpointedEraseService.commandHash(cmd), 0, "CrmRec",
+                new ParentKeyLookups(), EraseProgressListener.NOOP));
+        assertTrue(openCheckpoints.contains(ACA));
+        clearInvocations(executor, mirrorRepo);
+
+        var ex = assertThrows(IllegalStateException.class, () -> inTransaction(() -> service.eraseRows(cmd)));
+        assertTrue(ex.getMessage().contains("checkpointed=true"));
+        verifyNoInteractions(executor, mirrorRepo, auditRepo);
+    }
+
+    /**
+     * 批次塗銷同樣拒絕：整批回滾，不寫稽核。
+     */
+    @Test
+    void batchEraseRejectsCardsWithOpenCheckpoints() {
+        openCheckpoints.add(ACA);
+        var other = EraseCommand.builder().acaCardNo("A000000002").tableIds("CrmRec", List.of("3")).build();
+
+        assertThrows(IllegalStateException.class, () -> inTransaction(() -> service.eraseCards(List.of(other, command()))));
+        verifyNoInteractions(executor, mirrorRepo, auditRepo);
+    }
+
+    /**
+     * 沒有未完成進度時照常執行並寫 ERASE 稽核。
+     */
+    @Test
+    void plainEraseRunsWithoutCheckpoints() {
+        inTransaction(() -> service.eraseRows(command()));
+
+        verify(executor).loadRowsByIds(any(), eq(List.of("1", "2")));
+        verify(auditRepo).insertEraseAction(ACA, null, null, 1, "127.0.0.1");
+        verify(checkpointRepo, never()).insert(anyString(), anyString(), anyInt(), anyString(), anyInt(), anyInt());
+        assertEquals(Set.of(), openCheckpoints);
+    }
+
+    /**
+     * 同卡號的塗銷與還原在服務層排隊：塗銷交易進行中，還原要等它結束（釋放卡號鎖）後才開始讀鏡像，
+     * 不同卡號的還原則不受影響。
+     */
+    @Test
+    void eraseAndRestoreOnSameCardSerialize() throws Exception {
+        var eraseEntered = new CountDownLatch(1);
+        var releaseErase = new CountDownLatch(1);
+        var eraseDone = new AtomicBoolean();
+        var restoreSawEraseDone = new ConcurrentHashMap<String, Boolean>();
+        when(executor.loadRowsByIds(any(), anyList())).thenAnswer(inv -> {
+            eraseEntered.countDown();
+            assertTrue(releaseErase.await(10, TimeUnit.SECONDS));
+            return new ArrayList<>();
+        });
+        when(mirrorRepo.forEachByAcaCardNo(anyString(), anyList(), any(), any())).thenAnswer(inv -> {
+            restoreSawEraseDone.put(inv.getArgument(0), eraseDone.get());
+            return 0;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> erase = pool.submit(() -> inTransaction(() -> {
+                service.eraseRows(command());
+                eraseDone.set(true); // 交易結束（鎖釋放）前設定
+            }));
+            assertTrue(eraseEntered.await(5, TimeUnit.SECONDS));
+
+            Future<?> restoreSame = pool.submit(() -> inTransaction(() -> service.restoreAllByAcaCardNo(restore(ACA))));
+            Future<?> restoreOther = pool.submit(() -> inTransaction(() -> service.restoreAllByAcaCardNo(restore(otherStripeCard()))));
+            restoreOther.get(5, TimeUnit.SECONDS); // 不同卡號不需等待
+            Thread.sleep(200);
+            assertFalse(restoreSawEraseDone.containsKey(ACA), "同卡號還原不可在塗銷交易結束前開始");
+
+            releaseErase.countDown();
+            erase.get(5, TimeUnit.SECONDS);
+            restoreSame.get(5, TimeUnit.SECONDS);
+        } finally {
+            releaseErase.countDown();
+            pool.shutdownNow();
+        }
+        assertEquals(Boolean.TRUE, restoreSawEraseDone.get(ACA));
+        var order = inOrder(auditRepo);
+        order.verify(auditRepo).insertEraseAction(eq(ACA), any(), any(), any(), any());
+        order.verify(auditRepo).insertRestoreAction(eq(ACA), any(), any(), any());
+    }
+
+    /**
+     * 平行分支塗銷：規則在各分支上執行，ERASE 稽核作為收尾步驟交給排程器（與分支一起提交），不在 Spring 交易內。
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void branchEraseRunsAuditAsSchedulerLastStep() {
+        var auditRanInBranch = new AtomicBoolean();
+        doAnswer(inv -> {
+            List<List<EraseTableConfigPojo>> branches = inv.getArgument(0);
+            java.util.function.Consumer<EraseTableConfigPojo> work = inv.getArgument(1);
+            branches.forEach(b -> b.forEach(work));
+            verify(auditRepo, never()).insertEraseAction(any(), any(), any(), any(), any());
+            ((Runnable) inv.getArgument(2)).run();
+            auditRanInBranch.set(true);
+            return null;
+        }).when(scheduler).runBranches(anyList(), any(), any());
+
+        service.eraseRowsInBranches(command(), EraseProgressListener.NOOP);
+
+        assertTrue(auditRanInBranch.get());
+        verify(executor).loadRowsByIds(any(), eq(List.of("1", "2")));
+        verify(executor).loadRowsByIds(any(), eq(List.of("10")));
+        verify(auditRepo).insertEraseAction(ACA, null, null, 1, "127.0.0.1");
+    }
+
+    @Test
+    void branchEraseRejectsCardsWithOpenCheckpoints() {
+        openCheckpoints.add(ACA);
+
+        assertThrows(IllegalStateException.class, () -> service.eraseRowsInBranches(command(), EraseProgressListener.NOOP));
+        verify(scheduler, never()).runBranches(anyList(), any(), any());
+        verifyNoInteractions(executor, mirrorRepo, auditRepo);
+    }
+
+    @Test
+    void branchEraseRefusesOuterTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertThrows(IllegalStateException.class, () -> service.eraseRowsInBranches(command(), EraseProgressListener.NOOP));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+        verifyNoInteractions(executor, mirrorRepo, auditRepo);
+    }
+
+    private static RestoreCommand restore(String aca) {
+        return RestoreCommand.builder().acaCardNo(aca).operatorUserId("1").operatorIp("127.0.0.1").build();
+    }
+
+    // 與 ACA 落在不同鎖段的卡號
+    private static String otherStripeCard() {
+        var locks = new EraseCardLocks(16, 10);
+        for (int i = 2; ; i++) {
+            String c = String.format("A%09d", i);
+            if (locks.stripeOf(c) != locks.stripeOf(ACA)) return c;
+        }
+    }
+
+    // 模擬 Spring 交易邊界：開啟同步 → 執行 → afterCompletion（釋放卡號鎖）→ 清除
+    private static void inTransaction(Runnable body) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            body.run();
+        } finally {
+            List<TransactionSynchronization> syncs = TransactionSynchronizationManager.getSynchronizations();
+            TransactionSynchronizationManager.clearSynchronization();
+            syncs.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        }
+    }
+}